@@ -0,0 +1,43 @@
+-- Deletes the placeholder progress data rows (worked_on = false) which have been created whenever progress data was
+-- read. Since these are no longer created, a missing row means "not worked on" and the placeholders can go.
+--
+-- Run once, outside of a transaction block:
+--   psql -d media_service -f migrations/compact-media-record-progress-data.sql
+--
+-- The table is walked along its primary key in batches, each batch is deleted and committed on its own, so locks are
+-- short, the service keeps running, and an interrupted run only loses its current batch. Running it again is safe.
+-- Afterward, VACUUM (ANALYZE) media_record_progress_data; makes the space reusable right away.
+DO $$
+DECLARE
+    batch_size           CONSTANT integer := 10000;
+    last_media_record_id uuid := '00000000-0000-0000-0000-000000000000';
+    last_user_id         uuid := '00000000-0000-0000-0000-000000000000';
+    batch_end            record;
+    batch_deleted        integer;
+    total_deleted        bigint := 0;
+BEGIN
+    LOOP
+        -- the last key of the next batch, found with a range scan of the primary key
+        SELECT media_record_id, user_id INTO batch_end
+        FROM (SELECT media_record_id, user_id
+              FROM media_record_progress_data
+              WHERE (media_record_id, user_id) > (last_media_record_id, last_user_id)
+              ORDER BY media_record_id, user_id
+              LIMIT batch_size) batch
+        ORDER BY media_record_id DESC, user_id DESC
+        LIMIT 1;
+        EXIT WHEN NOT FOUND;
+
+        DELETE FROM media_record_progress_data
+        WHERE (media_record_id, user_id) > (last_media_record_id, last_user_id)
+          AND (media_record_id, user_id) <= (batch_end.media_record_id, batch_end.user_id)
+          AND NOT worked_on;
+        GET DIAGNOSTICS batch_deleted = ROW_COUNT;
+        COMMIT;
+
+        total_deleted := total_deleted + batch_deleted;
+        last_media_record_id := batch_end.media_record_id;
+        last_user_id := batch_end.user_id;
+        RAISE NOTICE 'deleted % placeholder rows, up to media record %', total_deleted, last_media_record_id;
+    END LOOP;
+END $$;
@@ -0,0 +1,106 @@
+package de.unistuttgart.iste.meitrex.media_service.benchmark;
+
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
+import de.unistuttgart.iste.meitrex.generated.dto.SubmissionExercise;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.submission.*;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.SubmissionMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reflective {@link ModelMapper}, which was used to map entities to DTOs before, with the handwritten
+ * {@link MediaRecordMapper} and {@link SubmissionMapper}. Media records are mapped in batches of 1k like a course
+ * page does, submission exercises as a whole graph with 50 solutions like the lecturer view does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DtoMappingBenchmark {
+
+    private static final int RECORD_COUNT = 1_000;
+    private static final int SOLUTION_COUNT = 50;
+    private static final int TASK_COUNT = 5;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final MediaRecordMapper mediaRecordMapper = new MediaRecordMapper();
+    private final SubmissionMapper submissionMapper = new SubmissionMapper();
+
+    private List<MediaRecordEntity> mediaRecords;
+    private SubmissionExerciseEntity submissionExercise;
+
+    @Setup
+    public void setUp() {
+        final MediaRecordEntity.MediaType[] types = MediaRecordEntity.MediaType.values();
+        mediaRecords = new ArrayList<>(RECORD_COUNT);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            mediaRecords.add(MediaRecordEntity.builder()
+                    .id(UUID.randomUUID())
+                    .name("Media record " + i)
+                    .creatorId(UUID.randomUUID())
+                    .type(types[i % types.length])
+                    .courseIds(List.of(UUID.randomUUID()))
+                    .contentIds(List.of(UUID.randomUUID(), UUID.randomUUID()))
+                    .build());
+        }
+
+        final List<TaskEntity> tasks = new ArrayList<>(TASK_COUNT);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            tasks.add(new TaskEntity(UUID.randomUUID(), "Task " + i, i, 10));
+        }
+        final List<ExerciseSolutionEntity> solutions = new ArrayList<>(SOLUTION_COUNT);
+        for (int i = 0; i < SOLUTION_COUNT; i++) {
+            final List<TaskResultEntity> taskResults = new ArrayList<>(TASK_COUNT);
+            for (final TaskEntity task : tasks) {
+                taskResults.add(new TaskResultEntity(UUID.randomUUID(), task.getItemId(), task.getMaxScore(), i % 10));
+            }
+            final ResultEntity result = new ResultEntity(UUID.randomUUID(), UUID.randomUUID(),
+                    ResultEntity.Status.pending, taskResults);
+            solutions.add(new ExerciseSolutionEntity(UUID.randomUUID(), result.getUserId(), "user" + i, "First",
+                    "Last", OffsetDateTime.now(), new ArrayList<>(List.of(file("solution" + i + ".pdf"))), result));
+        }
+        submissionExercise = new SubmissionExerciseEntity(UUID.randomUUID(), UUID.randomUUID(),
+                OffsetDateTime.now().plusDays(7), new ArrayList<>(List.of(file("exercise.pdf"))), solutions, tasks,
+                null);
+    }
+
+    @Benchmark
+    public List<MediaRecord> modelMapperMediaRecords() {
+        final List<MediaRecord> result = new ArrayList<>(RECORD_COUNT);
+        for (final MediaRecordEntity entity : mediaRecords) {
+            result.add(modelMapper.map(entity, MediaRecord.class));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<MediaRecord> handwrittenMediaRecords() {
+        final List<MediaRecord> result = new ArrayList<>(RECORD_COUNT);
+        for (final MediaRecordEntity entity : mediaRecords) {
+            result.add(mediaRecordMapper.entityToDto(entity));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public SubmissionExercise modelMapperSubmissionExercise() {
+        return modelMapper.map(submissionExercise, SubmissionExercise.class);
+    }
+
+    @Benchmark
+    public SubmissionExercise handwrittenSubmissionExercise() {
+        return submissionMapper.exerciseToDto(submissionExercise);
+    }
+
+    private static FileEntity file(final String name) {
+        return new FileEntity(UUID.randomUUID(), "http://minio:9000/submission-bucket/upload",
+                "http://minio:9000/submission-bucket/download", name, null);
+    }
+}
@@ -0,0 +1,147 @@
+package de.unistuttgart.iste.meitrex.media_service.benchmark;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.*;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.*;
+import org.modelmapper.ModelMapper;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Builds forum entities for the benchmarks. The sizes are chosen like a busy course forum: a few hundred threads
+ * with a few dozen posts each, written by a limited set of users, some of them answering each other.
+ */
+public final class ForumFixtures {
+
+    private final Random random;
+    private final List<UUID> userIds;
+
+    /**
+     * @param seed      seed of the random generator, so the fixtures are the same for every benchmark run
+     * @param userCount number of distinct users writing threads and posts
+     */
+    public ForumFixtures(final long seed, final int userCount) {
+        this.random = new Random(seed);
+        this.userIds = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            userIds.add(new UUID(seed, i));
+        }
+    }
+
+    public List<UUID> getUserIds() {
+        return userIds;
+    }
+
+    /**
+     * Wires the forum mappers the same way the Spring context does.
+     */
+    public static ForumMapper forumMapper() {
+        return new ForumMapper(threadMapper());
+    }
+
+    public static ThreadMapper threadMapper() {
+        final PostMapper postMapper = new PostMapper();
+        final ModelMapper modelMapper = new ModelMapper();
+        return new ThreadMapper(new InfoThreadMapper(postMapper, modelMapper),
+                new QuestionThreadMapper(postMapper, modelMapper));
+    }
+
+    public ForumEntity forum(final int threadCount, final int postsPerThread) {
+        final ForumEntity forum = new ForumEntity(UUID.randomUUID());
+        forum.setId(UUID.randomUUID());
+        forum.setUserIds(new HashSet<>(userIds));
+        for (int i = 0; i < threadCount; i++) {
+            // two thirds questions, half of them still open
+            final ThreadEntity thread = i % 3 == 2
+                    ? infoThread(forum, postsPerThread)
+                    : questionThread(forum, postsPerThread, i % 2 == 0);
+            forum.getThreads().add(thread);
+        }
+        return forum;
+    }
+
+    public QuestionThreadEntity questionThread(final ForumEntity forum, final int postCount, final boolean answered) {
+        final PostEntity question = post(null);
+        final List<PostEntity> posts = posts(postCount);
+        final QuestionThreadEntity thread = QuestionThreadEntity.builder()
+                .id(UUID.randomUUID())
+                .forum(forum)
+                .creatorId(question.getAuthorId())
+                .title("Question " + random.nextInt(1000))
+                .creationTime(randomTime())
+                .posts(posts)
+                .numberOfPosts(posts.size())
+                .question(question)
+                .selectedAnswer(answered && !posts.isEmpty() ? posts.getFirst() : null)
+                .build();
+        link(thread, question, posts);
+        return thread;
+    }
+
+    public InfoThreadEntity infoThread(final ForumEntity forum, final int postCount) {
+        final PostEntity info = post(null);
+        final List<PostEntity> posts = posts(postCount);
+        final InfoThreadEntity thread = InfoThreadEntity.builder()
+                .id(UUID.randomUUID())
+                .forum(forum)
+                .creatorId(info.getAuthorId())
+                .title("Info " + random.nextInt(1000))
+                .creationTime(randomTime())
+                .posts(posts)
+                .numberOfPosts(posts.size())
+                .info(info)
+                .build();
+        link(thread, info, posts);
+        return thread;
+    }
+
+    /**
+     * Creates posts where every fourth post replies to an earlier one.
+     */
+    public List<PostEntity> posts(final int count) {
+        final List<PostEntity> posts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final UUID referenceId = i > 0 && i % 4 == 0 ? posts.get(random.nextInt(i)).getId() : null;
+            posts.add(post(referenceId));
+        }
+        return posts;
+    }
+
+    private PostEntity post(final UUID referenceId) {
+        return PostEntity.builder()
+                .id(UUID.randomUUID())
+                .content("Lorem ipsum dolor sit amet, consectetur adipiscing elit.")
+                .creationTime(randomTime())
+                .authorId(randomUser())
+                .referenceId(referenceId)
+                .upvotedByUsers(randomUsers(random.nextInt(10)))
+                .downvotedByUsers(randomUsers(random.nextInt(3)))
+                .build();
+    }
+
+    private static void link(final ThreadEntity thread, final PostEntity first, final List<PostEntity> posts) {
+        first.setThread(thread);
+        posts.forEach(post -> post.setThread(thread));
+    }
+
+    private UUID randomUser() {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    private List<UUID> randomUsers(final int count) {
+        final Set<UUID> users = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            users.add(randomUser());
+        }
+        return new ArrayList<>(users);
+    }
+
+    private OffsetDateTime randomTime() {
+        return OffsetDateTime.now().minusMinutes(random.nextInt(60 * 24 * 60));
+    }
+}
@@ -0,0 +1,58 @@
+package de.unistuttgart.iste.meitrex.media_service.benchmark;
+
+import de.unistuttgart.iste.meitrex.generated.dto.Post;
+import de.unistuttgart.iste.meitrex.generated.dto.Thread;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.ForumEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.PostEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.ThreadEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.PostMapper;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.ThreadMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the forum mappers. {@link PostMapper#mapToPosts(List)} resolves the post each post replies to, so its cost
+ * grows with the number of posts in a thread; {@link ThreadMapper#mapThread(ThreadEntity)} maps a whole thread
+ * including its posts, like every forum query does for each thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ForumMapperBenchmark {
+
+    private static final int THREAD_COUNT = 100;
+
+    @Param({"10", "100", "1000"})
+    private int postsPerThread;
+
+    private final PostMapper postMapper = new PostMapper();
+    private final ThreadMapper threadMapper = ForumFixtures.threadMapper();
+
+    private List<PostEntity> posts;
+    private List<ThreadEntity> threads;
+
+    @Setup
+    public void setUp() {
+        final ForumFixtures fixtures = new ForumFixtures(42, 200);
+        posts = fixtures.posts(postsPerThread);
+        final ForumEntity forum = fixtures.forum(THREAD_COUNT, postsPerThread);
+        threads = forum.getThreads();
+    }
+
+    @Benchmark
+    public List<Post> mapToPosts() {
+        return postMapper.mapToPosts(posts);
+    }
+
+    @Benchmark
+    public List<Thread> mapThreads() {
+        final List<Thread> result = new ArrayList<>(threads.size());
+        for (final ThreadEntity thread : threads) {
+            result.add(threadMapper.mapThread(thread));
+        }
+        return result;
+    }
+}
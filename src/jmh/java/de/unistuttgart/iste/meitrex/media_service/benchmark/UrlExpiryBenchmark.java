@@ -0,0 +1,104 @@
+package de.unistuttgart.iste.meitrex.media_service.benchmark;
+
+import de.unistuttgart.iste.meitrex.media_service.service.PresignedUrl;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the former expiry check of pre-signed urls, which parsed the {@code X-Amz-Date} and
+ * {@code X-Amz-Expires} query parameters of the url with regular expressions, with the typed expiry stored in
+ * {@link PresignedUrl}. Each invocation checks the download, upload and standardized download url of 10k media
+ * records, like the read paths of the media service did.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UrlExpiryBenchmark {
+
+    private static final int RECORD_COUNT = 10_000;
+    private static final int URLS_PER_RECORD = 3;
+    private static final long MARGIN_MILLIS = Duration.ofMinutes(5).toMillis();
+
+    private List<String> legacyUrls;
+    private List<PresignedUrl> presignedUrls;
+
+    @Setup
+    public void setUp() {
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
+        final Random random = new Random(42);
+
+        legacyUrls = new ArrayList<>(RECORD_COUNT * URLS_PER_RECORD);
+        presignedUrls = new ArrayList<>(RECORD_COUNT * URLS_PER_RECORD);
+        for (int i = 0; i < RECORD_COUNT * URLS_PER_RECORD; i++) {
+            // mix of expired and valid urls
+            final Instant signedAt = Instant.now().minusSeconds(random.nextInt(3600));
+            final Duration validity = Duration.ofMinutes(15);
+            final String url = "http://minio:9000/document-bucket/" + i
+                               + "?X-Amz-Algorithm=AWS4-HMAC-SHA256&X-Amz-Credential=minio%2F20240101%2Fus-east-1"
+                               + "%2Fs3%2Faws4_request&X-Amz-Date=" + formatter.format(signedAt)
+                               + "&X-Amz-Expires=" + validity.toSeconds()
+                               + "&X-Amz-SignedHeaders=host&X-Amz-Signature=0123456789abcdef";
+            legacyUrls.add(url);
+            presignedUrls.add(PresignedUrl.of(url, signedAt, validity));
+        }
+    }
+
+    @Benchmark
+    public int legacyRegexExpiry() {
+        int expired = 0;
+        for (final String url : legacyUrls) {
+            if (isExpiredLegacy(url)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    @Benchmark
+    public int typedExpiry() {
+        final long now = System.currentTimeMillis();
+        int expired = 0;
+        for (final PresignedUrl url : presignedUrls) {
+            if (url.isExpired(now, MARGIN_MILLIS)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * The expiry check as it was implemented in MediaService before expiry metadata was stored with the url.
+     */
+    private static boolean isExpiredLegacy(final String url) {
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
+        final Pattern datePattern = Pattern.compile("X-Amz-Date=([0-9]*T[0-9]*)");
+        final Matcher dateMatcher = datePattern.matcher(url);
+        final Pattern expiryPattern = Pattern.compile("X-Amz-Expires=([0-9]*)");
+        final Matcher expiryMatcher = expiryPattern.matcher(url);
+
+        String dateString = "";
+        while (dateMatcher.find()) {
+            dateString = dateMatcher.group(1);
+        }
+        long expiry = 0;
+        while (expiryMatcher.find()) {
+            expiry = Long.parseLong(expiryMatcher.group(1));
+        }
+
+        final ZonedDateTime date = ZonedDateTime.parse(dateString, formatter);
+        final ZonedDateTime expiration = date.plusSeconds(expiry - 300);
+
+        return expiration.toInstant().isBefore(Instant.now());
+    }
+}
@@ -0,0 +1,77 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.generated.dto.Forum;
+import de.unistuttgart.iste.meitrex.generated.dto.ForumActivityEntry;
+import de.unistuttgart.iste.meitrex.generated.dto.QuestionThread;
+import de.unistuttgart.iste.meitrex.generated.dto.Thread;
+import de.unistuttgart.iste.meitrex.media_service.benchmark.ForumFixtures;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.ForumEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.ForumMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in-memory parts of the forum queries: ranking the open questions of a forum and collecting the
+ * activities of a user across all forums they are a member of. The benchmark lives in the service package because
+ * the measured helpers are package-private; the service is created without repositories since none are touched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ForumServiceBenchmark {
+
+    private static final int POSTS_PER_THREAD = 20;
+    private static final int FORUM_COUNT = 10;
+
+    @Param({"50", "500"})
+    private int threadsPerForum;
+
+    private ForumService forumService;
+    private ForumMapper forumMapper;
+    private Forum forum;
+    private List<ForumEntity> forumEntities;
+    private List<QuestionThread> questionThreads;
+    private UUID userId;
+
+    @Setup
+    public void setUp() {
+        final ForumFixtures fixtures = new ForumFixtures(42, 200);
+        forumMapper = ForumFixtures.forumMapper();
+        forumService = new ForumService(null, null, null, null, null, null, null, null,
+                forumMapper, null, null, null, null, null);
+
+        forumEntities = new ArrayList<>(FORUM_COUNT);
+        for (int i = 0; i < FORUM_COUNT; i++) {
+            forumEntities.add(fixtures.forum(threadsPerForum, POSTS_PER_THREAD));
+        }
+        forum = forumMapper.forumEntityToForum(forumEntities.getFirst());
+        questionThreads = forum.getThreads().stream()
+                .filter(QuestionThread.class::isInstance)
+                .map(QuestionThread.class::cast)
+                .toList();
+        userId = fixtures.getUserIds().getFirst();
+    }
+
+    @Benchmark
+    public List<Thread> openQuestions() {
+        return forumService.openQuestions(forum);
+    }
+
+    @Benchmark
+    public double calculatePriorityScore() {
+        double sum = 0;
+        for (final QuestionThread questionThread : questionThreads) {
+            sum += forumService.calculatePriorityScore(questionThread, 10, 0.6, 0.4);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<ForumActivityEntry> extractForumActivitiesForUser() {
+        return forumService.extractForumActivitiesForUser(forumEntities, userId, forumMapper);
+    }
+}
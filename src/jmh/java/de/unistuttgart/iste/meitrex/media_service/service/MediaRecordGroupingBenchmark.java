@@ -0,0 +1,71 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures how media records fetched for a batch of contents or courses are sorted into one list per requested id,
+ * see {@link MediaService#groupByIds}. Every media record is linked to a few contents of a single course, like the
+ * batched content and course resolvers of the GraphQL API see them. The mapping is the identity, so only the grouping
+ * is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MediaRecordGroupingBenchmark {
+
+    private static final int CONTENTS_PER_RECORD = 3;
+    private static final int COURSE_COUNT = 20;
+
+    @Param({"100", "10000"})
+    private int recordCount;
+
+    private List<MediaRecordEntity> records;
+    private List<UUID> contentIds;
+    private List<UUID> courseIds;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        contentIds = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            contentIds.add(UUID.randomUUID());
+        }
+        courseIds = new ArrayList<>(COURSE_COUNT);
+        for (int i = 0; i < COURSE_COUNT; i++) {
+            courseIds.add(UUID.randomUUID());
+        }
+
+        records = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            final List<UUID> recordContentIds = new ArrayList<>(CONTENTS_PER_RECORD);
+            for (int j = 0; j < CONTENTS_PER_RECORD; j++) {
+                recordContentIds.add(contentIds.get(random.nextInt(contentIds.size())));
+            }
+            records.add(MediaRecordEntity.builder()
+                    .id(UUID.randomUUID())
+                    .name("Media record " + i)
+                    .type(MediaRecordEntity.MediaType.DOCUMENT)
+                    .contentIds(recordContentIds)
+                    .courseIds(List.of(courseIds.get(random.nextInt(COURSE_COUNT))))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<List<MediaRecordEntity>> groupByContentIds() {
+        return MediaService.groupByIds(contentIds, records, MediaRecordEntity::getContentIds, Function.identity());
+    }
+
+    @Benchmark
+    public List<List<MediaRecordEntity>> groupByCourseIds() {
+        return MediaService.groupByIds(courseIds, records, MediaRecordEntity::getCourseIds, Function.identity());
+    }
+}
@@ -0,0 +1,164 @@
+package de.unistuttgart.iste.meitrex.media_service.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sends the same GraphQL request to a running media service from many concurrent clients and reports throughput and
+ * latency. Used to compare request handling on platform threads and on virtual threads
+ * (spring.threads.virtual.enabled), see the README.
+ * <p>
+ * Configured with system properties, which the loadTest Gradle task takes from the project properties:
+ * <ul>
+ *     <li>loadtest.url: GraphQL endpoint, default http://localhost:3001/graphql</li>
+ *     <li>loadtest.ids: comma separated ids of existing media records, their download urls are requested</li>
+ *     <li>loadtest.query: GraphQL query to send instead of the default one</li>
+ *     <li>loadtest.concurrency: number of concurrent clients, default 500</li>
+ *     <li>loadtest.warmup: time before measuring starts, default PT10S</li>
+ *     <li>loadtest.duration: time of the measurement, default PT30S</li>
+ * </ul>
+ */
+public class GraphQlLoadTest {
+
+    private static final String DEFAULT_QUERY =
+            "{ _internal_noauth_mediaRecordsByIds(ids: [%s]) { id downloadUrl standardizedDownloadUrl } }";
+
+    private final HttpClient client;
+    private final HttpRequest request;
+
+    private GraphQlLoadTest(final HttpClient client, final HttpRequest request) {
+        this.client = client;
+        this.request = request;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final URI url = URI.create(System.getProperty("loadtest.url", "http://localhost:3001/graphql"));
+        final int concurrency = Integer.getInteger("loadtest.concurrency", 500);
+        final Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        final Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        final String query = System.getProperty("loadtest.query", defaultQuery(System.getProperty("loadtest.ids", "")));
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            final HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(clients)
+                    .build();
+            final HttpRequest request = HttpRequest.newBuilder(url)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"query\":\"" + escape(query) + "\"}"))
+                    .build();
+
+            System.out.printf("%d clients sending %s to %s%n", concurrency, query, url);
+            final GraphQlLoadTest loadTest = new GraphQlLoadTest(client, request);
+
+            final long start = System.nanoTime();
+            final long measureFrom = start + warmup.toNanos();
+            final long measureUntil = measureFrom + duration.toNanos();
+
+            final List<Future<Result>> results = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                results.add(clients.submit(() -> loadTest.run(measureFrom, measureUntil)));
+            }
+
+            Result total = new Result();
+            for (final Future<Result> result : results) {
+                total = total.merge(result.get());
+            }
+            total.print(duration);
+        }
+    }
+
+    /**
+     * Sends requests one after the other until the end of the measurement, recording the ones which are sent after
+     * the warmup.
+     */
+    private Result run(final long measureFrom, final long measureUntil) throws InterruptedException {
+        final Result result = new Result();
+        while (System.nanoTime() < measureUntil) {
+            final long sent = System.nanoTime();
+            boolean ok;
+            try {
+                final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                // GraphQL reports most errors with status 200
+                ok = response.statusCode() == 200 && !response.body().contains("\"errors\"");
+            } catch (final IOException e) {
+                ok = false;
+            }
+            final long received = System.nanoTime();
+            if (sent >= measureFrom && received <= measureUntil) {
+                result.record(ok, received - sent);
+            }
+        }
+        return result;
+    }
+
+    private static String defaultQuery(final String ids) {
+        final String quotedIds = Arrays.stream(ids.split(","))
+                .map(String::strip)
+                .filter(id -> !id.isEmpty())
+                .map(id -> "\"" + id + "\"")
+                .reduce((a, b) -> a + ", " + b)
+                .orElse("");
+        return DEFAULT_QUERY.formatted(quotedIds);
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Result {
+        private long[] latencies = new long[1024];
+        private int successes;
+        private int failures;
+
+        private void record(final boolean ok, final long latencyNanos) {
+            if (!ok) {
+                failures++;
+                return;
+            }
+            if (successes == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[successes++] = latencyNanos;
+        }
+
+        private Result merge(final Result other) {
+            final Result merged = new Result();
+            merged.latencies = Arrays.copyOf(latencies, successes + other.successes);
+            System.arraycopy(other.latencies, 0, merged.latencies, successes, other.successes);
+            merged.successes = successes + other.successes;
+            merged.failures = failures + other.failures;
+            return merged;
+        }
+
+        private void print(final Duration duration) {
+            final long[] sorted = Arrays.copyOf(latencies, successes);
+            Arrays.sort(sorted);
+            System.out.printf("throughput: %.1f requests/s, %d successful, %d failed%n",
+                    successes / (duration.toMillis() / 1000.0), successes, failures);
+            System.out.printf("latency: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0));
+        }
+
+        private static double percentile(final long[] sorted, final double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
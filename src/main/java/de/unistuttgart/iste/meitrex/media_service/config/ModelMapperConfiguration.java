@@ -5,7 +5,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
- * Provides a bean for the ModelMapper. The model mapper is used to map entities to DTOs and vice versa.
+ * Provides a bean for the ModelMapper. The model mapper is only used for the rarely requested forum thread content
+ * references, all hot paths use the handwritten mappers in the persistence.mapper package.
  */
 @Configuration
 public class ModelMapperConfiguration {
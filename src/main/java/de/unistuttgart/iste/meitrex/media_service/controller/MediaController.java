@@ -5,6 +5,9 @@ import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
 import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser.UserRoleInCourse;
 import de.unistuttgart.iste.meitrex.generated.dto.CreateMediaRecordInput;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordConnection;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordFilter;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordPageInput;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordProgressData;
 import de.unistuttgart.iste.meitrex.generated.dto.UpdateMediaRecordInput;
 import de.unistuttgart.iste.meitrex.media_service.exception.NoAccessToMediaRecord;
@@ -89,6 +92,26 @@ public class MediaController {
         return mediaService.getMediaRecordsForUsers(userIds);
     }
 
+    @QueryMapping
+    public MediaRecordConnection mediaRecordsConnection(@Argument final MediaRecordFilter filter,
+                                                        @Argument final MediaRecordPageInput page,
+                                                        @ContextValue final LoggedInUser currentUser) {
+        if (filter == null || filter.getCourseIds() == null || filter.getCourseIds().isEmpty()) {
+            // without a course restriction the query would page through all media records of the system
+            validateUserHasGlobalPermission(currentUser, Set.of(LoggedInUser.RealmRole.SUPER_USER));
+        } else {
+            validateUserHasAccessToCourses(currentUser, UserRoleInCourse.STUDENT, filter.getCourseIds());
+        }
+
+        return mediaService.getMediaRecordsPage(filter, page);
+    }
+
+    @QueryMapping
+    public MediaRecordConnection _internal_noauth_mediaRecordsConnection(@Argument final MediaRecordFilter filter,
+                                                                         @Argument final MediaRecordPageInput page) {
+        return mediaService.getMediaRecordsPage(filter, page);
+    }
+
     @QueryMapping
     public List<List<MediaRecord>> mediaRecordsByContentIds(@Argument final List<UUID> contentIds,
                                                             @ContextValue final LoggedInUser currentUser) {
@@ -115,11 +138,17 @@ public class MediaController {
     }
 
 
-    @SchemaMapping(typeName = "MediaRecord", field = "userProgressData")
-    public MediaRecordProgressData userProgressData(final MediaRecord mediaRecord,
-                                                    @ContextValue final LoggedInUser currentUser) {
-        checkAccessForMediaRecords(currentUser, List.of(mediaRecord), UserRoleInCourse.STUDENT);
-        return mediaUserProgressDataService.getUserProgressData(mediaRecord.getId(), currentUser.getId());
+    /**
+     * Resolves the progress data of the current user for all media records of a request at once, so that listing
+     * many media records does not result in one database lookup per media record.
+     */
+    @BatchMapping(typeName = "MediaRecord", field = "userProgressData")
+    public List<MediaRecordProgressData> userProgressData(final List<MediaRecord> mediaRecords,
+                                                          @ContextValue final LoggedInUser currentUser) {
+        checkAccessForMediaRecords(currentUser, mediaRecords, UserRoleInCourse.STUDENT);
+        return mediaUserProgressDataService.getUserProgressData(
+                mediaRecords.stream().map(MediaRecord::getId).toList(),
+                currentUser.getId());
     }
 
     @MutationMapping
@@ -145,6 +174,15 @@ public class MediaController {
         return mediaService.deleteMediaRecord(id);
     }
 
+    @MutationMapping
+    public List<UUID> deleteMediaRecords(@Argument final List<UUID> ids,
+                                         @ContextValue final LoggedInUser currentUser) {
+        checkAccessForMediaRecordsAndThrowException(currentUser, mediaService.getMediaRecordsByIds(ids),
+                UserRoleInCourse.ADMINISTRATOR);
+
+        return mediaService.deleteMediaRecords(ids);
+    }
+
     @MutationMapping
     public MediaRecord updateMediaRecord(@Argument final List<UUID> courseIds,
                                          @Argument final UpdateMediaRecordInput input,
@@ -167,6 +205,14 @@ public class MediaController {
         return mediaUserProgressDataService.logMediaRecordWorkedOn(mediaRecordId, currentUser.getId());
     }
 
+    @MutationMapping
+    public List<MediaRecord> logMediaRecordsWorkedOn(@Argument final List<UUID> mediaRecordIds,
+                                                     @ContextValue final LoggedInUser currentUser) {
+        checkAccessForMediaRecordsAndThrowException(currentUser, mediaService.getMediaRecordsByIds(mediaRecordIds),
+                UserRoleInCourse.STUDENT);
+        return mediaUserProgressDataService.logMediaRecordsWorkedOn(mediaRecordIds, currentUser.getId());
+    }
+
     @MutationMapping
     public List<MediaRecord> setLinkedMediaRecordsForContent(@Argument final UUID contentId,
                                                              @Argument final List<UUID> mediaRecordIds,
@@ -192,38 +238,29 @@ public class MediaController {
         return mediaService.setMediaRecordsForCourse(courseId, mediaRecordIds);
     }
 
-    @SchemaMapping(typeName = "MediaRecord", field = "downloadUrl")
-    public String downloadUrl(final MediaRecord mediaRecord) {
-        if (mediaRecord.getDownloadUrl() != null)
-            return mediaRecord.getDownloadUrl();
-
-        return mediaService.createMediaRecordDownloadUrl(mediaRecord.getId());
+    @BatchMapping(typeName = "MediaRecord", field = "downloadUrl")
+    public List<String> downloadUrl(final List<MediaRecord> mediaRecords) {
+        return mediaService.createMediaRecordDownloadUrls(mediaRecords);
     }
 
-    @SchemaMapping(typeName = "MediaRecord", field = "uploadUrl")
-    public String uploadUrl(final MediaRecord mediaRecord) {
-        if (mediaRecord.getUploadUrl() != null)
-            return mediaRecord.getUploadUrl();
-
-        return mediaService.createMediaRecordUploadUrl(mediaRecord);
+    @BatchMapping(typeName = "MediaRecord", field = "uploadUrl")
+    public List<String> uploadUrl(final List<MediaRecord> mediaRecords) {
+        return mediaService.createMediaRecordUploadUrls(mediaRecords);
     }
 
-    @SchemaMapping(typeName = "MediaRecord", field = "internalDownloadUrl")
-    public String internalDownloadUrl(final MediaRecord mediaRecord) {
-        return mediaService.createMediaRecordInternalDownloadUrl(mediaRecord.getId());
+    @BatchMapping(typeName = "MediaRecord", field = "internalDownloadUrl")
+    public List<String> internalDownloadUrl(final List<MediaRecord> mediaRecords) {
+        return mediaService.createMediaRecordInternalDownloadUrls(mediaRecords);
     }
 
-    @SchemaMapping(typeName = "MediaRecord", field = "internalUploadUrl")
-    public String internalUploadUrl(final MediaRecord mediaRecord) {
-        return mediaService.createMediaRecordInternalUploadUrl(mediaRecord.getId());
+    @BatchMapping(typeName = "MediaRecord", field = "internalUploadUrl")
+    public List<String> internalUploadUrl(final List<MediaRecord> mediaRecords) {
+        return mediaService.createMediaRecordInternalUploadUrls(mediaRecords);
     }
 
     @SchemaMapping(typeName = "MediaRecord", field = "standardizedDownloadUrl")
     public String standardizedDownloadUrl(final MediaRecord mediaRecord) {
-        if (mediaRecord.getStandardizedDownloadUrl() != null)
-            return mediaRecord.getStandardizedDownloadUrl();
-
-        return mediaService.createMediaRecordStandardizedDownloadUrl(mediaRecord.getId()).orElse(null);
+        return mediaService.createMediaRecordStandardizedDownloadUrl(mediaRecord).orElse(null);
     }
 
     /**
@@ -1,60 +1,86 @@
 package de.unistuttgart.iste.meitrex.media_service.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import de.unistuttgart.iste.meitrex.media_service.service.MediaService;
-import de.unistuttgart.iste.meitrex.media_service.service.SubmissionService;
-import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
+import com.fasterxml.jackson.databind.ObjectReader;
+import de.unistuttgart.iste.meitrex.media_service.service.MinioEventService;
+import de.unistuttgart.iste.meitrex.media_service.service.MinioEventService.ObjectCreatedEvent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.UUID;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Controller providing endpoints for MinIO webhooks.
  */
 @RestController
-@RequiredArgsConstructor
 @Slf4j
 public class WebhookController {
 
-    private final MediaService mediaService;
+    private final MinioEventService minioEventService;
+    private final ObjectReader reader;
+
+    public WebhookController(final MinioEventService minioEventService, final ObjectMapper objectMapper) {
+        this.minioEventService = minioEventService;
+        this.reader = objectMapper.reader();
+    }
 
     /**
-     * Endpoint for MinIO webhook that is triggered when a new object is created in the bucket.
+     * Endpoint for MinIO webhook that is triggered when new objects are created in a bucket. The objects are stored
+     * for processing before the request is answered, the processing itself happens asynchronously.
      * @param payload The webhook http request body
+     * @return 202 if the objects have been stored for processing, 400 if the payload is invalid or 503 if storing them
+     * failed and MinIO should retry later
      */
     @PostMapping("/webhook/on-minio-object-create")
-    @SneakyThrows
-    public void receiveOnMinioObjectCreateWebhook(@RequestBody String payload) {
-        // the webhook payload is a JSON object with a "Records" array
-        JsonNode root = new ObjectMapper().readTree(payload);
-
-        // from the records array, get the file name of the uploaded object. File name matches the media record id
-        String fileName = root.get("Records").get(0).get("s3").get("object").get("key").asText();
-
-        String bucketName = root.get("Records").get(0).get("s3").get("bucket").get("name").asText();
-
-        if(fileName.endsWith("_standardized")) {
-            // ignore standardized files, they are a conversion of an already uploaded file
-            return;
+    public ResponseEntity<Void> receiveOnMinioObjectCreateWebhook(@RequestBody String payload) {
+        final List<ObjectCreatedEvent> events;
+        try {
+            events = parseEvents(reader.readTree(payload));
+        } catch (final JsonProcessingException | IllegalArgumentException e) {
+            log.warn("Received invalid MinIO webhook payload", e);
+            return ResponseEntity.badRequest().build();
         }
 
-        if(bucketName.equals(SubmissionService.BUCKET_ID)) {
-            //ignore files for submissions
-            log.info("skipped publish topic for submission");
-            return;
+        if (!minioEventService.process(events)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
+        return ResponseEntity.accepted().build();
+    }
 
-        UUID mediaRecordId = UUID.fromString(fileName);
-
-        // check if this file needs to be converted to a standardized format and do so if it needs to be
-        mediaService.convertToStandardizedFileIfPossibleAndNecessary(mediaRecordId);
+    /**
+     * The webhook payload is a JSON object with a "Records" array, containing one record per created object.
+     */
+    private static List<ObjectCreatedEvent> parseEvents(final JsonNode root) {
+        final JsonNode records = root.path("Records");
+        if (!records.isArray()) {
+            throw new IllegalArgumentException("Payload does not contain a Records array");
+        }
 
-        // publish dapr event
-        mediaService.publishMediaRecordFileCreatedEvent(mediaRecordId);
+        final List<ObjectCreatedEvent> events = new ArrayList<>(records.size());
+        for (final JsonNode record : records) {
+            final JsonNode s3 = record.path("s3");
+            final String bucket = s3.path("bucket").path("name").asText(null);
+            final String key = s3.path("object").path("key").asText(null);
+            if (bucket == null || key == null) {
+                throw new IllegalArgumentException("Record does not contain a bucket and key");
+            }
+            events.add(new ObjectCreatedEvent(
+                    bucket,
+                    // keys are url encoded in event notifications
+                    URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    s3.path("object").path("eTag").asText(""),
+                    // unknown sizes are converted last
+                    s3.path("object").path("size").asLong(Long.MAX_VALUE)));
+        }
+        return events;
     }
 }
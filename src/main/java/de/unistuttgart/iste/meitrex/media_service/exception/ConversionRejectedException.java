@@ -0,0 +1,16 @@
+package de.unistuttgart.iste.meitrex.media_service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown if a file conversion cannot be accepted because all conversion workers are busy and the queue is full.
+ * Answered with 503 so that callers like the MinIO webhook retry the request later.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ConversionRejectedException extends RuntimeException {
+
+    public ConversionRejectedException() {
+        super("Too many file conversions in progress, try again later.");
+    }
+}
@@ -0,0 +1,77 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.entity.media;
+
+import de.unistuttgart.iste.meitrex.common.persistence.IWithId;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A pending or finished conversion of the file of a media record to its standardized format.
+ * <p>
+ * There is at most one job per media record. Jobs are claimed by setting them to {@link State#RUNNING} with a lease;
+ * if the replica running a job dies, the lease expires and another replica claims the job again.
+ */
+@Entity(name = "ConversionJob")
+@Table(indexes = @Index(name = "idx_conversion_job_claim", columnList = "state, priority, next_attempt_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversionJobEntity implements IWithId<UUID> {
+
+    @Id
+    private UUID id;
+
+    @Column(nullable = false, unique = true)
+    private UUID mediaRecordId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private State state;
+
+    /**
+     * Jobs with a lower value are claimed first. The size of the file in bytes, so small files are converted first.
+     */
+    @Column(nullable = false)
+    private long priority;
+
+    /**
+     * Number of times the job has been claimed.
+     */
+    @Column(nullable = false)
+    private int attempts;
+
+    /**
+     * Earliest time the job may be claimed, used to back off after failed attempts.
+     */
+    @Column(nullable = false)
+    private OffsetDateTime nextAttemptAt;
+
+    /**
+     * Time after which a running job is considered abandoned and may be claimed again.
+     */
+    @Column
+    private OffsetDateTime leaseExpiresAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    /**
+     * Set if the file has been uploaded again while the job was running. The running attempt may have converted the
+     * previous file, so the job is queued again once the attempt has finished instead of being marked done or failed.
+     */
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean requeued;
+
+    @Column(nullable = false)
+    private OffsetDateTime updatedAt;
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+}
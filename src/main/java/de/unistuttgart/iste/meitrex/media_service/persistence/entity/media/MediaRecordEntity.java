@@ -3,13 +3,19 @@ package de.unistuttgart.iste.meitrex.media_service.persistence.entity.media;
 import de.unistuttgart.iste.meitrex.common.persistence.IWithId;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
 
 import java.io.Serializable;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @Entity(name = "MediaRecord")
+@Table(indexes = {
+        @Index(name = "idx_media_record_creator_id", columnList = "creator_id"),
+        @Index(name = "idx_media_record_name_id", columnList = "name, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -30,19 +36,33 @@ public class MediaRecordEntity implements IWithId<UUID>, Serializable {
     @Column(nullable = false)
     private MediaType type;
 
-    @ElementCollection
-    private List<UUID> contentIds;
-
-    @Column(length = 500)
-    private String uploadUrl;
+    /**
+     * Time the media record has been created. Its file is uploaded afterward, so a media record without a file is
+     * only considered abandoned once it is older than a grace period. Media records created before this column
+     * existed get the time it was added.
+     */
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false, columnDefinition = "timestamp(6) with time zone default now()")
+    @EqualsAndHashCode.Exclude
+    private OffsetDateTime createdAt;
 
-    @Column(length = 500)
-    private String downloadUrl;
+    /**
+     * Hash of the uploaded file, e.g. {@code md5:<hex>}, or null if the file has not been uploaded yet or its hash is
+     * unknown. Files with the same hash have the same content.
+     * <p>
+     * The service itself does not read the hash, standardized files are looked up by the hash of the file being
+     * converted. It is stored to record which file each media record currently has, so media records with the same
+     * file can be found, e.g. when analyzing duplicate uploads. The column is not indexed, queries filtering by it
+     * need an index first.
+     */
+    @Column(length = 80)
+    private String contentHash;
 
-    @Column(length = 500, nullable = true)
-    private String standardizedDownloadUrl;
+    @ElementCollection
+    private List<UUID> contentIds;
 
     @ElementCollection
+    @CollectionTable(indexes = @Index(name = "idx_media_record_course_ids_course_id", columnList = "course_ids"))
     private List<UUID> courseIds;
 
     @OneToMany(mappedBy = "primaryKey.mediaRecordId", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -0,0 +1,48 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.entity.media;
+
+import de.unistuttgart.iste.meitrex.common.persistence.IWithId;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * An uploaded file whose "new material" notification has not been published yet.
+ * <p>
+ * The file is first stored without a course. Once its upload has settled, it is replaced by one entry per course of
+ * the media record, which is deleted when the notification of the course has been published. Keeping the entries in
+ * the database lets any replica publish them, also after the replica the file was uploaded to has stopped.
+ */
+@Entity(name = "PendingMaterialNotification")
+@Table(indexes = @Index(name = "idx_pending_material_notification_course", columnList = "course_id, media_record_id"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingMaterialNotificationEntity implements IWithId<UUID> {
+
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID mediaRecordId;
+
+    /**
+     * The course to notify, null until the upload has settled and the media record has been assigned to its courses.
+     */
+    @Column
+    private UUID courseId;
+
+    /**
+     * Time of the first upload of the file, which orders the files in the notification.
+     */
+    @Column(nullable = false)
+    private OffsetDateTime firstUploadedAt;
+
+    /**
+     * Time of the latest upload of the file, which restarts the quiet period of the course.
+     */
+    @Column(nullable = false)
+    private OffsetDateTime lastUploadedAt;
+}
@@ -0,0 +1,37 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.entity.media;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Index from the content hash of an uploaded file to the standardized file which has been created from it, so that
+ * uploading the same file again does not require converting it again.
+ * <p>
+ * The referenced object may have been deleted in the meantime, users of this index have to check that it exists.
+ */
+@Entity(name = "StandardizedFile")
+@Table(indexes = @Index(name = "idx_standardized_file_object", columnList = "bucket, object_name"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StandardizedFileEntity {
+
+    /**
+     * Hash of the original file, see {@link MediaRecordEntity#getContentHash()}.
+     */
+    @Id
+    @Column(length = 80)
+    private String contentHash;
+
+    @Column(nullable = false)
+    private String bucket;
+
+    @Column(nullable = false)
+    private String objectName;
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,91 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.entity.outbox;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * An event which has been written together with the change it describes and still has to be published to Dapr.
+ * <p>
+ * Events are published in the order of the transactions which wrote them and deleted once published. Events of the
+ * same aggregate wait for each other, events of different aggregates do not. An event which could not be published
+ * after the maximum number of attempts is marked as failed and kept for inspection, so that it no longer holds up
+ * the later events of its aggregate.
+ */
+@Entity(name = "OutboxEvent")
+@Table(indexes = {
+        @Index(name = "idx_outbox_event_pending", columnList = "failed_at, tx_id, id"),
+        @Index(name = "idx_outbox_event_aggregate", columnList = "aggregate_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Id of the transaction which wrote the event, assigned by the database. Unlike the id, it tells whether all
+     * transactions which could still write an earlier event have finished.
+     */
+    @Column(nullable = false, insertable = false, updatable = false,
+            columnDefinition = "xid8 default pg_current_xact_id()")
+    private Long txId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 40)
+    private Type type;
+
+    /**
+     * Id of the entity the event is about, e.g. the media record or the user. Events with the same aggregate id are
+     * published in order, a failing event only holds up the events with the same aggregate id.
+     */
+    @Column
+    private UUID aggregateId;
+
+    /**
+     * The event serialized as JSON.
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt;
+
+    /**
+     * Number of failed attempts to publish the event.
+     */
+    @Column(nullable = false)
+    private int attempts;
+
+    /**
+     * Earliest time of the next attempt, used to back off after failed attempts.
+     */
+    @Column
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column
+    private OffsetDateTime failedAt;
+
+    /**
+     * The topic publisher method the event is published with.
+     */
+    public enum Type {
+        CONTENT_MEDIA_RECORD_LINKS_SET,
+        MEDIA_RECORD_DELETED,
+        MEDIA_RECORD_FILE_CREATED,
+        MEDIA_RECORD_WORKED_ON,
+        USER_WORKED_ON_CONTENT,
+        SUBMISSION_COMPLETED,
+        FORUM_ACTIVITY,
+        NOTIFICATION
+    }
+}
@@ -0,0 +1,91 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.mapper;
+
+import de.unistuttgart.iste.meitrex.generated.dto.CreateMediaRecordInput;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordProgressData;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaType;
+import de.unistuttgart.iste.meitrex.generated.dto.UpdateMediaRecordInput;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordProgressDataEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maps media records and their progress data between entities and DTOs.
+ * <p>
+ * Only the fields present in the target are read, so e.g. the lazily loaded progress data of a media record entity
+ * is never initialized when mapping it to a DTO.
+ */
+@Component
+public class MediaRecordMapper {
+
+    public MediaRecord entityToDto(final MediaRecordEntity entity) {
+        return MediaRecord.builder()
+                .setId(entity.getId())
+                .setName(entity.getName())
+                .setCreatorId(entity.getCreatorId())
+                .setType(typeToDto(entity.getType()))
+                .setCourseIds(copyList(entity.getCourseIds()))
+                .setContentIds(copyList(entity.getContentIds()))
+                .build();
+    }
+
+    public MediaRecordEntity createInputToEntity(final CreateMediaRecordInput input) {
+        return MediaRecordEntity.builder()
+                .name(input.getName())
+                .type(typeToEntity(input.getType()))
+                .contentIds(copyList(input.getContentIds()))
+                .build();
+    }
+
+    public MediaRecordEntity updateInputToEntity(final UpdateMediaRecordInput input) {
+        return MediaRecordEntity.builder()
+                .id(input.getId())
+                .name(input.getName())
+                .type(typeToEntity(input.getType()))
+                .contentIds(copyList(input.getContentIds()))
+                .build();
+    }
+
+    public MediaRecordProgressData progressDataToDto(final MediaRecordProgressDataEntity entity) {
+        return MediaRecordProgressData.builder()
+                .setWorkedOn(entity.isWorkedOn())
+                .setDateWorkedOn(entity.getWorkedOnDate())
+                .build();
+    }
+
+    public MediaType typeToDto(final MediaRecordEntity.MediaType type) {
+        if (type == null) {
+            return null;
+        }
+        return switch (type) {
+            case AUDIO -> MediaType.AUDIO;
+            case VIDEO -> MediaType.VIDEO;
+            case IMAGE -> MediaType.IMAGE;
+            case PRESENTATION -> MediaType.PRESENTATION;
+            case DOCUMENT -> MediaType.DOCUMENT;
+            case URL -> MediaType.URL;
+        };
+    }
+
+    public MediaRecordEntity.MediaType typeToEntity(final MediaType type) {
+        if (type == null) {
+            return null;
+        }
+        return switch (type) {
+            case AUDIO -> MediaRecordEntity.MediaType.AUDIO;
+            case VIDEO -> MediaRecordEntity.MediaType.VIDEO;
+            case IMAGE -> MediaRecordEntity.MediaType.IMAGE;
+            case PRESENTATION -> MediaRecordEntity.MediaType.PRESENTATION;
+            case DOCUMENT -> MediaRecordEntity.MediaType.DOCUMENT;
+            case URL -> MediaRecordEntity.MediaType.URL;
+        };
+    }
+
+    private static List<UUID> copyList(final List<UUID> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+}
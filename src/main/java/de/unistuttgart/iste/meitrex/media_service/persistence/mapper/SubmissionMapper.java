@@ -0,0 +1,128 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.mapper;
+
+import de.unistuttgart.iste.meitrex.generated.dto.File;
+import de.unistuttgart.iste.meitrex.generated.dto.Result;
+import de.unistuttgart.iste.meitrex.generated.dto.Status;
+import de.unistuttgart.iste.meitrex.generated.dto.SubmissionExercise;
+import de.unistuttgart.iste.meitrex.generated.dto.SubmissionSolution;
+import de.unistuttgart.iste.meitrex.generated.dto.Task;
+import de.unistuttgart.iste.meitrex.generated.dto.TaskResult;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.submission.*;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Maps submission exercises and everything they contain from entities to DTOs.
+ * <p>
+ * Only the properties present in the DTOs are read, so internal state like url expiry timestamps or required scores
+ * is never accessed.
+ */
+@Component
+public class SubmissionMapper {
+
+    public SubmissionExercise exerciseToDto(final SubmissionExerciseEntity entity) {
+        return exerciseToDto(entity, entity.getSolutions());
+    }
+
+    /**
+     * Maps the passed exercise, but with the passed solutions instead of all solutions of the exercise. The
+     * solutions of the entity are neither read nor modified.
+     *
+     * @param entity    the exercise to map
+     * @param solutions the solutions to include in the DTO
+     * @return the mapped exercise
+     */
+    public SubmissionExercise exerciseToDto(final SubmissionExerciseEntity entity,
+                                            final List<ExerciseSolutionEntity> solutions) {
+        return SubmissionExercise.builder()
+                .setAssessmentId(entity.getAssessmentId())
+                .setCourseId(entity.getCourseId())
+                .setEndDate(entity.getEndDate())
+                .setFiles(mapList(entity.getFiles(), this::fileToDto))
+                .setSolutions(mapList(solutions, this::solutionToDto))
+                .setTasks(mapList(entity.getTasks(), this::taskToDto))
+                .build();
+    }
+
+    public SubmissionSolution solutionToDto(final ExerciseSolutionEntity entity) {
+        return SubmissionSolution.builder()
+                .setId(entity.getId())
+                .setUserId(entity.getUserId())
+                .setUserName(entity.getUserName())
+                .setFirstName(entity.getFirstName())
+                .setLastName(entity.getLastName())
+                .setSubmissionDate(entity.getSubmissionDate())
+                .setFiles(mapList(entity.getFiles(), this::fileToDto))
+                .setResult(entity.getResult() == null ? null : resultToDto(entity.getResult()))
+                .build();
+    }
+
+    public Result resultToDto(final ResultEntity entity) {
+        return Result.builder()
+                .setId(entity.getId())
+                .setStatus(statusToDto(entity.getStatus()))
+                .setResults(mapList(entity.getResults(), this::taskResultToDto))
+                .build();
+    }
+
+    public TaskResult taskResultToDto(final TaskResultEntity entity) {
+        return TaskResult.builder()
+                .setItemId(entity.getItemId())
+                .setScore(entity.getScore())
+                .build();
+    }
+
+    public File fileToDto(final FileEntity entity) {
+        return File.builder()
+                .setId(entity.getId())
+                .setUploadUrl(entity.getUploadUrl())
+                .setDownloadUrl(entity.getDownloadUrl())
+                .setName(entity.getName())
+                .build();
+    }
+
+    public Task taskToDto(final TaskEntity entity) {
+        return Task.builder()
+                .setItemId(entity.getItemId())
+                .setName(entity.getName())
+                .setNumber(entity.getNumber())
+                .setMaxScore(entity.getMaxScore())
+                .build();
+    }
+
+    public Status statusToDto(final ResultEntity.Status status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status) {
+            case pending -> Status.pending;
+            case passed -> Status.passed;
+            case failed -> Status.failed;
+        };
+    }
+
+    public ResultEntity.Status statusToEntity(final Status status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status) {
+            case pending -> ResultEntity.Status.pending;
+            case passed -> ResultEntity.Status.passed;
+            case failed -> ResultEntity.Status.failed;
+        };
+    }
+
+    private static <E, D> List<D> mapList(final List<E> entities, final Function<E, D> mapper) {
+        if (entities == null) {
+            return null;
+        }
+        final List<D> result = new ArrayList<>(entities.size());
+        for (final E entity : entities) {
+            result.add(mapper.apply(entity));
+        }
+        return result;
+    }
+}
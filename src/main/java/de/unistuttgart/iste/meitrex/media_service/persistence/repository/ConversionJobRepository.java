@@ -0,0 +1,133 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
+
+import de.unistuttgart.iste.meitrex.common.persistence.MeitrexRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.ConversionJobEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ConversionJobRepository extends MeitrexRepository<ConversionJobEntity, UUID> {
+
+    Optional<ConversionJobEntity> findByMediaRecordId(UUID mediaRecordId);
+
+    /**
+     * Locks and returns the jobs which are due, smallest priority first. Jobs locked by another transaction are
+     * skipped, so several replicas can claim jobs at the same time without blocking each other or claiming the same
+     * job. Must be called in a transaction, the locks are held until it ends.
+     */
+    @Query(value = """
+            SELECT * FROM conversion_job
+            WHERE (state = 'QUEUED' AND next_attempt_at <= :now)
+               OR (state = 'RUNNING' AND lease_expires_at < :now)
+            ORDER BY priority, next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    List<ConversionJobEntity> lockDueJobs(@Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+    /**
+     * Creates a queued job for the media record or, if there already is one which is not running, queues it again.
+     * A running job is left alone, see {@link #requeueRunning}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO conversion_job (id, media_record_id, state, priority, attempts, next_attempt_at, updated_at)
+            VALUES (:id, :mediaRecordId, 'QUEUED', :priority, 0, :now, :now)
+            ON CONFLICT (media_record_id) DO UPDATE
+            SET state = 'QUEUED', priority = :priority, attempts = 0, next_attempt_at = :now, lease_expires_at = NULL,
+                last_error = NULL, requeued = FALSE, updated_at = :now
+            WHERE conversion_job.state <> 'RUNNING'""", nativeQuery = true)
+    int enqueue(@Param("id") UUID id,
+                @Param("mediaRecordId") UUID mediaRecordId,
+                @Param("priority") long priority,
+                @Param("now") OffsetDateTime now);
+
+    /**
+     * Flags the running job of the media record to be queued again once its attempt has finished.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE conversion_job SET requeued = TRUE, priority = :priority, updated_at = :now
+            WHERE media_record_id = :mediaRecordId AND state = 'RUNNING'""", nativeQuery = true)
+    int requeueRunning(@Param("mediaRecordId") UUID mediaRecordId,
+                       @Param("priority") long priority,
+                       @Param("now") OffsetDateTime now);
+
+    // The following updates only apply if the job is still running the passed attempt. If the lease of a job expired
+    // and another replica claimed it in the meantime, the result of the old attempt is discarded. If the file has
+    // been uploaded again during the attempt, the job is queued again for the new file with fresh attempts.
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE conversion_job SET state = CASE WHEN requeued THEN 'QUEUED' ELSE 'DONE' END,
+                attempts = CASE WHEN requeued THEN 0 ELSE attempts END,
+                next_attempt_at = CASE WHEN requeued THEN :now ELSE next_attempt_at END,
+                requeued = FALSE, lease_expires_at = NULL, last_error = NULL, updated_at = :now
+            WHERE id = :id AND state = 'RUNNING' AND attempts = :attempt""", nativeQuery = true)
+    int markDone(@Param("id") UUID id, @Param("attempt") int attempt, @Param("now") OffsetDateTime now);
+
+    /**
+     * Queues the job again after a failed attempt, to be retried at the passed time.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE conversion_job SET state = 'QUEUED',
+                attempts = CASE WHEN requeued THEN 0 ELSE attempts END,
+                next_attempt_at = CASE WHEN requeued THEN :now ELSE :nextAttemptAt END,
+                requeued = FALSE, lease_expires_at = NULL, last_error = :error, updated_at = :now
+            WHERE id = :id AND state = 'RUNNING' AND attempts = :attempt""", nativeQuery = true)
+    int retryLater(@Param("id") UUID id,
+                   @Param("attempt") int attempt,
+                   @Param("nextAttemptAt") OffsetDateTime nextAttemptAt,
+                   @Param("error") String error,
+                   @Param("now") OffsetDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE conversion_job SET state = CASE WHEN requeued THEN 'QUEUED' ELSE 'FAILED' END,
+                attempts = CASE WHEN requeued THEN 0 ELSE attempts END,
+                next_attempt_at = CASE WHEN requeued THEN :now ELSE next_attempt_at END,
+                requeued = FALSE, lease_expires_at = NULL, last_error = :error, updated_at = :now
+            WHERE id = :id AND state = 'RUNNING' AND attempts = :attempt""", nativeQuery = true)
+    int markFailed(@Param("id") UUID id,
+                   @Param("attempt") int attempt,
+                   @Param("error") String error,
+                   @Param("now") OffsetDateTime now);
+
+    /**
+     * Queues a claimed job again without counting the attempt, e.g. because no conversion worker was free.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE conversion_job SET state = 'QUEUED', attempts = attempts - 1, lease_expires_at = NULL,
+                requeued = FALSE, updated_at = :now
+            WHERE id = :id AND state = 'RUNNING' AND attempts = :attempt""", nativeQuery = true)
+    int release(@Param("id") UUID id, @Param("attempt") int attempt, @Param("now") OffsetDateTime now);
+
+    /**
+     * Deletes a claimed job whose media record no longer exists.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM conversion_job WHERE id = :id AND state = 'RUNNING' AND attempts = :attempt",
+            nativeQuery = true)
+    int drop(@Param("id") UUID id, @Param("attempt") int attempt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM conversion_job WHERE state = 'DONE' AND updated_at < :before", nativeQuery = true)
+    int deleteDoneBefore(@Param("before") OffsetDateTime before);
+}
@@ -2,10 +2,55 @@ package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
 
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordProgressDataEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
 @Repository
 public interface MediaRecordProgressDataRepository
         extends JpaRepository<MediaRecordProgressDataEntity, MediaRecordProgressDataEntity.PrimaryKey> {
 
+    @Query("SELECT progressData FROM MediaRecordProgressData progressData " +
+            "WHERE progressData.primaryKey.userId = :userId " +
+            "AND progressData.primaryKey.mediaRecordId IN :mediaRecordIds")
+    List<MediaRecordProgressDataEntity> findAllByUserIdAndMediaRecordIds(@Param("userId") UUID userId,
+                                                                         @Param("mediaRecordIds") Collection<UUID> mediaRecordIds);
+
+    /**
+     * Returns those of the passed content ids whose linked media records have all been worked on by the user, checked
+     * with a single aggregate query. Media records without progress data count as not worked on. Content ids without
+     * linked media records are not returned.
+     */
+    @Query(value = """
+            SELECT links.content_ids
+            FROM media_record_content_ids links
+            LEFT JOIN media_record_progress_data progress
+                ON progress.media_record_id = links.media_record_id AND progress.user_id = :userId
+            WHERE links.content_ids IN :contentIds
+            GROUP BY links.content_ids
+            HAVING bool_and(COALESCE(progress.worked_on, FALSE))
+            """, nativeQuery = true)
+    List<UUID> findContentIdsCompletelyWorkedOn(@Param("userId") UUID userId,
+                                                @Param("contentIds") Collection<UUID> contentIds);
+
+    /**
+     * Marks the passed media records as worked on by the user with a single statement, inserting the progress data
+     * where none exists yet. Ids without a media record are ignored.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            INSERT INTO media_record_progress_data (media_record_id, user_id, worked_on, worked_on_date)
+            SELECT media.id, :userId, TRUE, :now FROM media_record media WHERE media.id IN :mediaRecordIds
+            ON CONFLICT (media_record_id, user_id)
+            DO UPDATE SET worked_on = TRUE, worked_on_date = EXCLUDED.worked_on_date
+            """, nativeQuery = true)
+    int upsertWorkedOn(@Param("userId") UUID userId,
+                       @Param("mediaRecordIds") Collection<UUID> mediaRecordIds,
+                       @Param("now") OffsetDateTime now);
 }
@@ -2,12 +2,17 @@ package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
 
 import de.unistuttgart.iste.meitrex.common.persistence.MeitrexRepository;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -21,6 +26,8 @@ public interface MediaRecordRepository extends MeitrexRepository<MediaRecordEnti
 
     List<MediaRecordEntity> findMediaRecordEntitiesByCreatorId(UUID creatorId);
 
+    List<MediaRecordEntity> findMediaRecordEntitiesByCreatorIdIn(Collection<UUID> creatorIds);
+
     @EntityGraph(attributePaths = "courseIds")
     Optional<MediaRecordEntity> findWithCoursesById(UUID id);
 
@@ -32,4 +39,90 @@ public interface MediaRecordRepository extends MeitrexRepository<MediaRecordEnti
 
     @Query("SELECT DISTINCT media FROM MediaRecord media JOIN media.courseIds actualIds WHERE actualIds IN :courseIds")
     List<MediaRecordEntity> findMediaRecordEntitiesByCourseIds(@Param("courseIds") List<UUID> courseIds);
+
+    @Query("SELECT media.id FROM MediaRecord media JOIN media.contentIds contentId WHERE contentId = :contentId")
+    List<UUID> findMediaRecordIdsByContentId(@Param("contentId") UUID contentId);
+
+    @Query("SELECT media.id FROM MediaRecord media WHERE media.id IN :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT media.id FROM MediaRecord media WHERE media.id IN :ids AND media.createdAt < :createdBefore")
+    List<UUID> findIdsCreatedBefore(@Param("ids") Collection<UUID> ids,
+                                    @Param("createdBefore") OffsetDateTime createdBefore);
+
+    /**
+     * Returns the ids of the media records of the passed type that are greater than the passed id, in ascending order.
+     * Used to stream all ids of a type page by page without loading the entities.
+     */
+    @Query("SELECT media.id FROM MediaRecord media WHERE media.type = :type AND media.id > :after ORDER BY media.id")
+    List<UUID> findIdsByTypeAfter(@Param("type") MediaRecordEntity.MediaType type,
+                                  @Param("after") UUID after,
+                                  Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MediaRecord media SET media.contentHash = :contentHash WHERE media.id = :id")
+    int updateContentHash(@Param("id") UUID id, @Param("contentHash") String contentHash);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM media_record_content_ids WHERE media_record_id IN :ids", nativeQuery = true)
+    int deleteContentIdsByMediaRecordIds(@Param("ids") Collection<UUID> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM media_record_course_ids WHERE media_record_id IN :ids", nativeQuery = true)
+    int deleteCourseIdsByMediaRecordIds(@Param("ids") Collection<UUID> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM media_record_progress_data WHERE media_record_id IN :ids", nativeQuery = true)
+    int deleteProgressDataByMediaRecordIds(@Param("ids") Collection<UUID> ids);
+
+    // no media record entity refers to the conversion jobs, so the persistence context does not need to be cleared
+    @Modifying
+    @Query(value = "DELETE FROM conversion_job WHERE media_record_id IN :ids", nativeQuery = true)
+    int deleteConversionJobsByMediaRecordIds(@Param("ids") Collection<UUID> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM media_record WHERE id IN :ids", nativeQuery = true)
+    int deleteMediaRecordRowsByIds(@Param("ids") Collection<UUID> ids);
+
+    // The following statements work directly on the tables of the element collections, so that linking many media
+    // records does not load the entities and rewrite their whole collections. The persistence context is flushed
+    // before and cleared after each statement, so entities loaded afterward reflect the new state.
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM media_record_content_ids WHERE content_ids = :contentId", nativeQuery = true)
+    int unlinkContentFromAllMediaRecords(@Param("contentId") UUID contentId);
+
+    @Query(value = """
+            SELECT DISTINCT media_record_id FROM media_record_content_ids WHERE content_ids = ANY(:contentIds)
+            """, nativeQuery = true)
+    List<UUID> findMediaRecordIdsByContentIds(@Param("contentIds") UUID[] contentIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM media_record_content_ids WHERE content_ids = ANY(:contentIds)", nativeQuery = true)
+    int unlinkContentsFromAllMediaRecords(@Param("contentIds") UUID[] contentIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            INSERT INTO media_record_content_ids (media_record_id, content_ids)
+            SELECT media.id, :contentId FROM media_record media WHERE media.id IN :mediaRecordIds
+            """, nativeQuery = true)
+    int linkContentToMediaRecords(@Param("contentId") UUID contentId,
+                                  @Param("mediaRecordIds") Collection<UUID> mediaRecordIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            DELETE FROM media_record_course_ids
+            WHERE course_ids = :courseId AND media_record_id IN :mediaRecordIds
+            """, nativeQuery = true)
+    int unlinkCourseFromMediaRecords(@Param("courseId") UUID courseId,
+                                     @Param("mediaRecordIds") Collection<UUID> mediaRecordIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            INSERT INTO media_record_course_ids (media_record_id, course_ids)
+            SELECT media.id, :courseId FROM media_record media WHERE media.id IN :mediaRecordIds
+            """, nativeQuery = true)
+    int linkCourseToMediaRecords(@Param("courseId") UUID courseId,
+                                 @Param("mediaRecordIds") Collection<UUID> mediaRecordIds);
 }
@@ -0,0 +1,59 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Specifications for filtering and keyset-paginating media records with {@link MediaRecordRepository}.
+ */
+public final class MediaRecordSpecifications {
+
+    private MediaRecordSpecifications() {
+        // utility class
+    }
+
+    public static Specification<MediaRecordEntity> hasTypeIn(final Collection<MediaRecordEntity.MediaType> types) {
+        return (root, query, cb) -> root.get("type").in(types);
+    }
+
+    public static Specification<MediaRecordEntity> hasCreatorIdIn(final Collection<UUID> creatorIds) {
+        return (root, query, cb) -> root.get("creatorId").in(creatorIds);
+    }
+
+    /**
+     * Matches media records associated with at least one of the passed courses. Uses a subquery instead of a join,
+     * so that media records in several of the courses are not returned multiple times.
+     */
+    public static Specification<MediaRecordEntity> isInAnyCourse(final Collection<UUID> courseIds) {
+        return (root, query, cb) -> {
+            final Subquery<UUID> subquery = query.subquery(UUID.class);
+            final Root<MediaRecordEntity> subRoot = subquery.from(MediaRecordEntity.class);
+            subquery.select(subRoot.get("id"))
+                    .where(subRoot.join("courseIds").in(courseIds));
+            return root.get("id").in(subquery);
+        };
+    }
+
+    /**
+     * Matches media records after the passed id, when sorting by id.
+     */
+    public static Specification<MediaRecordEntity> idAfter(final UUID id) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), id);
+    }
+
+    /**
+     * Matches media records after the passed name and id, when sorting by name and then by id.
+     */
+    public static Specification<MediaRecordEntity> nameAndIdAfter(final String name, final UUID id) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.get("name"), name),
+                cb.and(
+                        cb.equal(root.get("name"), name),
+                        cb.greaterThan(root.get("id"), id)));
+    }
+}
@@ -0,0 +1,71 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.outbox.OutboxEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    /**
+     * Takes the transaction scoped advisory lock with the passed key if no other transaction holds it. Used so that
+     * only one replica publishes events at a time, which keeps them in order.
+     *
+     * @return true if the lock has been taken, false if another transaction holds it.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryLock(@Param("key") long key);
+
+    /**
+     * Returns the oldest events which have not failed permanently, in the order of the transactions which wrote them.
+     * <p>
+     * Transaction ids are assigned when a transaction starts, but its events become visible only when it commits.
+     * Only events of transactions older than the oldest running transaction are returned, so no event which is
+     * committed later can belong before the returned ones. Events written by the current transaction are returned
+     * as well. Events which are backing off are left out, and so are the other events of their aggregate.
+     */
+    @Query(value = """
+            SELECT * FROM outbox_event event
+            WHERE event.failed_at IS NULL
+              AND (event.next_attempt_at IS NULL OR event.next_attempt_at <= :now)
+              AND (event.tx_id < pg_snapshot_xmin(pg_current_snapshot())
+                   OR event.tx_id = pg_current_xact_id_if_assigned())
+              AND NOT EXISTS (SELECT 1 FROM outbox_event waiting
+                              WHERE waiting.aggregate_id = event.aggregate_id
+                                AND waiting.failed_at IS NULL
+                                AND waiting.next_attempt_at > :now)
+            ORDER BY event.tx_id, event.id
+            LIMIT :limit""", nativeQuery = true)
+    List<OutboxEventEntity> findPending(@Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+    /**
+     * Writes several events with a single multi-row insert. The ids are generated by an identity column, so
+     * {@link #saveAll} would send one insert per event; this statement is used instead for batches of events.
+     * The events get their ids in the order of the passed arrays, which have to be of the same length.
+     *
+     * @param types        the names of the {@link OutboxEventEntity.Type} of each event.
+     * @param aggregateIds the ids of the entities the events are about.
+     * @param payloads     the events serialized as JSON.
+     * @return the number of written events.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO outbox_event (type, aggregate_id, payload, created_at, attempts)
+            SELECT event.type, event.aggregate_id, event.payload, :createdAt, 0
+            FROM unnest(CAST(:types AS text[]), CAST(:aggregateIds AS uuid[]), CAST(:payloads AS text[]))
+                WITH ORDINALITY AS event(type, aggregate_id, payload, position)
+            ORDER BY event.position""", nativeQuery = true)
+    int insertAll(@Param("types") String[] types,
+                  @Param("aggregateIds") UUID[] aggregateIds,
+                  @Param("payloads") String[] payloads,
+                  @Param("createdAt") OffsetDateTime createdAt);
+}
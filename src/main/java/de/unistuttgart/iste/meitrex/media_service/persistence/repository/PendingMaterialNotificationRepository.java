@@ -0,0 +1,37 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
+
+import de.unistuttgart.iste.meitrex.common.persistence.MeitrexRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.PendingMaterialNotificationEntity;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PendingMaterialNotificationRepository
+        extends MeitrexRepository<PendingMaterialNotificationEntity, UUID> {
+
+    /**
+     * Takes the transaction scoped advisory lock with the passed key if no other transaction holds it. Used so that
+     * only one replica publishes the notifications at a time.
+     *
+     * @return true if the lock has been taken, false if another transaction holds it.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryLock(@Param("key") long key);
+
+    /**
+     * Returns the uploads which have not been assigned to their courses yet and have been uploaded before the passed
+     * time.
+     */
+    List<PendingMaterialNotificationEntity> findByCourseIdIsNullAndLastUploadedAtLessThanEqual(
+            OffsetDateTime uploadedBefore);
+
+    Optional<PendingMaterialNotificationEntity> findByMediaRecordIdAndCourseId(UUID mediaRecordId, UUID courseId);
+
+    List<PendingMaterialNotificationEntity> findByCourseIdIsNotNull();
+}
@@ -0,0 +1,40 @@
+package de.unistuttgart.iste.meitrex.media_service.persistence.repository;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.StandardizedFileEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+@Repository
+public interface StandardizedFileRepository extends JpaRepository<StandardizedFileEntity, String> {
+
+    /**
+     * Adds the standardized file for the content hash to the index, unless another file is already registered for it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO standardized_file (content_hash, bucket, object_name, created_at)
+            VALUES (:contentHash, :bucket, :objectName, :now)
+            ON CONFLICT (content_hash) DO NOTHING""", nativeQuery = true)
+    int register(@Param("contentHash") String contentHash,
+                 @Param("bucket") String bucket,
+                 @Param("objectName") String objectName,
+                 @Param("now") OffsetDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM StandardizedFile file WHERE file.bucket = :bucket AND file.objectName = :objectName")
+    int deleteByObject(@Param("bucket") String bucket, @Param("objectName") String objectName);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM StandardizedFile file WHERE file.bucket = :bucket AND file.objectName IN :objectNames")
+    int deleteByObjects(@Param("bucket") String bucket, @Param("objectNames") Collection<String> objectNames);
+}
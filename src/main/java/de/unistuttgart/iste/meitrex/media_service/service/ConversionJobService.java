@@ -0,0 +1,188 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.media_service.exception.ConversionRejectedException;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.ConversionJobEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ConversionJobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Durable queue of file conversions, stored in the conversion_job table.
+ * <p>
+ * The MinIO webhook only enqueues a job for the uploaded file. Every replica polls the table and claims as many due
+ * jobs as its {@link FileConversionService} has idle workers, smallest files first. Claiming uses
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so replicas never claim the same job, and sets a lease on the job: if the
+ * replica dies while converting, the lease expires and the job is claimed again. Failed conversions are retried with
+ * exponential backoff until the maximum number of attempts is reached.
+ */
+@Service
+@Slf4j
+public class ConversionJobService {
+
+    private final ConversionJobRepository repository;
+    private final MediaService mediaService;
+    private final FileConversionService fileConversionService;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration doneRetention;
+
+    public ConversionJobService(final ConversionJobRepository repository,
+                                final MediaService mediaService,
+                                final FileConversionService fileConversionService,
+                                final TransactionTemplate transactionTemplate,
+                                final MeterRegistry meterRegistry,
+                                @Value("${media.conversion.lease:PT10M}") final Duration lease,
+                                @Value("${media.conversion.max-attempts:5}") final int maxAttempts,
+                                @Value("${media.conversion.initial-backoff:PT1M}") final Duration initialBackoff,
+                                @Value("${media.conversion.max-backoff:PT1H}") final Duration maxBackoff,
+                                @Value("${media.conversion.done-retention:P7D}") final Duration doneRetention) {
+        this.repository = repository;
+        this.mediaService = mediaService;
+        this.fileConversionService = fileConversionService;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.doneRetention = doneRetention;
+    }
+
+    /**
+     * Queues the conversion of the file of the passed media record. If a job for the media record already exists, it
+     * is queued again. If it is currently running, it is queued again once the running attempt has finished, because
+     * that attempt may be converting the previous file.
+     *
+     * @param mediaRecordId The id of the media record whose file should be converted.
+     * @param fileSize      The size of the file in bytes, smaller files are converted first.
+     */
+    public void enqueue(final UUID mediaRecordId, final long fileSize) {
+        // if the running job finishes between both statements, it can be queued again on the next iteration
+        while (repository.enqueue(UUID.randomUUID(), mediaRecordId, fileSize, OffsetDateTime.now()) == 0) {
+            if (repository.requeueRunning(mediaRecordId, fileSize, OffsetDateTime.now()) > 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claims due jobs, as many as there are idle conversion workers, and starts them. Jobs are only claimed when they
+     * can start right away, so the lease does not run out while a job waits for a worker.
+     */
+    @Scheduled(fixedDelayString = "${media.conversion.poll-interval:PT5S}")
+    public void processDueJobs() {
+        final int capacity = fileConversionService.idleWorkers();
+        if (capacity <= 0) {
+            return;
+        }
+
+        for (final ConversionJobEntity job : claimDueJobs(capacity)) {
+            start(job);
+        }
+    }
+
+    /**
+     * Deletes jobs which finished successfully a while ago. Failed jobs are kept for inspection.
+     */
+    @Scheduled(fixedDelayString = "${media.conversion.cleanup-interval:PT1H}")
+    public void deleteOldDoneJobs() {
+        final int deleted = repository.deleteDoneBefore(OffsetDateTime.now().minus(doneRetention));
+        if (deleted > 0) {
+            log.info("Deleted {} finished conversion jobs", deleted);
+        }
+    }
+
+    List<ConversionJobEntity> claimDueJobs(final int limit) {
+        final List<ConversionJobEntity> jobs = transactionTemplate.execute(status -> {
+            final OffsetDateTime now = OffsetDateTime.now();
+            final List<ConversionJobEntity> due = repository.lockDueJobs(now, limit);
+            for (final ConversionJobEntity job : due) {
+                job.setState(ConversionJobEntity.State.RUNNING);
+                job.setAttempts(job.getAttempts() + 1);
+                job.setLeaseExpiresAt(now.plus(lease));
+                // this attempt reads the current file
+                job.setRequeued(false);
+                job.setUpdatedAt(now);
+            }
+            return repository.saveAll(due);
+        });
+        return jobs == null ? List.of() : jobs;
+    }
+
+    private void start(final ConversionJobEntity job) {
+        final CompletableFuture<Void> conversion;
+        try {
+            conversion = mediaService.convertToStandardizedFileIfPossibleAndNecessary(job.getMediaRecordId());
+        } catch (final ConversionRejectedException e) {
+            // another conversion took the free slot in the meantime, try again on the next poll
+            repository.release(job.getId(), job.getAttempts(), OffsetDateTime.now());
+            return;
+        } catch (final Exception e) {
+            onFailure(job, e);
+            return;
+        }
+
+        conversion.whenComplete((result, error) -> {
+            if (error == null) {
+                onSuccess(job);
+            } else {
+                onFailure(job, error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+            }
+        });
+    }
+
+    private void onSuccess(final ConversionJobEntity job) {
+        repository.markDone(job.getId(), job.getAttempts(), OffsetDateTime.now());
+        countJob("done");
+    }
+
+    private void onFailure(final ConversionJobEntity job, final Throwable error) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        final String message = Retries.truncate(error.getClass().getSimpleName() + ": " + error.getMessage());
+
+        // the media record has been deleted in the meantime, so there is nothing left to convert
+        if (error instanceof EntityNotFoundException) {
+            log.info("Dropping conversion job of deleted media record {}", job.getMediaRecordId());
+            repository.drop(job.getId(), job.getAttempts());
+            countJob("dropped");
+            return;
+        }
+
+        if (job.getAttempts() >= maxAttempts) {
+            log.error("Conversion of media record {} failed permanently after {} attempts",
+                    job.getMediaRecordId(), job.getAttempts(), error);
+            repository.markFailed(job.getId(), job.getAttempts(), message, now);
+            countJob("failed");
+            return;
+        }
+
+        final Duration backoff = Retries.backoff(job.getAttempts(), initialBackoff, maxBackoff);
+        log.warn("Conversion of media record {} failed in attempt {}, retrying in {}",
+                job.getMediaRecordId(), job.getAttempts(), backoff, error);
+        repository.retryLater(job.getId(), job.getAttempts(), now.plus(backoff), message, now);
+        countJob("retried");
+    }
+
+    private void countJob(final String outcome) {
+        meterRegistry.counter("media.conversion.jobs", "outcome", outcome).increment();
+    }
+}
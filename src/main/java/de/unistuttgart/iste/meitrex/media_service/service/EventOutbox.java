@@ -0,0 +1,128 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import de.unistuttgart.iste.meitrex.common.event.*;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.outbox.OutboxEventEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Transactional outbox for the events of this service. Offers the same methods as the {@link TopicPublisher}, but
+ * only writes the events to the outbox_event table, in the transaction of the caller if there is one. The
+ * {@link OutboxRelay} publishes them to Dapr afterwards.
+ * <p>
+ * Events of a change which is rolled back are therefore never published, and the caller does not wait for the Dapr
+ * sidecar. Each event is stored with the id of the entity it is about, which the relay keeps the order for: the
+ * media record for changes of a media record, the user for progress, the content, forum or course otherwise.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventOutbox {
+
+    private final OutboxEventRepository repository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Arguments of {@link TopicPublisher#notificationEvent}, which has no event class of its own.
+     */
+    record Notification(UUID courseId, List<UUID> userIds, ServerSource serverSource, String link, String title,
+                        String message) {
+    }
+
+    public void notifyContentMediaRecordLinksSet(final ContentMediaRecordLinksSetEvent event) {
+        add(OutboxEventEntity.Type.CONTENT_MEDIA_RECORD_LINKS_SET, event.getContentId(), event);
+    }
+
+    public void notifyMediaRecordDeleted(final MediaRecordDeletedEvent event) {
+        add(OutboxEventEntity.Type.MEDIA_RECORD_DELETED, event.getMediaRecordId(), event);
+    }
+
+    /**
+     * Writes the deletion events of several media records with a single insert statement.
+     */
+    public void notifyMediaRecordsDeleted(final Collection<MediaRecordDeletedEvent> events) {
+        addAll(OutboxEventEntity.Type.MEDIA_RECORD_DELETED, events, MediaRecordDeletedEvent::getMediaRecordId);
+    }
+
+    public void notifyMediaRecordFileCreated(final MediaRecordFileCreatedEvent event) {
+        add(OutboxEventEntity.Type.MEDIA_RECORD_FILE_CREATED, event.getMediaRecordId(), event);
+    }
+
+    public void notifyMediaRecordWorkedOn(final MediaRecordWorkedOnEvent event) {
+        add(OutboxEventEntity.Type.MEDIA_RECORD_WORKED_ON, event.getUserId(), event);
+    }
+
+    /**
+     * Writes the worked on events of several media records with a single insert statement.
+     */
+    public void notifyMediaRecordsWorkedOn(final Collection<MediaRecordWorkedOnEvent> events) {
+        addAll(OutboxEventEntity.Type.MEDIA_RECORD_WORKED_ON, events, MediaRecordWorkedOnEvent::getUserId);
+    }
+
+    public void notifyUserWorkedOnContent(final ContentProgressedEvent event) {
+        add(OutboxEventEntity.Type.USER_WORKED_ON_CONTENT, event.getUserId(), event);
+    }
+
+    public void notifySubmissionCompleted(final SubmissionCompletedEvent event) {
+        add(OutboxEventEntity.Type.SUBMISSION_COMPLETED, event.getUserId(), event);
+    }
+
+    public void notifyForumActivity(final ForumActivityEvent event) {
+        add(OutboxEventEntity.Type.FORUM_ACTIVITY, event.getForumId(), event);
+    }
+
+    public void notificationEvent(final UUID courseId, final List<UUID> userIds, final ServerSource serverSource,
+                                  final String link, final String title, final String message) {
+        add(OutboxEventEntity.Type.NOTIFICATION, courseId,
+                new Notification(courseId, userIds, serverSource, link, title, message));
+    }
+
+    private void add(final OutboxEventEntity.Type type, final UUID aggregateId, final Object event) {
+        repository.save(toEntity(type, aggregateId, event));
+    }
+
+    private <T> void addAll(final OutboxEventEntity.Type type, final Collection<T> events,
+                            final Function<T, UUID> aggregateId) {
+        if (events.isEmpty()) {
+            return;
+        }
+        final String[] types = new String[events.size()];
+        final UUID[] aggregateIds = new UUID[events.size()];
+        final String[] payloads = new String[events.size()];
+        int i = 0;
+        for (final T event : events) {
+            types[i] = type.name();
+            aggregateIds[i] = aggregateId.apply(event);
+            payloads[i] = serialize(type, event);
+            i++;
+        }
+        repository.insertAll(types, aggregateIds, payloads, OffsetDateTime.now());
+    }
+
+    private OutboxEventEntity toEntity(final OutboxEventEntity.Type type, final UUID aggregateId,
+                                       final Object event) {
+        return OutboxEventEntity.builder()
+                .type(type)
+                .aggregateId(aggregateId)
+                .payload(serialize(type, event))
+                .createdAt(OffsetDateTime.now())
+                .build();
+    }
+
+    private String serialize(final OutboxEventEntity.Type type, final Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + type + " event", e);
+        }
+    }
+}
@@ -1,63 +1,303 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import lombok.SneakyThrows;
+import de.unistuttgart.iste.meitrex.media_service.exception.ConversionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.jodconverter.core.DocumentConverter;
+import org.jodconverter.core.document.DefaultDocumentFormatRegistry;
+import org.jodconverter.core.document.DocumentFormat;
+import org.jodconverter.core.document.DocumentFormatRegistry;
+import org.jodconverter.core.office.OfficeException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
 
+/**
+ * Converts documents to pdf using LibreOffice.
+ * <p>
+ * If the JODConverter office manager is enabled (jodconverter.local.enabled), conversions are dispatched to a pool of
+ * long-running LibreOffice processes, one per configured port, each with its own user profile. This avoids the start
+ * up time of LibreOffice for every document. Otherwise, a new soffice process is started for every conversion.
+ * <p>
+ * LibreOffice needs a lot of memory. Conversions are therefore run by a fixed number of worker threads, which should
+ * match the number of office processes, and at most a bounded number of conversions wait for a free worker. If the
+ * queue is full, further conversions are rejected with a {@link ConversionRejectedException}, so the caller can retry
+ * later instead of the service running out of memory. A conversion that takes longer than the configured timeout is
+ * considered hung and its process is killed. The workers are virtual threads, they spend their time waiting for the
+ * office processes.
+ * <p>
+ * The queue depth, the number of running conversions, the number of rejected conversions and the duration of each
+ * conversion are published as "media.conversion.*" metrics.
+ */
 @Service
 @Slf4j
 public class FileConversionService {
+
+    private static final DocumentFormatRegistry FORMAT_REGISTRY = DefaultDocumentFormatRegistry.getInstance();
+    /**
+     * Base name of the input document in the work directory. The converted pdf gets the same base name.
+     */
+    private static final String INPUT_NAME = "input";
+    private static final String OUTPUT_DIRECTORY = "out";
+
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final DocumentConverter documentConverter;
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Timer timeoutTimer;
+    private final Counter rejectedCounter;
+
+    public FileConversionService(@Value("${media.conversion.parallelism:2}") final int parallelism,
+                                 @Value("${media.conversion.queue-capacity:50}") final int queueCapacity,
+                                 @Value("${media.conversion.timeout:PT5M}") final Duration timeout,
+                                 final ObjectProvider<DocumentConverter> documentConverter,
+                                 final MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.documentConverter = documentConverter.getIfAvailable();
+        if (this.documentConverter == null) {
+            log.info("No office pool configured, starting a new soffice process for every conversion");
+        }
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofVirtual().name("file-conversion-", 1).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("media.conversion.queue.size", executor, e -> e.getQueue().size())
+                .description("Number of conversions waiting for a free worker")
+                .register(meterRegistry);
+        Gauge.builder("media.conversion.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Number of conversions currently running")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("media.conversion.rejected")
+                .description("Number of conversions rejected because the queue was full")
+                .register(meterRegistry);
+        this.successTimer = conversionTimer(meterRegistry, "success");
+        this.failureTimer = conversionTimer(meterRegistry, "failure");
+        this.timeoutTimer = conversionTimer(meterRegistry, "timeout");
+    }
+
     /**
      * Converts a document to pdf using the soffice utility asynchronously. Upon successful conversion, the pdf is
      * written to the provided output stream which can be digested in the outputStreamConsumer function.
-     * @param inputStream The input document to convert.
-     * @param outputStreamConsumer The consumer function to handle the output pdf.
-     */
-    @SneakyThrows
-    public void convertDocumentToPdf(InputStream inputStream, Consumer<InputStream> outputStreamConsumer) {
-        // create a temp file to save the input document to
-        File inputFile = File.createTempFile("doc", ".tmp", null);
-        inputFile.deleteOnExit();
-
-        // write the input document to the temp file
-        Files.copy(inputStream, inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-        // create a temp output directory to save the converted pdf to
-        // (the soffice utility only accepts directories as output, not a file path directly)
-        Path outputDir = Files.createTempDirectory("docout");
-        outputDir.toFile().deleteOnExit();
-
-        Thread thread = new Thread(() -> {
-            // invoke soffice to convert the input document to pdf
-            Process process = null;
-            try {
-                process = new ProcessBuilder(
-                        "soffice",
-                        "--headless",
-                        "--convert-to", "pdf",
-                        "--outdir", outputDir.toString(),
-                        inputFile.toString()).start();
-                process.waitFor();
-                try(InputStream inStream = Files.newInputStream(outputDir.resolve(
-                        inputFile.getName().substring(0, inputFile.getName().lastIndexOf(".")) + ".pdf"))) {
-                    outputStreamConsumer.accept(inStream);
-                }
-            } catch (IOException | InterruptedException e) {
-                throw new RuntimeException(e);
-            } finally {
-                if(process != null) {
-                    process.destroy();
-                }
+     * <p>
+     * The input stream is fully read before this method returns, so the caller may close it afterwards. The format of
+     * the document is determined from its content type or, if that is unknown, from the extension of its file name,
+     * and passed to LibreOffice. If neither is known, LibreOffice detects the format from the content.
+     *
+     * @param inputStream          The input document to convert.
+     * @param contentType          The content type of the document, may be null or generic.
+     * @param fileName             The name of the document, e.g. the name of its media record, may be null.
+     * @param outputStreamConsumer The consumer function to handle the output pdf. Called on a conversion worker thread.
+     * @return A future which completes after the consumer has been called, or exceptionally if the conversion failed
+     * or timed out.
+     * @throws ConversionRejectedException If the conversion queue is full.
+     * @throws UncheckedIOException        If the input document could not be stored in a temporary file.
+     */
+    public CompletableFuture<Void> convertDocumentToPdf(final InputStream inputStream,
+                                                        @Nullable final String contentType,
+                                                        @Nullable final String fileName,
+                                                        final Consumer<InputStream> outputStreamConsumer) {
+        // fail fast before copying the document if there is no chance to get a worker
+        if (executor.getQueue().remainingCapacity() == 0) {
+            rejectedCounter.increment();
+            throw new ConversionRejectedException();
+        }
+
+        // create a temp directory holding the input document and a directory for the converted pdf
+        // (the soffice utility only accepts directories as output, not a file path directly). The input document
+        // keeps the extension of its format, which LibreOffice uses to pick its import filter
+        final DocumentFormat format = detectFormat(contentType, fileName);
+        final Path workDir;
+        final Path inputFile;
+        try {
+            workDir = Files.createTempDirectory("docconv");
+            inputFile = workDir.resolve(INPUT_NAME + "." + inputExtension(format, fileName));
+            Files.copy(inputStream, inputFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectory(workDir.resolve(OUTPUT_DIRECTORY));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> convert(workDir, inputFile, format, outputStreamConsumer, result));
+        } catch (final RejectedExecutionException e) {
+            deleteWorkDir(workDir);
+            rejectedCounter.increment();
+            throw new ConversionRejectedException();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of workers which are currently not converting, i.e. how many conversions can be started
+     * right away without waiting in the queue. Only an estimate, as other threads may start conversions at the same
+     * time.
+     *
+     * @return the number of idle conversion workers
+     */
+    public int idleWorkers() {
+        return Math.max(0, executor.getMaximumPoolSize() - executor.getActiveCount() - executor.getQueue().size());
+    }
+
+    /**
+     * Stops all running conversions and kills their processes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Determines the format of a document from its content type or, if the content type is unknown or generic like
+     * application/octet-stream, from the extension of its file name.
+     *
+     * @return the format, or null if neither is known
+     */
+    @Nullable
+    static DocumentFormat detectFormat(@Nullable final String contentType, @Nullable final String fileName) {
+        if (contentType != null) {
+            // strip parameters like "; charset=utf-8"
+            final String mediaType = contentType.split(";", 2)[0].trim().toLowerCase();
+            final DocumentFormat format = FORMAT_REGISTRY.getFormatByMediaType(mediaType);
+            if (format != null) {
+                return format;
+            }
+        }
+        final String extension = StringUtils.getFilenameExtension(fileName);
+        return extension == null ? null : FORMAT_REGISTRY.getFormatByExtension(extension.toLowerCase());
+    }
+
+    /**
+     * Returns the extension the input document is stored with: the one of its format, otherwise the one of its file
+     * name if it is a plain extension, otherwise "tmp".
+     */
+    static String inputExtension(@Nullable final DocumentFormat format, @Nullable final String fileName) {
+        if (format != null) {
+            return format.getExtension();
+        }
+        final String extension = StringUtils.getFilenameExtension(fileName);
+        return extension != null && extension.matches("[A-Za-z0-9]{1,10}") ? extension.toLowerCase() : "tmp";
+    }
+
+    private void convert(final Path workDir, final Path inputFile, @Nullable final DocumentFormat format,
+                         final Consumer<InputStream> outputStreamConsumer, final CompletableFuture<Void> result) {
+        final long start = System.nanoTime();
+        Timer timer = failureTimer;
+        try {
+            final Path outputDirectory = workDir.resolve(OUTPUT_DIRECTORY);
+            final Path outputFile = outputDirectory.resolve(INPUT_NAME + ".pdf");
+            if (documentConverter != null) {
+                convertWithOfficePool(inputFile, format, outputFile);
+            } else {
+                convertWithNewProcess(workDir, inputFile, outputDirectory);
             }
-        });
-        thread.start();
+
+            try (InputStream inStream = Files.newInputStream(outputFile)) {
+                outputStreamConsumer.accept(inStream);
+            }
+            timer = successTimer;
+            result.complete(null);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        } catch (final Exception e) {
+            if (e instanceof TimeoutException || e.getCause() instanceof TimeoutException) {
+                timer = timeoutTimer;
+            }
+            log.error("Error while converting document to pdf", e);
+            result.completeExceptionally(e);
+        } finally {
+            deleteWorkDir(workDir);
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Converts the document using one of the long-running office processes managed by JODConverter. The office
+     * manager restarts processes which crashed, hang or reached the configured number of conversions.
+     */
+    private void convertWithOfficePool(final Path inputFile, @Nullable final DocumentFormat format,
+                                       final Path outputFile) throws OfficeException {
+        if (format == null) {
+            // JODConverter falls back to the extension of the input file, LibreOffice to the content
+            documentConverter.convert(inputFile.toFile())
+                    .to(outputFile.toFile())
+                    .as(DefaultDocumentFormatRegistry.PDF)
+                    .execute();
+        } else {
+            documentConverter.convert(inputFile.toFile())
+                    .as(format)
+                    .to(outputFile.toFile())
+                    .as(DefaultDocumentFormatRegistry.PDF)
+                    .execute();
+        }
+    }
+
+    /**
+     * Converts the document by starting a new soffice process, used if no office pool is configured. Each process
+     * gets its own user profile in the work directory, so concurrent conversions do not contend on the profile lock.
+     */
+    private void convertWithNewProcess(final Path workDir, final Path inputFile, final Path outputDirectory)
+            throws IOException, InterruptedException, TimeoutException {
+        Process process = null;
+        try {
+            // invoke soffice to convert the input document to pdf. Its output is discarded, otherwise the process
+            // blocks once the pipe buffer is full
+            process = new ProcessBuilder(
+                    "soffice",
+                    "-env:UserInstallation=" + workDir.resolve("profile").toUri(),
+                    "--headless",
+                    "--convert-to", "pdf",
+                    "--outdir", outputDirectory.toString(),
+                    inputFile.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("Conversion did not finish within " + timeout);
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("soffice exited with code " + process.exitValue());
+            }
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static void deleteWorkDir(final Path workDir) {
+        try {
+            FileSystemUtils.deleteRecursively(workDir);
+        } catch (final IOException e) {
+            log.warn("Could not delete temporary conversion directory {}", workDir, e);
+        }
+    }
+
+    private static Timer conversionTimer(final MeterRegistry meterRegistry, final String outcome) {
+        return Timer.builder("media.conversion.duration")
+                .description("Duration of document conversions, including the time the consumer takes")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 }
@@ -1,6 +1,5 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
 import de.unistuttgart.iste.meitrex.common.event.ForumActivity;
 import de.unistuttgart.iste.meitrex.common.event.ForumActivityEvent;
 import de.unistuttgart.iste.meitrex.common.profanity_filter.ProfanityFilter;
@@ -16,6 +15,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.naming.AuthenticationException;
 import java.time.Duration;
@@ -38,7 +38,7 @@ public class ForumService {
     private final PostRepository postRepository;
     private final ThreadContentReferenceRepository threadContentReferenceRepository;
     private final MediaRecordRepository mediaRecordRepository;
-    private final TopicPublisher topicPublisher;
+    private final EventOutbox eventOutbox;
     private final ProfanityFilter profanityFilter;
 
     private final ForumMapper forumMapper;
@@ -113,6 +113,7 @@ public class ForumService {
      * @param userId Id of the user that writes the post
      * @return Post that was added to the thread
      */
+    @Transactional
     public Post addPostToThread(InputPost post, ThreadEntity thread, UUID userId) {
         String censored_content = profanityFilter.censor(post.getContent());
         log.info("Censored post content: {}", censored_content);
@@ -134,7 +135,7 @@ public class ForumService {
             event.setActivity(ForumActivity.INFO);
         }
 
-        topicPublisher.notifyForumActivity(event);
+        eventOutbox.notifyForumActivity(event);
         return postMapper.mapToPostWithThread(postEntity, thread);
     }
 
@@ -177,6 +178,7 @@ public class ForumService {
      * @param userId user that creates the thread
      * @return created thread
      */
+    @Transactional
     public QuestionThread createQuestionThread(InputQuestionThread thread, ForumEntity forum ,UUID userId) {
         String question_censored = profanityFilter.censor(thread.getQuestion().getContent());
         String title_censored = profanityFilter.censor(thread.getTitle());
@@ -193,7 +195,7 @@ public class ForumService {
         forum.getThreads().add(threadEntity);
         forumRepository.save(forum);
 
-        topicPublisher.notifyForumActivity(ForumActivityEvent.builder()
+        eventOutbox.notifyForumActivity(ForumActivityEvent.builder()
                         .userId(userId)
                         .forumId(forum.getId())
                         .courseId(forum.getCourseId())
@@ -209,6 +211,7 @@ public class ForumService {
      * @param userId user that creates the thread
      * @return created thread
      */
+    @Transactional
     public InfoThread createInfoThread(InputInfoThread thread, ForumEntity forum, UUID userId) {
         String info_censored = profanityFilter.censor(thread.getInfo().getContent());
         String title_censored = profanityFilter.censor(thread.getTitle());
@@ -226,7 +229,7 @@ public class ForumService {
         forum.getThreads().add(threadEntity);
         forumRepository.save(forum);
 
-        topicPublisher.notifyForumActivity(ForumActivityEvent.builder()
+        eventOutbox.notifyForumActivity(ForumActivityEvent.builder()
                 .userId(userId)
                 .forumId(forum.getId())
                 .courseId(forum.getCourseId())
@@ -331,6 +334,7 @@ public class ForumService {
      * @param postId post that is the answer
      * @return QuestionThread where the post was selected
      */
+    @Transactional
     public QuestionThread addAnswerToQuestionThread(UUID postId) {
         PostEntity answer = postRepository.findById(postId).orElseThrow(
                 () -> new EntityNotFoundException("Post with the id " + postId + NOT_FOUND)
@@ -348,7 +352,7 @@ public class ForumService {
                     .courseId(questionThread.getForum().getCourseId())
                     .activity(ForumActivity.ANSWER_ACCEPTED)
                     .build();
-            topicPublisher.notifyForumActivity(forumActivityEvent);
+            eventOutbox.notifyForumActivity(forumActivityEvent);
         }
         questionThread = threadRepository.save(questionThread);
 
@@ -435,7 +439,7 @@ public class ForumService {
         return activities;
     }
 
-    private List<ForumActivityEntry> extractForumActivitiesForUser(
+    List<ForumActivityEntry> extractForumActivitiesForUser(
             List<ForumEntity> forumEntities,
             UUID userId,
             ForumMapper forumMapper
@@ -510,7 +514,7 @@ public class ForumService {
         Positive votes scaled linearly between 0.1 and 1.0
         Negative votes penalized quadratically but never drop below 0.01
      */
-    private double calculatePriorityScore(QuestionThread qt, int maxUpvotes, double alpha, double beta) {
+    double calculatePriorityScore(QuestionThread qt, int maxUpvotes, double alpha, double beta) {
         long ageInDays = Duration.between(qt.getCreationTime().toInstant(), Instant.now()).toDays();
 
         double peakAge = 7.0;
@@ -0,0 +1,225 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.common.event.ServerSource;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaType;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.PendingMaterialNotificationEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.PendingMaterialNotificationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Notifies the members of a course about new material, combining files uploaded in short succession into one
+ * notification.
+ * <p>
+ * A file is assigned to its courses a few seconds after it has been uploaded (settle delay), when the media record
+ * has been linked to the courses and contents. Each course then collects files until no new file has been uploaded
+ * for the quiet period, but at most for the maximum delay after the first file, and publishes a single notification
+ * for all of them. A single file gets the same notification as before, linking directly to the file.
+ * <p>
+ * The uploaded files are kept in the database until they have been notified, and the notifications are written to
+ * the {@link EventOutbox} in the same transaction which removes them. No notification is lost when a replica stops,
+ * and any replica can publish the notifications of files uploaded to another one. Only one replica works on them at
+ * a time, guarded by a Postgres advisory lock.
+ */
+@Service
+@Slf4j
+public class MaterialNotificationAggregator {
+
+    /**
+     * Key of the advisory lock held while publishing, arbitrary but unique within the database.
+     */
+    private static final long PUBLISH_LOCK_KEY = 0x6e6f74696679L; // "notify"
+    private static final String TITLE = "New Material is uploaded!";
+    /**
+     * Number of file names listed in a notification about several files.
+     */
+    private static final int MAX_LISTED_NAMES = 5;
+
+    private final MediaRecordRepository repository;
+    private final PendingMaterialNotificationRepository pendingRepository;
+    private final EventOutbox eventOutbox;
+    private final MediaRecordMapper mediaRecordMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Duration settleDelay;
+    private final Duration quietPeriod;
+    private final Duration maxDelay;
+
+    public MaterialNotificationAggregator(final MediaRecordRepository repository,
+                                          final PendingMaterialNotificationRepository pendingRepository,
+                                          final EventOutbox eventOutbox,
+                                          final MediaRecordMapper mediaRecordMapper,
+                                          final TransactionTemplate transactionTemplate,
+                                          final MeterRegistry meterRegistry,
+                                          @Value("${media.notification.settle-delay:PT5S}") final Duration settleDelay,
+                                          @Value("${media.notification.quiet-period:PT1M}") final Duration quietPeriod,
+                                          @Value("${media.notification.max-delay:PT10M}") final Duration maxDelay) {
+        this.repository = repository;
+        this.pendingRepository = pendingRepository;
+        this.eventOutbox = eventOutbox;
+        this.mediaRecordMapper = mediaRecordMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.settleDelay = settleDelay;
+        this.quietPeriod = quietPeriod;
+        this.maxDelay = maxDelay;
+
+        Gauge.builder("media.notification.scheduled", pendingRepository, PendingMaterialNotificationRepository::count)
+                .description("Number of uploaded files waiting to be notified, per course once assigned")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the "new material" notification for the file of the passed media record.
+     *
+     * @param mediaRecordId The id of the media record whose file has been uploaded.
+     */
+    public void materialUploaded(final UUID mediaRecordId) {
+        final OffsetDateTime now = OffsetDateTime.now();
+        pendingRepository.save(PendingMaterialNotificationEntity.builder()
+                .id(UUID.randomUUID())
+                .mediaRecordId(mediaRecordId)
+                .firstUploadedAt(now)
+                .lastUploadedAt(now)
+                .build());
+    }
+
+    /**
+     * Assigns the settled uploads to their courses and publishes the notifications of the courses which are due.
+     */
+    @Scheduled(fixedDelayString = "${media.notification.poll-interval:PT5S}")
+    public void publishDueNotifications() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!pendingRepository.tryLock(PUBLISH_LOCK_KEY)) {
+                return;
+            }
+            final OffsetDateTime now = OffsetDateTime.now();
+            assignSettledUploads(now);
+            publishDueCourses(now);
+        });
+    }
+
+    /**
+     * Replaces the uploads older than the settle delay by one entry per course of their media records. A file
+     * uploaded again is only listed once per course.
+     */
+    private void assignSettledUploads(final OffsetDateTime now) {
+        for (final PendingMaterialNotificationEntity upload : pendingRepository
+                .findByCourseIdIsNullAndLastUploadedAtLessThanEqual(now.minus(settleDelay))) {
+            pendingRepository.delete(upload);
+
+            final List<UUID> courseIds = repository.findCourseIdsByMediaRecordId(upload.getMediaRecordId());
+            if (courseIds.isEmpty()) {
+                log.info("Not notifying about media record {}, it has been deleted or belongs to no course",
+                        upload.getMediaRecordId());
+                continue;
+            }
+            for (final UUID courseId : courseIds) {
+                final PendingMaterialNotificationEntity assigned = pendingRepository
+                        .findByMediaRecordIdAndCourseId(upload.getMediaRecordId(), courseId)
+                        .orElseGet(() -> PendingMaterialNotificationEntity.builder()
+                                .id(UUID.randomUUID())
+                                .mediaRecordId(upload.getMediaRecordId())
+                                .courseId(courseId)
+                                .firstUploadedAt(upload.getFirstUploadedAt())
+                                .build());
+                if (assigned.getLastUploadedAt() == null
+                    || assigned.getLastUploadedAt().isBefore(upload.getLastUploadedAt())) {
+                    assigned.setLastUploadedAt(upload.getLastUploadedAt());
+                }
+                pendingRepository.save(assigned);
+            }
+        }
+    }
+
+    /**
+     * Publishes the notification of each course whose files have been quiet for the quiet period, or whose first
+     * file has waited for the maximum delay, and removes the notified files.
+     */
+    private void publishDueCourses(final OffsetDateTime now) {
+        final Map<UUID, List<PendingMaterialNotificationEntity>> filesByCourse = pendingRepository
+                .findByCourseIdIsNotNull().stream()
+                .collect(Collectors.groupingBy(PendingMaterialNotificationEntity::getCourseId));
+
+        filesByCourse.forEach((courseId, files) -> {
+            final OffsetDateTime firstUploadedAt = files.stream()
+                    .map(PendingMaterialNotificationEntity::getFirstUploadedAt)
+                    .min(Comparator.naturalOrder()).orElseThrow();
+            final OffsetDateTime lastUploadedAt = files.stream()
+                    .map(PendingMaterialNotificationEntity::getLastUploadedAt)
+                    .max(Comparator.naturalOrder()).orElseThrow();
+            if (lastUploadedAt.plus(quietPeriod).isAfter(now) && firstUploadedAt.plus(maxDelay).isAfter(now)) {
+                return;
+            }
+
+            pendingRepository.deleteAll(files);
+            final List<Material> materials = files.stream()
+                    .sorted(Comparator.comparing(PendingMaterialNotificationEntity::getFirstUploadedAt))
+                    .map(file -> repository.findById(file.getMediaRecordId())
+                            .map(entity -> toMaterial(entity,
+                                    repository.findContentIdsByMediaRecordId(entity.getId()))))
+                    .flatMap(Optional::stream)
+                    .toList();
+            if (materials.isEmpty()) {
+                log.info("Not notifying course {}, its new media records have been deleted", courseId);
+                return;
+            }
+            publish(courseId, materials);
+        });
+    }
+
+    private void publish(final UUID courseId, final List<Material> materials) {
+        final String base = "/courses/" + courseId + "/media";
+        if (materials.size() == 1) {
+            final Material material = materials.get(0);
+            final String pageLink = (material.latestContentId() != null ? base + "/" + material.latestContentId() : base)
+                    + (material.video() ? "?selectedVideo=" : "?selectedDocument=") + material.id();
+            eventOutbox.notificationEvent(courseId, null, ServerSource.MEDIA, pageLink, TITLE,
+                    "material: " + material.name());
+        } else {
+            eventOutbox.notificationEvent(courseId, null, ServerSource.MEDIA, base, TITLE,
+                    "materials: " + listNames(materials));
+        }
+        meterRegistry.counter("media.notification.published").increment();
+        meterRegistry.counter("media.notification.materials").increment(materials.size());
+        log.info("Published notification about {} media records to course={}", materials.size(), courseId);
+    }
+
+    private Material toMaterial(final MediaRecordEntity entity, final List<UUID> contentIds) {
+        final String name = (entity.getName() == null || entity.getName().isBlank())
+                ? "Unnamed File"
+                : entity.getName();
+        final UUID latestContentId = (contentIds != null && !contentIds.isEmpty())
+                ? contentIds.get(contentIds.size() - 1)
+                : null;
+        final boolean video = mediaRecordMapper.typeToDto(entity.getType()) == MediaType.VIDEO;
+        return new Material(entity.getId(), name, video, latestContentId);
+    }
+
+    private static String listNames(final List<Material> materials) {
+        final String names = materials.stream()
+                .limit(MAX_LISTED_NAMES)
+                .map(Material::name)
+                .collect(Collectors.joining(", "));
+        return materials.size() <= MAX_LISTED_NAMES
+                ? names
+                : names + " and " + (materials.size() - MAX_LISTED_NAMES) + " more";
+    }
+
+    private record Material(UUID id, String name, boolean video, UUID latestContentId) {
+    }
+}
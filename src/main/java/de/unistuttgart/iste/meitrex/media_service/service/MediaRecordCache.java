@@ -0,0 +1,124 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of media record snapshots, keyed by the id of the media record.
+ * <p>
+ * A single request often loads the same media record several times, e.g. once for the access check and once more for
+ * the actual operation. The cache stores copies of the media records and hands out copies, so callers may modify the
+ * returned objects. Every mutation of a media record must invalidate it, see {@link #invalidate(Collection)}. Entries
+ * additionally expire after a configurable time, which bounds the staleness in case an invalidation is missed, e.g.
+ * when the database is changed by another instance of the service.
+ * <p>
+ * Hit/miss statistics are published as "cache.*" metrics with the tag {@code cache=mediaRecords}.
+ */
+@Component
+public class MediaRecordCache {
+
+    private final Cache<UUID, MediaRecord> cache;
+
+    public MediaRecordCache(@Value("${media.record-cache.maximum-size:10000}") final long maximumSize,
+                            @Value("${media.record-cache.expire-after-write:PT5M}") final Duration expireAfterWrite,
+                            final MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "mediaRecords");
+    }
+
+    /**
+     * Returns the media record with the passed id, loading it with the passed function if it is not cached.
+     *
+     * @param id     The id of the media record.
+     * @param loader Loads the media record. May throw if the media record does not exist.
+     * @return Returns a copy of the media record.
+     */
+    public MediaRecord get(final UUID id, final Function<UUID, MediaRecord> loader) {
+        return copy(cache.get(id, key -> copy(loader.apply(key))));
+    }
+
+    /**
+     * Returns the media records with the passed ids, loading all that are not cached with one call of the passed
+     * function.
+     *
+     * @param ids    The ids of the media records.
+     * @param loader Loads the media records with the passed ids. Media records that do not exist are simply missing
+     *               in the returned map.
+     * @return Returns copies of the found media records, by id.
+     */
+    public Map<UUID, MediaRecord> getAll(final Collection<UUID> ids,
+                                         final Function<Set<? extends UUID>, Map<UUID, MediaRecord>> loader) {
+        final Map<UUID, MediaRecord> found = cache.getAll(ids, missingIds -> {
+            final Map<UUID, MediaRecord> loaded = new HashMap<>();
+            loader.apply(missingIds).forEach((id, mediaRecord) -> loaded.put(id, copy(mediaRecord)));
+            return loaded;
+        });
+
+        final Map<UUID, MediaRecord> result = HashMap.newHashMap(found.size());
+        found.forEach((id, mediaRecord) -> result.put(id, copy(mediaRecord)));
+        return result;
+    }
+
+    /**
+     * Removes the media records with the passed ids from the cache. If called within a transaction, they are removed
+     * again after the transaction has been committed, so that a concurrent read cannot put the state from before the
+     * commit back into the cache.
+     *
+     * @param ids The ids of the media records that have been changed or deleted.
+     */
+    public void invalidate(final Collection<UUID> ids) {
+        final List<UUID> idsToInvalidate = List.copyOf(ids);
+        cache.invalidateAll(idsToInvalidate);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(final int status) {
+                    cache.invalidateAll(idsToInvalidate);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the media record with the passed id from the cache, see {@link #invalidate(Collection)}.
+     *
+     * @param id The id of the media record that has been changed or deleted.
+     */
+    public void invalidate(final UUID id) {
+        invalidate(List.of(id));
+    }
+
+    private static MediaRecord copy(final MediaRecord mediaRecord) {
+        if (mediaRecord == null) {
+            return null;
+        }
+        return MediaRecord.builder()
+                .setId(mediaRecord.getId())
+                .setName(mediaRecord.getName())
+                .setCreatorId(mediaRecord.getCreatorId())
+                .setType(mediaRecord.getType())
+                .setCourseIds(copyList(mediaRecord.getCourseIds()))
+                .setContentIds(copyList(mediaRecord.getContentIds()))
+                .build();
+    }
+
+    private static List<UUID> copyList(final List<UUID> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+}
@@ -0,0 +1,398 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconciles the media records in the database with the files stored in MinIO.
+ * <p>
+ * For each media type, the object names of the type's bucket and the ids of the media records of that type are
+ * streamed in ascending order and merged in a single pass, so neither side has to be held in memory completely and
+ * no request per media record is sent to MinIO.
+ * <ul>
+ *     <li>Media records without a file are deleted in batches, unless they have been created within the record
+ *     grace period, since their file may still be uploaded, or their file has appeared by the time the batch is
+ *     deleted.</li>
+ *     <li>Objects without a media record are reported and, if enabled, removed.</li>
+ * </ul>
+ * Progress and results are published as "media.reconciliation.*" metrics.
+ */
+@Service
+@Slf4j
+public class MediaRecordReconciliationService {
+
+    private static final UUID LOWEST_UUID = new UUID(0, 0);
+    private static final String STANDARDIZED_SUFFIX = "_standardized";
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+
+    private final MinioClient minioInternalClient;
+    private final MediaRecordRepository repository;
+    private final MediaService mediaService;
+
+    private final int pageSize;
+    private final int deleteBatchSize;
+    private final boolean removeOrphanedObjects;
+    private final Duration objectGracePeriod;
+    private final Duration recordGracePeriod;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong scannedRecords = new AtomicLong();
+    private final AtomicLong scannedObjects = new AtomicLong();
+    private final Counter deletedRecordsCounter;
+    private final Counter orphanedObjectsCounter;
+    private final Counter removedObjectsCounter;
+    private final Timer runTimer;
+
+    public MediaRecordReconciliationService(
+            final MinioClient minioInternalClient,
+            final MediaRecordRepository repository,
+            final MediaService mediaService,
+            final MeterRegistry meterRegistry,
+            @Value("${media.reconciliation.page-size:1000}") final int pageSize,
+            @Value("${media.reconciliation.delete-batch-size:100}") final int deleteBatchSize,
+            @Value("${media.reconciliation.remove-orphaned-objects:false}") final boolean removeOrphanedObjects,
+            @Value("${media.reconciliation.object-grace-period:PT1H}") final Duration objectGracePeriod,
+            @Value("${media.reconciliation.record-grace-period:PT24H}") final Duration recordGracePeriod) {
+        this.minioInternalClient = minioInternalClient;
+        this.repository = repository;
+        this.mediaService = mediaService;
+        this.pageSize = pageSize;
+        this.deleteBatchSize = deleteBatchSize;
+        this.removeOrphanedObjects = removeOrphanedObjects;
+        this.objectGracePeriod = objectGracePeriod;
+        this.recordGracePeriod = recordGracePeriod;
+
+        meterRegistry.gauge("media.reconciliation.running", running, value -> value.get() ? 1 : 0);
+        meterRegistry.gauge("media.reconciliation.scanned.records", scannedRecords);
+        meterRegistry.gauge("media.reconciliation.scanned.objects", scannedObjects);
+        this.deletedRecordsCounter = meterRegistry.counter("media.reconciliation.deleted.records");
+        this.orphanedObjectsCounter = meterRegistry.counter("media.reconciliation.orphaned.objects");
+        this.removedObjectsCounter = meterRegistry.counter("media.reconciliation.removed.objects");
+        this.runTimer = meterRegistry.timer("media.reconciliation.duration");
+    }
+
+    /**
+     * Result of a reconciliation run.
+     *
+     * @param scannedRecords  Number of media records that have been compared.
+     * @param scannedObjects  Number of objects that have been compared.
+     * @param deletedRecords  Number of media records that have been deleted because their file is missing.
+     * @param orphanedObjects Number of objects that do not belong to any media record.
+     * @param removedObjects  Number of orphaned objects that have been removed.
+     */
+    public record Report(long scannedRecords, long scannedObjects, long deletedRecords,
+                         long orphanedObjects, long removedObjects) {
+    }
+
+    /**
+     * Runs the reconciliation every night, by default at 3 am.
+     */
+    @Scheduled(cron = "${mediarecord.delete.cron}")
+    public void scheduledReconciliation() {
+        reconcile();
+    }
+
+    /**
+     * Reconciles all buckets of the media types with the media records in the database.
+     * Does nothing if a reconciliation is already running.
+     *
+     * @return Returns the report of the run, or empty if a reconciliation is already running.
+     */
+    public Optional<Report> reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Reconciliation of media records is already running, skipping");
+            return Optional.empty();
+        }
+
+        try {
+            scannedRecords.set(0);
+            scannedObjects.set(0);
+            log.info("Running reconciliation of media records and files");
+
+            final Report report = runTimer.record(() -> {
+                Report total = new Report(0, 0, 0, 0, 0);
+                for (final MediaRecordEntity.MediaType type : MediaRecordEntity.MediaType.values()) {
+                    final Report bucketReport = reconcileBucket(type);
+                    total = new Report(
+                            total.scannedRecords() + bucketReport.scannedRecords(),
+                            total.scannedObjects() + bucketReport.scannedObjects(),
+                            total.deletedRecords() + bucketReport.deletedRecords(),
+                            total.orphanedObjects() + bucketReport.orphanedObjects(),
+                            total.removedObjects() + bucketReport.removedObjects());
+                }
+                return total;
+            });
+
+            log.info("Reconciliation completed: {}", report);
+            return Optional.of(report);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Merges the sorted object names of the bucket of the passed media type with the sorted ids of the media records
+     * of that type.
+     * <p>
+     * Media record ids are UUIDs, whose order in Postgres is the same as the order of their string representation.
+     * MinIO lists objects in lexicographic order, and the standardized file of a media record directly follows its
+     * original file. So both sides can be compared as strings while walking through them once.
+     */
+    private Report reconcileBucket(final MediaRecordEntity.MediaType type) {
+        final String bucketId = type.toString().toLowerCase();
+
+        final Iterator<Item> objects = listObjects(bucketId);
+        final Iterator<UUID> recordIds = new RecordIdIterator(type);
+
+        final List<UUID> recordsToDelete = new ArrayList<>(deleteBatchSize);
+        final List<Item> orphanedObjects = new ArrayList<>(deleteBatchSize);
+        long recordCount = 0;
+        long objectCount = 0;
+        long deletedRecords = 0;
+        long orphanedObjectCount = 0;
+        long removedObjects = 0;
+
+        UUID recordId = recordIds.hasNext() ? recordIds.next() : null;
+        Item object = objects.hasNext() ? objects.next() : null;
+        // whether the original file of the current record has been found
+        boolean recordHasFile = false;
+
+        while (recordId != null || object != null) {
+            final int comparison;
+            if (recordId == null) {
+                comparison = 1;
+            } else if (object == null) {
+                comparison = -1;
+            } else {
+                comparison = recordId.toString().compareTo(baseName(object.objectName()));
+            }
+
+            if (comparison < 0) {
+                // all objects of the current record have been seen
+                recordCount++;
+                scannedRecords.incrementAndGet();
+                if (!recordHasFile) {
+                    recordsToDelete.add(recordId);
+                    if (recordsToDelete.size() >= deleteBatchSize) {
+                        deletedRecords += deleteRecords(bucketId, recordsToDelete);
+                    }
+                }
+                recordId = recordIds.hasNext() ? recordIds.next() : null;
+                recordHasFile = false;
+            } else {
+                objectCount++;
+                scannedObjects.incrementAndGet();
+                if (comparison == 0) {
+                    recordHasFile |= object.objectName().equals(recordId.toString());
+                } else if (!isWithinGracePeriod(object)) {
+                    orphanedObjectCount++;
+                    orphanedObjectsCounter.increment();
+                    log.debug("Object {} in bucket {} does not belong to any media record", object.objectName(), bucketId);
+                    orphanedObjects.add(object);
+                    if (orphanedObjects.size() >= deleteBatchSize) {
+                        removedObjects += handleOrphanedObjects(bucketId, orphanedObjects);
+                    }
+                }
+                object = objects.hasNext() ? objects.next() : null;
+            }
+        }
+
+        deletedRecords += deleteRecords(bucketId, recordsToDelete);
+        removedObjects += handleOrphanedObjects(bucketId, orphanedObjects);
+
+        if (deletedRecords > 0 || orphanedObjectCount > 0) {
+            log.info("Bucket {}: deleted {} media records without a file, found {} orphaned objects, removed {}",
+                    bucketId, deletedRecords, orphanedObjectCount, removedObjects);
+        }
+
+        return new Report(recordCount, objectCount, deletedRecords, orphanedObjectCount, removedObjects);
+    }
+
+    /**
+     * Deletes the passed media records which were found without a file. Media records created within the record
+     * grace period are kept, and the file of the others is checked again right before deleting them, since it may
+     * have been uploaded after the bucket was listed.
+     */
+    private int deleteRecords(final String bucketId, final List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        final List<UUID> toDelete = repository
+                .findIdsCreatedBefore(ids, OffsetDateTime.now().minus(recordGracePeriod)).stream()
+                .filter(id -> isFileMissing(bucketId, id))
+                .toList();
+        ids.clear();
+        if (toDelete.isEmpty()) {
+            return 0;
+        }
+
+        final int deleted = mediaService.deleteMediaRecordRows(toDelete);
+        deletedRecordsCounter.increment(deleted);
+        return deleted;
+    }
+
+    /**
+     * Checks whether the original file of the media record is missing. Any error other than a missing object keeps
+     * the media record, so it is never deleted because MinIO is unavailable.
+     */
+    private boolean isFileMissing(final String bucketId, final UUID mediaRecordId) {
+        try {
+            minioInternalClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketId)
+                    .object(mediaRecordId.toString())
+                    .build());
+            log.info("File of media record {} has been uploaded during the reconciliation, keeping it", mediaRecordId);
+            return false;
+        } catch (final ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return true;
+            }
+            log.warn("Could not check the file of media record {}, keeping it: {}", mediaRecordId,
+                    e.errorResponse().code());
+            return false;
+        } catch (final Exception e) {
+            log.warn("Could not check the file of media record {}, keeping it", mediaRecordId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the passed orphaned objects if this is enabled. Otherwise, they have only been reported.
+     */
+    @SneakyThrows
+    private int handleOrphanedObjects(final String bucketId, final List<Item> objects) {
+        if (objects.isEmpty() || !removeOrphanedObjects) {
+            objects.clear();
+            return 0;
+        }
+
+        // a media record might have been created while the bucket was listed, so check again before removing
+        final Set<UUID> ids = new HashSet<>();
+        for (final Item object : objects) {
+            parseUuid(baseName(object.objectName())).ifPresent(ids::add);
+        }
+        final Set<String> existingIds = new HashSet<>();
+        if (!ids.isEmpty()) {
+            repository.findExistingIds(ids).forEach(id -> existingIds.add(id.toString()));
+        }
+
+        final List<DeleteObject> toRemove = objects.stream()
+                .filter(object -> !existingIds.contains(baseName(object.objectName())))
+                .map(object -> new DeleteObject(object.objectName()))
+                .toList();
+        objects.clear();
+
+        int errors = 0;
+        // the objects are only removed while iterating over the results
+        for (final Result<DeleteError> result : minioInternalClient.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(bucketId)
+                .objects(toRemove)
+                .build())) {
+            final DeleteError error = result.get();
+            log.warn("Failed to remove orphaned object {} from bucket {}: {}",
+                    error.objectName(), bucketId, error.message());
+            errors++;
+        }
+
+        final int removed = toRemove.size() - errors;
+        removedObjectsCounter.increment(removed);
+        return removed;
+    }
+
+    private boolean isWithinGracePeriod(final Item object) {
+        // objects uploaded just now might belong to a media record created after its ids were read
+        final ZonedDateTime lastModified = object.isDir() ? null : object.lastModified();
+        return lastModified != null && lastModified.isAfter(ZonedDateTime.now().minus(objectGracePeriod));
+    }
+
+    private Iterator<Item> listObjects(final String bucketId) {
+        final Iterator<Result<Item>> results = minioInternalClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucketId)
+                .build()).iterator();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return results.hasNext();
+            }
+
+            @Override
+            @SneakyThrows
+            public Item next() {
+                return results.next().get();
+            }
+        };
+    }
+
+    private static String baseName(final String objectName) {
+        return objectName.endsWith(STANDARDIZED_SUFFIX)
+                ? objectName.substring(0, objectName.length() - STANDARDIZED_SUFFIX.length())
+                : objectName;
+    }
+
+    private static Optional<UUID> parseUuid(final String value) {
+        try {
+            return Optional.of(UUID.fromString(value));
+        } catch (final IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Iterates over the ids of all media records of a type in ascending order, fetching them page by page.
+     */
+    private class RecordIdIterator implements Iterator<UUID> {
+        private final MediaRecordEntity.MediaType type;
+        private Iterator<UUID> page = Collections.emptyIterator();
+        private UUID lastId = LOWEST_UUID;
+        private boolean exhausted = false;
+
+        RecordIdIterator(final MediaRecordEntity.MediaType type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                final List<UUID> ids = repository.findIdsByTypeAfter(type, lastId, PageRequest.ofSize(pageSize));
+                exhausted = ids.size() < pageSize;
+                page = ids.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public UUID next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastId = page.next();
+            return lastId;
+        }
+    }
+}
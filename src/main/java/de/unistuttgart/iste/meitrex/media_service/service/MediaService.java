@@ -1,38 +1,49 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
 import de.unistuttgart.iste.meitrex.common.event.*;
 import de.unistuttgart.iste.meitrex.common.exception.IncompleteEventMessageException;
 import de.unistuttgart.iste.meitrex.generated.dto.CreateMediaRecordInput;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordConnection;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordFilter;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordPageInfo;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordPageInput;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordSortField;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaType;
 import de.unistuttgart.iste.meitrex.generated.dto.UpdateMediaRecordInput;
+import de.unistuttgart.iste.meitrex.media_service.exception.ConversionRejectedException;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.StandardizedFileEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordSpecifications;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.StandardizedFileRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.*;
 import io.minio.errors.ErrorResponseException;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import org.springframework.scheduling.annotation.Async;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.InputStream;
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -58,22 +69,51 @@ public class MediaService {
     public static final String MEDIA_RECORDS_NOT_FOUND = "Media record(s) with id(s) %s not found.";
     public static final String FILENAME_STANDARDIZED = "filenameStandardized";
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Validity of pre-signed urls handed out to clients.
+     */
+    private static final Duration EXTERNAL_URL_VALIDITY = Duration.ofMinutes(15);
+    /**
+     * Validity of pre-signed urls used from within the system. This is the maximum per S3 spec.
+     */
+    private static final Duration INTERNAL_URL_VALIDITY = Duration.ofDays(7);
+
     private final MinioClient minioInternalClient;
     private final MinioClient minioExternalClient;
 
-    private final TopicPublisher topicPublisher;
+    private final EventOutbox eventOutbox;
     /**
      * Database repository storing our media records.
      */
     private final MediaRecordRepository repository;
+    /**
+     * Index of the standardized files by the content hash of their original file.
+     */
+    private final StandardizedFileRepository standardizedFileRepository;
     /**
      * Mapper used to map media record DTOs to database Entities and vice-versa.
      */
-    private final ModelMapper modelMapper;
+    private final MediaRecordMapper mediaRecordMapper;
     /**
      * Service used to convert files to standardized formats.
      */
     private final FileConversionService fileConversionService;
+    /**
+     * Cache for the pre-signed urls of the media record files.
+     */
+    private final PresignedUrlCache presignedUrlCache;
+    /**
+     * Cache for media records which are read often. Every method changing a media record must invalidate it.
+     */
+    private final MediaRecordCache mediaRecordCache;
+    /**
+     * Collects uploaded files per course and notifies the course members about them.
+     */
+    private final MaterialNotificationAggregator materialNotificationAggregator;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Returns all media records.
@@ -81,13 +121,9 @@ public class MediaService {
      * @return Returns a list containing all saved media records.
      */
     public List<MediaRecord> getAllMediaRecords() {
-        final List<MediaRecord> records = repository.findAll().stream()
+        return repository.findAll().stream()
                 .map(this::mapEntityToMediaRecord)
                 .toList();
-
-        removeExpiredUrlsFromMediaRecords(records);
-
-        return records;
     }
 
     /**
@@ -100,12 +136,16 @@ public class MediaService {
      *                                 the database.
      */
     public List<MediaRecord> getMediaRecordsByIds(final List<UUID> ids) {
-        final List<MediaRecordEntity> records = repository.getAllByIdPreservingOrder(ids).stream().toList();
+        final Map<UUID, MediaRecord> recordsById = getCachedMediaRecords(ids);
 
-        checkForMissingMediaRecords(ids, records);
+        final List<UUID> missingIds = ids.stream().filter(id -> !recordsById.containsKey(id)).toList();
+        if (!missingIds.isEmpty()) {
+            throw new EntityNotFoundException(MEDIA_RECORDS_NOT_FOUND
+                    .formatted(missingIds.stream().map(UUID::toString).collect(Collectors.joining(", "))));
+        }
 
-        return records.stream()
-                .map(x -> removeExpiredUrlsFromMediaRecord(modelMapper.map(x, MediaRecord.class)))
+        return ids.stream()
+                .map(recordsById::get)
                 .toList();
     }
 
@@ -117,32 +157,35 @@ public class MediaService {
      * be found, returns NULL for that media record instead.
      */
     public List<MediaRecord> findMediaRecordsByIds(final List<UUID> ids) {
-        final List<MediaRecordEntity> records = repository.findAllById(ids).stream().toList();
+        final Map<UUID, MediaRecord> recordsById = getCachedMediaRecords(ids);
 
         final List<MediaRecord> result = new ArrayList<>(ids.size());
-        final List<MediaRecord> expiredRecords = new ArrayList<>();
-
-        // go over all requested ids
         for (final UUID id : ids) {
-            // get the entity with the matching id or NULL if it doesn't exist
-            final MediaRecordEntity entity = records.stream().filter(x -> x.getId().equals(id)).findAny().orElse(null);
-            MediaRecord mediaRecord = null;
-            // if we found an entity, convert it to a DTO
-            if (entity != null) {
-                mediaRecord = modelMapper.map(entity, MediaRecord.class);
-                expiredRecords.add(mediaRecord);
-            }
-            result.add(mediaRecord);
+            // NULL if no media record with this id exists
+            result.add(recordsById.get(id));
         }
 
-
-        removeExpiredUrlsFromMediaRecords(expiredRecords);
-
         return result;
     }
 
     public MediaRecord getMediaRecordById(final UUID id) {
-        return removeExpiredUrlsFromMediaRecord(mapEntityToMediaRecord(requireMediaRecordExisting(id)));
+        return mediaRecordCache.get(id, key -> mapEntityToMediaRecord(requireMediaRecordExisting(key)));
+    }
+
+    /**
+     * Returns the media records with the passed ids from the {@link MediaRecordCache}, loading all media records that
+     * are not cached with a single query.
+     *
+     * @return Returns the found media records by their id. Ids without a media record are missing in the map.
+     */
+    private Map<UUID, MediaRecord> getCachedMediaRecords(final Collection<UUID> ids) {
+        return mediaRecordCache.getAll(ids, missingIds -> {
+            final Map<UUID, MediaRecord> loaded = new HashMap<>();
+            for (final MediaRecordEntity entity : repository.findAllById(missingIds)) {
+                loaded.put(entity.getId(), mapEntityToMediaRecord(entity));
+            }
+            return loaded;
+        });
     }
 
     /**
@@ -154,8 +197,7 @@ public class MediaService {
     public List<MediaRecord> getMediaRecordsForUser(final UUID userId) {
         final List<MediaRecordEntity> records = repository.findMediaRecordEntitiesByCreatorId(userId);
 
-        return removeExpiredUrlsFromMediaRecords(
-                records.stream().map(x -> modelMapper.map(x, MediaRecord.class)).toList());
+        return records.stream().map(mediaRecordMapper::entityToDto).toList();
     }
 
     /**
@@ -165,59 +207,124 @@ public class MediaService {
      * @return a list of lists of media records for each user.
      */
     public List<List<MediaRecord>> getMediaRecordsForUsers(final List<UUID> userIds) {
-        final List<List<MediaRecord>> result = new ArrayList<>();
-        for (final UUID userId: userIds) {
-            List<MediaRecord> userMediaRecords = repository.findMediaRecordEntitiesByCreatorId(userId).stream()
-                    .map(x -> modelMapper.map(x, MediaRecord.class)).toList();
-
-            removeExpiredUrlsFromMediaRecords(userMediaRecords);
-
-            result.add(userMediaRecords);
+        if (userIds.isEmpty()) {
+            return List.of();
         }
 
-        return result;
+        // fetch the media records of all users in one query and sort them into one list per user
+        final List<MediaRecordEntity> records = repository.findMediaRecordEntitiesByCreatorIdIn(new HashSet<>(userIds));
+
+        return groupByIds(userIds, records, entity -> List.of(entity.getCreatorId()), this::mapEntityToMediaRecord);
     }
 
     /**
-     * Gets all media records that are associated with the passed content ids.
+     * Returns a page of the media records matching the passed filter, using keyset pagination.
+     * <p>
+     * Instead of an offset, the page input contains the cursor of the last media record of the previous page. The
+     * query then only fetches media records sorted after that one, so each page costs the same, no matter how far the
+     * client has paged.
      *
-     * @param contentIds           The content ids to get the media records for.
-     * @return Returns a list of lists, where each sublist stores the media records that are associated with the content
-     * id at the same index in the passed list.
+     * @param filter The filter the media records must match, or null to return all media records.
+     * @param page   The page to return, or null to return the first page with the default size.
+     * @return Returns the page of media records.
+     * @throws IllegalArgumentException If the page size is out of bounds or the cursor is invalid.
      */
-    public List<List<MediaRecord>> getMediaRecordsByContentIds(final List<UUID> contentIds) {
-        final List<MediaRecordEntity> records = repository.findMediaRecordEntitiesByContentIds(contentIds);
-
-        // create our resulting list
-        final List<List<MediaRecord>> result = new ArrayList<>(contentIds.size());
-
-        // fill it with empty lists for each content id so that we can later fill them with
-        // the media records associated with that content id
-        for (int i = 0; i < contentIds.size(); i++) {
-            result.add(new ArrayList<>());
+    public MediaRecordConnection getMediaRecordsPage(@Nullable final MediaRecordFilter filter,
+                                                     @Nullable final MediaRecordPageInput page) {
+        final int size = page != null && page.getSize() != null ? page.getSize() : DEFAULT_PAGE_SIZE;
+        final MediaRecordSortField sortBy = page != null && page.getSortBy() != null
+                ? page.getSortBy()
+                : MediaRecordSortField.ID;
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
         }
 
-        // loop over all the entities we got and put them in their respective lists
-        for (final MediaRecordEntity entity : records) {
-            for (int i = 0; i < contentIds.size(); i++) {
-                final UUID contentId = contentIds.get(i);
-                if (entity.getContentIds().contains(contentId)) {
-                    result.get(i).add(removeExpiredUrlsFromMediaRecord(mapEntityToMediaRecord(entity)));
-                }
+        final List<Specification<MediaRecordEntity>> specifications = new ArrayList<>();
+        if (filter != null) {
+            if (filter.getTypes() != null && !filter.getTypes().isEmpty()) {
+                specifications.add(MediaRecordSpecifications.hasTypeIn(filter.getTypes().stream()
+                        .map(type -> MediaRecordEntity.MediaType.valueOf(type.name()))
+                        .toList()));
+            }
+            if (filter.getCreatorIds() != null && !filter.getCreatorIds().isEmpty()) {
+                specifications.add(MediaRecordSpecifications.hasCreatorIdIn(filter.getCreatorIds()));
             }
+            if (filter.getCourseIds() != null && !filter.getCourseIds().isEmpty()) {
+                specifications.add(MediaRecordSpecifications.isInAnyCourse(filter.getCourseIds()));
+            }
+        }
+        if (page != null && page.getAfter() != null) {
+            specifications.add(decodeCursor(page.getAfter(), sortBy));
         }
 
-        return result;
+        final Sort sort = sortBy == MediaRecordSortField.NAME ? Sort.by("name", "id") : Sort.by("id");
+
+        // fetch one more element than requested to find out if there is a next page
+        final List<MediaRecordEntity> entities = repository.findBy(Specification.allOf(specifications),
+                query -> query.sortBy(sort).limit(size + 1).all());
+
+        final boolean hasNext = entities.size() > size;
+        final List<MediaRecordEntity> pageEntities = hasNext ? entities.subList(0, size) : entities;
+        final String endCursor = pageEntities.isEmpty()
+                ? null
+                : encodeCursor(pageEntities.get(pageEntities.size() - 1), sortBy);
+
+        return MediaRecordConnection.builder()
+                .setElements(pageEntities.stream().map(this::mapEntityToMediaRecord).toList())
+                .setPageInfo(MediaRecordPageInfo.builder()
+                        .setSize(pageEntities.size())
+                        .setHasNext(hasNext)
+                        .setEndCursor(endCursor)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Creates the opaque cursor pointing to the passed media record. The cursor contains the values of the sort
+     * columns, so that the next page can be fetched with a range condition on them.
+     */
+    private static String encodeCursor(final MediaRecordEntity entity, final MediaRecordSortField sortBy) {
+        final String cursor = sortBy == MediaRecordSortField.NAME
+                ? sortBy + ":" + entity.getId() + ":" + entity.getName()
+                : sortBy + ":" + entity.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor created by {@link #encodeCursor(MediaRecordEntity, MediaRecordSortField)} into a specification
+     * matching all media records after it.
+     */
+    private static Specification<MediaRecordEntity> decodeCursor(final String cursor,
+                                                                 final MediaRecordSortField sortBy) {
+        try {
+            // the name is the last part, as it may contain the separator itself
+            final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(":", 3);
+            final MediaRecordSortField cursorSortBy = MediaRecordSortField.valueOf(parts[0]);
+            final UUID id = UUID.fromString(parts[1]);
+
+            if (cursorSortBy != sortBy) {
+                throw new IllegalArgumentException("Cursor was created for a different sort order.");
+            }
+            return sortBy == MediaRecordSortField.NAME
+                    ? MediaRecordSpecifications.nameAndIdAfter(parts[2], id)
+                    : MediaRecordSpecifications.idAfter(id);
+        } catch (final IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
     }
 
     /**
-     * Gets all media records that are associated with the passed content id.
+     * Gets all media records that are associated with the passed content ids.
      *
-     * @param contentId The content id to get the media records for.
-     * @return Returns a list of media records that are associated with the content id.
+     * @param contentIds           The content ids to get the media records for.
+     * @return Returns a list of lists, where each sublist stores the media records that are associated with the content
+     * id at the same index in the passed list.
      */
-    public List<MediaRecordEntity> getMediaRecordEntitiesByContentId(final UUID contentId) {
-        return repository.findMediaRecordEntitiesByContentIds(List.of(contentId));
+    public List<List<MediaRecord>> getMediaRecordsByContentIds(final List<UUID> contentIds) {
+        final List<MediaRecordEntity> records = repository.findMediaRecordEntitiesByContentIds(contentIds);
+
+        return groupByIds(contentIds, records, MediaRecordEntity::getContentIds, this::mapEntityToMediaRecord);
     }
 
     /**
@@ -229,26 +336,7 @@ public class MediaService {
     public List<List<MediaRecord>> getMediaRecordsForCourses(final List<UUID> courseIds) {
         final List<MediaRecordEntity> records = repository.findMediaRecordEntitiesByCourseIds(courseIds);
 
-        // create our resulting list
-        final List<List<MediaRecord>> result = new ArrayList<>(courseIds.size());
-
-        // fill it with empty lists for each content id so that we can later fill them with
-        // the media records associated with that content id
-        for (int i = 0; i < courseIds.size(); i++) {
-            result.add(new ArrayList<>());
-        }
-
-        // loop over all the entities we got and put them in their respective lists
-        for (final MediaRecordEntity entity : records) {
-            for (int i = 0; i < courseIds.size(); i++) {
-                final UUID courseId = courseIds.get(i);
-                if (entity.getCourseIds().contains(courseId)) {
-                    result.get(i).add(removeExpiredUrlsFromMediaRecord(mapEntityToMediaRecord(entity)));
-                }
-            }
-        }
-
-        return result;
+        return groupByIds(courseIds, records, MediaRecordEntity::getCourseIds, this::mapEntityToMediaRecord);
     }
 
     /**
@@ -270,30 +358,24 @@ public class MediaService {
      * @param mediaRecordIds The ids of the media records to link to the content.
      * @return Returns a list of the media records that were linked to the content.
      */
+    @Transactional
     public List<MediaRecord> setLinkedMediaRecordsForContent(final UUID contentId, final List<UUID> mediaRecordIds) {
-        final List<MediaRecordEntity> mediaRecordsCurrentlyLinkedToContent
-                = repository.findMediaRecordEntitiesByContentIds(List.of(contentId));
-
-        // remove contentId from all media records that are currently linked to it
-        for (final MediaRecordEntity entity : mediaRecordsCurrentlyLinkedToContent) {
-            entity.getContentIds().remove(contentId);
-            repository.save(entity);
-        }
-
-        final List<MediaRecordEntity> mediaRecordsToBeLinkedToContent = repository.findAllById(mediaRecordIds);
+        final Set<UUID> distinctMediaRecordIds = new HashSet<>(mediaRecordIds);
+        checkForMissingMediaRecords(distinctMediaRecordIds);
 
-        checkForMissingMediaRecords(mediaRecordIds, mediaRecordsToBeLinkedToContent);
+        // the media records currently linked to the content change as well
+        mediaRecordCache.invalidate(repository.findMediaRecordIdsByContentId(contentId));
+        mediaRecordCache.invalidate(distinctMediaRecordIds);
 
-        for (final MediaRecordEntity entity : mediaRecordsToBeLinkedToContent) {
-            entity.getContentIds().add(contentId);
-            repository.save(entity);
+        // remove contentId from all media records that are currently linked to it, then link it to the passed ones
+        repository.unlinkContentFromAllMediaRecords(contentId);
+        if (!distinctMediaRecordIds.isEmpty()) {
+            repository.linkContentToMediaRecords(contentId, distinctMediaRecordIds);
         }
 
-        topicPublisher.notifyContentMediaRecordLinksSet(new ContentMediaRecordLinksSetEvent(contentId, mediaRecordIds));
+        eventOutbox.notifyContentMediaRecordLinksSet(new ContentMediaRecordLinksSetEvent(contentId, mediaRecordIds));
 
-        return mediaRecordsToBeLinkedToContent.stream()
-                .map(x -> removeExpiredUrlsFromMediaRecord(modelMapper.map(x, MediaRecord.class)))
-                .toList();
+        return loadMediaRecords(mediaRecordIds);
     }
 
     /**
@@ -303,45 +385,49 @@ public class MediaService {
      * @param mediaRecordIds The ids of the media records to be added to the course.
      * @return Returns a list of the media records that were added to the course.
      */
+    @Transactional
     public List<MediaRecord> setMediaRecordsForCourse(final UUID courseId, final List<UUID> mediaRecordIds) {
-        final List<MediaRecordEntity> currentMediaRecords
-                = repository.findAllById(mediaRecordIds);
-
-        // remove courseId from all media records which currently contain it
-        for (final MediaRecordEntity entity : currentMediaRecords) {
-            entity.getCourseIds().remove(courseId);
-            repository.save(entity);
+        final Set<UUID> distinctMediaRecordIds = new HashSet<>(mediaRecordIds);
+        checkForMissingMediaRecords(distinctMediaRecordIds);
+
+        if (!distinctMediaRecordIds.isEmpty()) {
+            // remove courseId from the media records first, so that each of them is linked to the course exactly once
+            repository.unlinkCourseFromMediaRecords(courseId, distinctMediaRecordIds);
+            repository.linkCourseToMediaRecords(courseId, distinctMediaRecordIds);
+            mediaRecordCache.invalidate(distinctMediaRecordIds);
         }
 
-        final List<MediaRecordEntity> mediaRecordsToAddCourse = repository.findAllById(mediaRecordIds);
-
-        checkForMissingMediaRecords(mediaRecordIds, mediaRecordsToAddCourse);
+        return loadMediaRecords(mediaRecordIds);
+    }
 
-        for (final MediaRecordEntity entity : mediaRecordsToAddCourse) {
-            entity.getCourseIds().add(courseId);
-            repository.save(entity);
+    /**
+     * Loads the media records with the passed ids in the order of the ids, reflecting all changes made so far.
+     */
+    private List<MediaRecord> loadMediaRecords(final List<UUID> mediaRecordIds) {
+        if (mediaRecordIds.isEmpty()) {
+            return List.of();
         }
 
-
-        return removeExpiredUrlsFromMediaRecords(mediaRecordsToAddCourse.stream()
-                .map(x -> modelMapper.map(x, MediaRecord.class))
-                .toList());
+        return repository.getAllByIdPreservingOrder(mediaRecordIds).stream()
+                .map(this::mapEntityToMediaRecord)
+                .toList();
     }
 
     /**
-     * if there are fewer returned records than passed ids, that means that some ids could not be found in the
-     * db. In that case, calculate the difference of the two lists and throw an exception listing which ids
-     * could not be found
+     * Checks that a media record exists for each of the passed ids, without loading the media records.
      *
      * @param mediaRecordIds ids that should be checked
-     * @param entities       entities that were found
-     * @throws EntityNotFoundException if there are fewer returned records than passed ids
+     * @throws EntityNotFoundException if there is no media record for one or more of the passed ids
      */
-    private void checkForMissingMediaRecords(final List<UUID> mediaRecordIds, final List<MediaRecordEntity> entities) {
-        if (entities.size() != mediaRecordIds.size()) {
-            final List<UUID> missingIds = new ArrayList<>(mediaRecordIds);
-            missingIds.removeAll(entities.stream().map(MediaRecordEntity::getId).toList());
+    private void checkForMissingMediaRecords(final Set<UUID> mediaRecordIds) {
+        if (mediaRecordIds.isEmpty()) {
+            return;
+        }
 
+        final Set<UUID> missingIds = new HashSet<>(mediaRecordIds);
+        repository.findExistingIds(mediaRecordIds).forEach(missingIds::remove);
+
+        if (!missingIds.isEmpty()) {
             throw new EntityNotFoundException(MEDIA_RECORDS_NOT_FOUND
                     .formatted(missingIds.stream().map(UUID::toString).collect(Collectors.joining(", "))));
         }
@@ -356,7 +442,7 @@ public class MediaService {
      */
     public MediaRecord createMediaRecord(final List<UUID> courseIds, final CreateMediaRecordInput input,
                                          final UUID creatorId) {
-        final MediaRecordEntity entity = modelMapper.map(input, MediaRecordEntity.class);
+        final MediaRecordEntity entity = mediaRecordMapper.createInputToEntity(input);
 
         entity.setCreatorId(creatorId);
 
@@ -368,8 +454,9 @@ public class MediaService {
 
 
         repository.save(entity);
+        mediaRecordCache.invalidate(entity.getId());
 
-        return removeExpiredUrlsFromMediaRecord(mapEntityToMediaRecord(entity));
+        return mapEntityToMediaRecord(entity);
     }
 
     /**
@@ -380,38 +467,112 @@ public class MediaService {
      * @return Returns the id of the record which was deleted.
      * @throws EntityNotFoundException Thrown when no record matching the passed id could be found.
      */
-    @SneakyThrows
+    @Transactional
     public UUID deleteMediaRecord(final UUID id) {
-        requireMediaRecordExisting(id);
-        final MediaRecordEntity entity = repository.getReferenceById(id);
-        final Map<String, String> minioVariables = createMinIOVariables(entity);
-        final String bucketId = minioVariables.get(BUCKET_ID);
-        final String filename = minioVariables.get(FILENAME);
-        final String filenameStandardized = minioVariables.get(FILENAME_STANDARDIZED);
+        final MediaRecordEntity entity = requireMediaRecordExisting(id);
 
         repository.delete(entity);
+        repository.deleteConversionJobsByMediaRecordIds(List.of(id));
+        mediaRecordCache.invalidate(id);
+        removeFiles(List.of(entity));
 
-        if (doesObjectExist(filename, bucketId)) {
-            minioInternalClient.removeObject(
-                    RemoveObjectArgs
-                            .builder()
-                            .bucket(bucketId)
-                            .object(filename)
-                            .build());
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(entity.getId()));
+
+        return id;
+    }
+
+    /**
+     * Deletes the media records matching the specified ids together with their files, or throws
+     * EntityNotFoundException if a record for one of the ids could not be found.
+     * <p>
+     * The rows are deleted with one statement per table, the files with one batch request per bucket, and the
+     * deletion events are written to the outbox together.
+     *
+     * @param ids The ids of the media records which should be deleted.
+     * @return Returns the ids of the records which were deleted.
+     * @throws EntityNotFoundException Thrown when one or more passed ids do not have corresponding media records in
+     *                                 the database.
+     */
+    @Transactional
+    public List<UUID> deleteMediaRecords(final List<UUID> ids) {
+        final List<UUID> distinctIds = ids.stream().distinct().toList();
+        final List<MediaRecordEntity> entities = repository.findAllById(distinctIds);
+        if (entities.size() < distinctIds.size()) {
+            final Set<UUID> foundIds = entities.stream().map(MediaRecordEntity::getId).collect(Collectors.toSet());
+            throw new EntityNotFoundException(MEDIA_RECORDS_NOT_FOUND.formatted(distinctIds.stream()
+                    .filter(id -> !foundIds.contains(id))
+                    .map(UUID::toString)
+                    .collect(Collectors.joining(", "))));
         }
 
-        if (doesObjectExist(filenameStandardized, bucketId)) {
-            minioInternalClient.removeObject(
-                    RemoveObjectArgs
-                            .builder()
-                            .bucket(bucketId)
-                            .object(filenameStandardized)
-                            .build());
+        deleteMediaRecordRows(distinctIds);
+        removeFiles(entities);
+
+        return distinctIds;
+    }
+
+    /**
+     * Removes the original and the standardized files of the passed media records from MinIO, without checking
+     * whether they exist first. Removing a file which does not exist is not an error.
+     * <p>
+     * If a transaction is active, the files are only removed after it has committed, so the files of media records
+     * whose deletion is rolled back are kept.
+     */
+    private void removeFiles(final Collection<MediaRecordEntity> entities) {
+        final Map<String, List<String>> filenamesByBucket = new HashMap<>();
+        final Map<String, List<String>> standardizedFilenamesByBucket = new HashMap<>();
+        for (final MediaRecordEntity entity : entities) {
+            final Map<String, String> minioVariables = createMinIOVariables(entity);
+            final String bucketId = minioVariables.get(BUCKET_ID);
+            final String filename = minioVariables.get(FILENAME);
+            final String filenameStandardized = minioVariables.get(FILENAME_STANDARDIZED);
+
+            presignedUrlCache.invalidate(bucketId, filename);
+            presignedUrlCache.invalidate(bucketId, filenameStandardized);
+            filenamesByBucket.computeIfAbsent(bucketId, key -> new ArrayList<>())
+                    .addAll(List.of(filename, filenameStandardized));
+            standardizedFilenamesByBucket.computeIfAbsent(bucketId, key -> new ArrayList<>())
+                    .add(filenameStandardized);
         }
 
-        topicPublisher.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(entity.getId()));
+        for (final Map.Entry<String, List<String>> bucket : standardizedFilenamesByBucket.entrySet()) {
+            standardizedFileRepository.deleteByObjects(bucket.getKey(), bucket.getValue());
+        }
 
-        return id;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeObjects(filenamesByBucket);
+                }
+            });
+        } else {
+            removeObjects(filenamesByBucket);
+        }
+    }
+
+    /**
+     * Removes the passed objects with one batch request per bucket. Objects which could not be removed are only
+     * logged, they are left to the reconciliation of orphaned objects.
+     */
+    private void removeObjects(final Map<String, List<String>> filenamesByBucket) {
+        for (final Map.Entry<String, List<String>> bucket : filenamesByBucket.entrySet()) {
+            final String bucketId = bucket.getKey();
+            try {
+                // the objects are only removed while iterating over the results
+                for (final Result<DeleteError> result : minioInternalClient.removeObjects(RemoveObjectsArgs.builder()
+                        .bucket(bucketId)
+                        .objects(bucket.getValue().stream().map(DeleteObject::new).toList())
+                        .build())) {
+                    final DeleteError error = result.get();
+                    log.warn("Failed to remove object {} of a deleted media record from bucket {}: {}",
+                            error.objectName(), bucketId, error.message());
+                }
+            } catch (final Exception e) {
+                log.warn("Failed to remove the objects {} of deleted media records from bucket {}",
+                        bucket.getValue(), bucketId, e);
+            }
+        }
     }
 
     /**
@@ -426,10 +587,12 @@ public class MediaService {
         final MediaRecordEntity oldEntity = requireMediaRecordExisting(input.getId());
 
         // generate new entity based on updated data
-        final MediaRecordEntity newEntity = modelMapper.map(input, MediaRecordEntity.class);
+        final MediaRecordEntity newEntity = mediaRecordMapper.updateInputToEntity(input);
 
-        // keep creator id from old entity
+        // keep creator id, creation time and content hash from old entity
         newEntity.setCreatorId(oldEntity.getCreatorId());
+        newEntity.setCreatedAt(oldEntity.getCreatedAt());
+        newEntity.setContentHash(oldEntity.getContentHash());
         // update with current courseIds
         if (courseIds == null || courseIds.isEmpty()) {
             newEntity.setCourseIds(Collections.emptyList());
@@ -439,157 +602,129 @@ public class MediaService {
 
         // save updated entity
         final MediaRecordEntity entity = repository.save(newEntity);
+        mediaRecordCache.invalidate(entity.getId());
 
-        return removeExpiredUrlsFromMediaRecord(mapEntityToMediaRecord(entity));
+        return mapEntityToMediaRecord(entity);
     }
 
     private MediaRecord mapEntityToMediaRecord(final MediaRecordEntity entity) {
-        return modelMapper.map(entity, MediaRecord.class);
+        return mediaRecordMapper.entityToDto(entity);
     }
 
     /**
-     * Helper method which sets the URLs of the passed media record to null if they are expired.
-     * @param record The media record to remove expired URLs from.
-     * @return Returns the same media record that has been passed to the method.
-     */
-    private MediaRecord removeExpiredUrlsFromMediaRecord(MediaRecord record) {
-        if(record.getDownloadUrl() != null && isExpired(record.getDownloadUrl()))
-            record.setDownloadUrl(null);
-
-        if(record.getUploadUrl() != null && isExpired(record.getUploadUrl()))
-            record.setUploadUrl(null);
-
-        if(record.getStandardizedDownloadUrl() != null && isExpired(record.getStandardizedDownloadUrl()))
-            record.setStandardizedDownloadUrl(null);
-
-        return record;
-    }
-
-    /**
-     * Helper method which sets the URLs of the passed media records to null if they are expired.
-     * @param records The media records to remove expired URLs from.
-     * @return Returns the same list of media records that has been passed to the method.
-     */
-    private List<MediaRecord> removeExpiredUrlsFromMediaRecords(List<MediaRecord> records) {
-        records.forEach(this::removeExpiredUrlsFromMediaRecord);
-        return records;
-    }
-
-    /**
-     * Checks if the download and upload url are expired and need to be recreated.
+     * Groups the passed entities by the ids they are associated with, in a single pass over the entities.
+     * <p>
+     * Each entity is mapped at most once, even if it is associated with several of the requested ids. The requested
+     * ids are indexed in a hash map, so the cost is linear in the number of requested ids plus the total size of the
+     * id collections of the entities.
      *
-     * @param url that should be checked
-     * @return true if the url is expired, false otherwise
+     * @param ids          The requested ids. May contain duplicates, each position gets its own list.
+     * @param entities     The entities to group.
+     * @param idsExtractor Returns the ids an entity is associated with, e.g. its content ids.
+     * @param mapper       Maps an entity to the type stored in the result.
+     * @return Returns a list of lists, where each sublist contains the mapped entities associated with the id at the
+     * same index in the passed list, in the order of the passed entities.
      */
-    @SuppressWarnings("java:S6353") // explicit regex is more readable
-    private boolean isExpired(final String url) {
-        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
-        final Pattern datePattern = Pattern.compile("X-Amz-Date=([0-9]*T[0-9]*)");
-        final Matcher dateMatcher = datePattern.matcher(url);
-        final Pattern expiryPattern = Pattern.compile("X-Amz-Expires=([0-9]*)");
-        final Matcher expiryMatcher = expiryPattern.matcher(url);
-
-        String dateString = "";
-        while (dateMatcher.find()) {
-            dateString = dateMatcher.group(1);
-
-        }
-        long expiryString = 0;
-        while (expiryMatcher.find()) {
-            expiryString = Long.parseLong(expiryMatcher.group(1));
+    static <E, R> List<List<R>> groupByIds(final List<UUID> ids,
+                                           final Collection<E> entities,
+                                           final Function<E, ? extends Collection<UUID>> idsExtractor,
+                                           final Function<E, R> mapper) {
+        final List<List<R>> result = new ArrayList<>(ids.size());
+        final Map<UUID, List<List<R>>> bucketsById = HashMap.newHashMap(ids.size());
+        for (final UUID id : ids) {
+            final List<R> bucket = new ArrayList<>();
+            result.add(bucket);
+            bucketsById.computeIfAbsent(id, key -> new ArrayList<>(1)).add(bucket);
         }
 
-        final ZonedDateTime date = ZonedDateTime.parse(dateString, formatter);
-        final long expiry = expiryString;
-
-        final ZonedDateTime expiration = date.plusSeconds(expiry - 300);
+        for (final E entity : entities) {
+            R mapped = null;
+            for (final UUID id : idsExtractor.apply(entity)) {
+                final List<List<R>> buckets = bucketsById.get(id);
+                if (buckets == null) {
+                    continue;
+                }
+                if (mapped == null) {
+                    mapped = mapper.apply(entity);
+                }
+                for (final List<R> bucket : buckets) {
+                    // an entity may list the same id twice, but must only be added once per bucket
+                    if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != mapped) {
+                        bucket.add(mapped);
+                    }
+                }
+            }
+        }
 
-        return expiration.toInstant().isBefore((Instant.now()));
+        return result;
     }
 
     /**
-     * Creates a URL for uploading a file to the MinIO Server and caches it in the database entry for this media
-     * record for possible future use.
+     * Creates URLs for uploading the files of the passed media records to the MinIO Server.
+     * The URLs are computed from the id and type of the media records only, no database access is performed.
      *
-     * @param mediaRecord UUID of the media record to generate the upload url for.
-     * @return Returns the created uploadURL.
+     * @param mediaRecords The media records to generate the upload urls for.
+     * @return Returns the upload urls, in the same order as the passed media records.
      */
-    @SneakyThrows
-    public String createMediaRecordUploadUrl(final MediaRecord mediaRecord) {
-        final MediaRecordEntity entity = requireMediaRecordExisting(mediaRecord.getId());
-        final Map<String, String> variables = createMinIOVariables(entity);
-        final String bucketId = variables.get(BUCKET_ID);
-        final String filename = variables.get(FILENAME);
-
-        final String uploadUrl = minioExternalClient.getPresignedObjectUrl(
-                GetPresignedObjectUrlArgs
-                        .builder()
-                        .method(Method.PUT)
-                        .bucket(bucketId)
-                        .object(filename)
-                        .expiry(15, TimeUnit.MINUTES)
-                        .build());
-        entity.setUploadUrl(uploadUrl);
-        repository.save(entity);
-        return uploadUrl;
+    public List<String> createMediaRecordUploadUrls(final List<MediaRecord> mediaRecords) {
+        return mediaRecords.stream()
+                .map(mediaRecord -> createPresignedUrl(false, Method.PUT, mediaRecord))
+                .toList();
     }
 
     /**
-     * Creates a URL for downloading a file from the MinIO Server and caches it in the database entry for this media
-     * record for possible future use.
+     * Creates URLs for downloading the files of the passed media records from the MinIO Server.
+     * The URLs are computed from the id and type of the media records only, no database access is performed.
      *
-     * @param mediaRecord UUID of the media record to generate the download url for.
-     * @return Returns the created downloadURL.
+     * @param mediaRecords The media records to generate the download urls for.
+     * @return Returns the download urls, in the same order as the passed media records.
      */
-    @SneakyThrows
-    public String createMediaRecordDownloadUrl(final UUID mediaRecord) {
-        final MediaRecordEntity entity = requireMediaRecordExisting(mediaRecord);
-        final Map<String, String> variables = createMinIOVariables(entity);
-        final String bucketId = variables.get(BUCKET_ID);
-        final String filename = variables.get(FILENAME);
-
-        final String downloadUrl = minioExternalClient.getPresignedObjectUrl(
-                GetPresignedObjectUrlArgs.builder()
-                        .method(Method.GET)
-                        .bucket(bucketId)
-                        .object(filename)
-                        .expiry(15, TimeUnit.MINUTES)
-                        .build());
-        entity.setDownloadUrl(downloadUrl);
-        repository.save(entity);
-        return downloadUrl;
+    public List<String> createMediaRecordDownloadUrls(final List<MediaRecord> mediaRecords) {
+        return mediaRecords.stream()
+                .map(mediaRecord -> createPresignedUrl(false, Method.GET, mediaRecord))
+                .toList();
     }
 
     /**
-     * Creates a standardized download url for the specified media record, if possible, and stores it in the DB.
-     * @param mediaRecord UUID of the media record for which to create the standardized download url.
+     * Creates a standardized download url for the specified media record, if possible.
+     * Once created, the url is served from the {@link PresignedUrlCache} until shortly before it expires.
+     *
+     * @param mediaRecord The media record for which to create the standardized download url.
      * @return Returns the created download url, if possible, or an empty optional if no standardized download url
      * could be created.
      */
-    public Optional<String> createMediaRecordStandardizedDownloadUrl(final UUID mediaRecord) {
-        Optional<String> url = helperCreateMediaRecordStandardizedDownloadUrl(mediaRecord);
-        if (url.isPresent()) {
-            final MediaRecordEntity entity = repository.getReferenceById(mediaRecord);
-            entity.setStandardizedDownloadUrl(url.get());
-            repository.save(entity);
-        }
-        return url;
+    public Optional<String> createMediaRecordStandardizedDownloadUrl(final MediaRecord mediaRecord) {
+        final Map<String, String> variables = createMinIOVariables(mediaRecord.getId(), mediaRecord.getType().toString());
+        final String bucketId = variables.get(BUCKET_ID);
+
+        // the url is cached under the name of the standardized file, even if it points to the original file because
+        // that one is already in the standardized format
+        return Optional.ofNullable(presignedUrlCache.get(bucketId, variables.get(FILENAME_STANDARDIZED), Method.GET,
+                false, EXTERNAL_URL_VALIDITY,
+                () -> helperCreateMediaRecordStandardizedDownloadUrl(mediaRecord.getType(), variables).orElse(null)))
+                .map(PresignedUrl::url);
     }
 
     /**
      * Helper method for creating a standardized download url for a media record.
-     * @param mediaRecord The media record for which to create the standardized download url.
+     * @param mediaType The type of the media record for which to create the standardized download url.
+     * @param variables The MinIO variables of the media record, see {@link #createMinIOVariables(UUID, String)}.
      * @return Returns the created download url, if possible, or an empty optional if no standardized download url
      * could be created.
      */
-    @SneakyThrows
-    private Optional<String> helperCreateMediaRecordStandardizedDownloadUrl(final UUID mediaRecord) {
-        final MediaRecordEntity entity = requireMediaRecordExisting(mediaRecord);
-        final Map<String, String> variables = createMinIOVariables(entity);
+    private Optional<String> helperCreateMediaRecordStandardizedDownloadUrl(final MediaType mediaType,
+                                                                            final Map<String, String> variables) {
         final String bucketId = variables.get(BUCKET_ID);
         final String filename = variables.get(FILENAME);
         final String filenameStandardized = variables.get(FILENAME_STANDARDIZED);
 
+        // check if we have a standardized mime type for the media type
+        final String standardizedMimeType = STANDARDIZED_MIME_TYPES_FOR_MEDIA_TYPES.get(mediaType);
+
+        // if we do not have a standardized type, return empty
+        if (standardizedMimeType == null)
+            return Optional.empty();
+
         Optional<StatObjectResponse> stat = getObjectInfo(filename, bucketId);
         if(stat.isEmpty())
             return Optional.empty();
@@ -597,24 +732,9 @@ public class MediaService {
         // get object mime type
         final String contentType = stat.get().contentType();
 
-        // check if we have a standardized mime type for the media type
-        final String standardizedMimeType = STANDARDIZED_MIME_TYPES_FOR_MEDIA_TYPES.get(
-                modelMapper.map(entity.getType(), MediaType.class));
-
-        // if we do not have a standardized type, return empty
-        if (standardizedMimeType == null)
-            return Optional.empty();
-
         // if we have a standardized type and the object is already of that type, return it
         if (contentType.equals(standardizedMimeType)) {
-            return Optional.of(
-                    minioExternalClient.getPresignedObjectUrl(
-                            GetPresignedObjectUrlArgs.builder()
-                                    .method(Method.GET)
-                                    .bucket(bucketId)
-                                    .object(filename)
-                                    .expiry(15, TimeUnit.MINUTES)
-                                    .build()));
+            return Optional.of(signUrl(minioExternalClient, Method.GET, bucketId, filename, EXTERNAL_URL_VALIDITY));
         }
 
         // otherwise, check if a standardized file exists for this object. If not, return empty
@@ -622,23 +742,47 @@ public class MediaService {
             return Optional.empty();
 
         // If a standardized file exists, return it
-        return Optional.of(
-                minioExternalClient.getPresignedObjectUrl(
-                        GetPresignedObjectUrlArgs.builder()
-                                .method(Method.GET)
-                                .bucket(bucketId)
-                                .object(filenameStandardized)
-                                .expiry(15, TimeUnit.MINUTES)
-                                .build()));
+        return Optional.of(signUrl(minioExternalClient, Method.GET, bucketId, filenameStandardized,
+                EXTERNAL_URL_VALIDITY));
+    }
+
+    /**
+     * Deletes the database rows of the passed media records, including their content links, course links, progress
+     * data and conversion jobs, with one statement per table. Does not touch the files in MinIO.
+     * For each deleted media record, a {@link MediaRecordDeletedEvent} is published.
+     *
+     * @param ids The ids of the media records to delete.
+     * @return Returns the number of deleted media records.
+     */
+    @Transactional
+    public int deleteMediaRecordRows(final Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        repository.deleteContentIdsByMediaRecordIds(ids);
+        repository.deleteCourseIdsByMediaRecordIds(ids);
+        repository.deleteProgressDataByMediaRecordIds(ids);
+        repository.deleteConversionJobsByMediaRecordIds(ids);
+        final int deleted = repository.deleteMediaRecordRowsByIds(ids);
+        mediaRecordCache.invalidate(ids);
+
+        eventOutbox.notifyMediaRecordsDeleted(ids.stream().map(MediaRecordDeletedEvent::new).toList());
+
+        return deleted;
     }
 
     /**
      * Check if the file of this media record needs to be converted to a standardized type and if so, convert it and
-     * store it in minio.
+     * store it in minio. The conversion itself runs asynchronously.
      * @param mediaRecordId The id of the media record to check and convert.
+     * @return A future which completes once the standardized file has been stored, or right away if no conversion is
+     * necessary. Completes exceptionally if the conversion or storing the converted file failed.
+     * @throws ConversionRejectedException If the file needs to be converted but the conversion queue is full.
+     * @throws EntityNotFoundException If the media record does not exist.
      */
     @SneakyThrows
-    public void convertToStandardizedFileIfPossibleAndNecessary(final UUID mediaRecordId) {
+    public CompletableFuture<Void> convertToStandardizedFileIfPossibleAndNecessary(final UUID mediaRecordId) {
         final MediaRecordEntity entity = requireMediaRecordExisting(mediaRecordId);
 
         final Map<String, String> variables = createMinIOVariables(entity);
@@ -650,27 +794,56 @@ public class MediaService {
 
         if(stat.isEmpty()) {
             log.error("File for media record with ID {} not found", mediaRecordId);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        MediaType mediaType = modelMapper.map(entity.getType(), MediaType.class);
+        final String contentHash = contentHashOf(stat.get());
+        if (contentHash != null) {
+            repository.updateContentHash(mediaRecordId, contentHash);
+        }
+
+        MediaType mediaType = mediaRecordMapper.typeToDto(entity.getType());
 
         // check if original file is already the standardized type, then we don't need to do anything
         final String contentType = stat.get().contentType();
         log.info("Uploaded file with content type: {}", contentType);
 
         if (contentType.equals(STANDARDIZED_MIME_TYPES_FOR_MEDIA_TYPES.get(mediaType))) {
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (!mediaType.equals(MediaType.DOCUMENT) && !mediaType.equals(MediaType.PRESENTATION)) {
+            return CompletableFuture.completedFuture(null);
         }
 
-        // otherwise, try to convert it
-        InputStream inFileStream = minioInternalClient.getObject(
+        final Optional<StandardizedFileEntity> registered = contentHash == null
+                ? Optional.empty()
+                : standardizedFileRepository.findById(contentHash);
+        if (registered.isPresent()
+            && registered.get().getBucket().equals(bucketId)
+            && registered.get().getObjectName().equals(filenameStandardized)
+            && doesObjectExist(filenameStandardized, bucketId)) {
+            // the same file has been uploaded for the same media record again
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // the standardized file is about to be replaced, so it must no longer be reused for the file uploaded before
+        standardizedFileRepository.deleteByObject(bucketId, filenameStandardized);
+
+        // the same file has been converted before, e.g. because it was uploaded in a previous semester
+        if (registered.isPresent() && reuseStandardizedFile(registered.get(), bucketId, filenameStandardized)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // otherwise, try to convert it. The conversion service copies the file before returning, so the stream
+        // can be closed right away. If all conversion workers are busy, this throws and the caller has to retry
+        try (InputStream inFileStream = minioInternalClient.getObject(
                 GetObjectArgs.builder()
                         .bucket(bucketId)
                         .object(filename)
-                        .build());
-        if (mediaType.equals(MediaType.DOCUMENT) || mediaType.equals(MediaType.PRESENTATION)) {
-            fileConversionService.convertDocumentToPdf(inFileStream, convertedStream -> {
+                        .build())) {
+            final CompletableFuture<Void> conversion = fileConversionService.convertDocumentToPdf(inFileStream,
+                    contentType, entity.getName(), convertedStream -> {
                 try {
                     minioInternalClient.putObject(
                             PutObjectArgs.builder()
@@ -680,54 +853,133 @@ public class MediaService {
                                     .contentType("application/pdf")
                                     .build());
                 } catch (Exception e) {
-                    log.error("Error while converting and storing standardized file", e);
+                    throw new IllegalStateException("Error while storing standardized file of media record "
+                                                    + mediaRecordId, e);
                 }
             });
+            if (contentHash == null) {
+                return conversion;
+            }
+            return conversion.thenRun(() -> standardizedFileRepository.register(
+                    contentHash, bucketId, filenameStandardized, OffsetDateTime.now()));
         }
-
     }
 
     /**
-     * Generates an upload url for this media record that is only valid for internal use.
+     * Copies the standardized file registered for a content hash to the passed object.
+     *
+     * @param source               The standardized file registered for the content hash of the file to standardize.
+     * @param bucketId             The bucket to copy the standardized file to.
+     * @param filenameStandardized The name of the object to copy the standardized file to.
+     * @return Returns true if the standardized file has been copied, false if it has to be created.
      */
     @SneakyThrows
-    public String createMediaRecordInternalUploadUrl(final UUID mediaRecord) {
-        requireMediaRecordExisting(mediaRecord);
+    private boolean reuseStandardizedFile(final StandardizedFileEntity source, final String bucketId,
+                                          final String filenameStandardized) {
+        final String contentHash = source.getContentHash();
+        if (source.getBucket().equals(bucketId) && source.getObjectName().equals(filenameStandardized)) {
+            // registered for this media record, but the object is gone
+            return false;
+        }
 
-        final MediaRecordEntity entity = repository.getReferenceById(mediaRecord);
+        try {
+            minioInternalClient.copyObject(CopyObjectArgs.builder()
+                    .bucket(bucketId)
+                    .object(filenameStandardized)
+                    .source(CopySource.builder()
+                            .bucket(source.getBucket())
+                            .object(source.getObjectName())
+                            .build())
+                    .build());
+        } catch (final ErrorResponseException e) {
+            // the standardized file has been deleted in the meantime, convert the file again
+            log.debug("Standardized file {} for content hash {} no longer exists", source.getObjectName(),
+                    contentHash);
+            standardizedFileRepository.delete(source);
+            return false;
+        }
 
-        final Map<String, String> variables = createMinIOVariables(entity);
-        final String bucketId = variables.get(BUCKET_ID);
-        final String filename = variables.get(FILENAME);
+        log.info("Reused standardized file {} for content hash {}", source.getObjectName(), contentHash);
+        return true;
+    }
 
-        return minioInternalClient.getPresignedObjectUrl(
-                GetPresignedObjectUrlArgs.builder()
-                        .method(Method.PUT)
-                        .bucket(bucketId)
-                        .object(filename)
-                        .expiry(7, TimeUnit.DAYS) // maximum per S3 spec
-                        .build());
+    /**
+     * Returns the content hash of an object, derived from its ETag. Objects uploaded with a single PUT, as done with
+     * the pre-signed upload urls, have the MD5 of their content as ETag. The ETag of multipart uploads depends on the
+     * part sizes as well, so no hash is returned for them.
+     *
+     * @param stat The object info.
+     * @return The content hash, or null if it cannot be derived from the ETag.
+     */
+    static String contentHashOf(final StatObjectResponse stat) {
+        final String etag = stat.etag();
+        if (etag == null) {
+            return null;
+        }
+        final String md5 = etag.replace("\"", "").toLowerCase(Locale.ROOT);
+        if (md5.length() != 32 || md5.contains("-")) {
+            return null;
+        }
+        return "md5:" + md5;
     }
 
     /**
-     * Generates a download url for this media record that is only valid for internal use.
+     * Generates upload urls for the passed media records that are only valid for internal use.
+     * No database access is performed.
+     *
+     * @param mediaRecords The media records to generate the upload urls for.
+     * @return Returns the upload urls, in the same order as the passed media records.
      */
-    @SneakyThrows
-    public String createMediaRecordInternalDownloadUrl(final UUID mediaRecord) {
-        requireMediaRecordExisting(mediaRecord);
+    public List<String> createMediaRecordInternalUploadUrls(final List<MediaRecord> mediaRecords) {
+        return mediaRecords.stream()
+                .map(mediaRecord -> createPresignedUrl(true, Method.PUT, mediaRecord))
+                .toList();
+    }
 
-        final MediaRecordEntity entity = repository.getReferenceById(mediaRecord);
+    /**
+     * Generates download urls for the passed media records that are only valid for internal use.
+     * No database access is performed.
+     *
+     * @param mediaRecords The media records to generate the download urls for.
+     * @return Returns the download urls, in the same order as the passed media records.
+     */
+    public List<String> createMediaRecordInternalDownloadUrls(final List<MediaRecord> mediaRecords) {
+        return mediaRecords.stream()
+                .map(mediaRecord -> createPresignedUrl(true, Method.GET, mediaRecord))
+                .toList();
+    }
 
-        final Map<String, String> variables = createMinIOVariables(entity);
+    /**
+     * Returns a pre-signed url for the file of the passed media record, either from the {@link PresignedUrlCache} or
+     * newly signed. Only the id and the type of the media record are needed for this, so no database access is
+     * performed.
+     *
+     * @param internal    Whether the url should be valid for internal use (signed by the internal client and valid
+     *                    for {@link #INTERNAL_URL_VALIDITY}) or for external use.
+     * @param method      The HTTP method the url should be valid for.
+     * @param mediaRecord The media record to create the url for.
+     * @return Returns the pre-signed url.
+     */
+    private String createPresignedUrl(final boolean internal, final Method method, final MediaRecord mediaRecord) {
+        final Map<String, String> variables = createMinIOVariables(mediaRecord.getId(), mediaRecord.getType().toString());
         final String bucketId = variables.get(BUCKET_ID);
         final String filename = variables.get(FILENAME);
+        final MinioClient client = internal ? minioInternalClient : minioExternalClient;
+        final Duration validity = internal ? INTERNAL_URL_VALIDITY : EXTERNAL_URL_VALIDITY;
 
-        return minioInternalClient.getPresignedObjectUrl(
+        return presignedUrlCache.get(bucketId, filename, method, internal, validity,
+                () -> signUrl(client, method, bucketId, filename, validity)).url();
+    }
+
+    @SneakyThrows
+    private static String signUrl(final MinioClient client, final Method method, final String bucketId,
+                                  final String filename, final Duration validity) {
+        return client.getPresignedObjectUrl(
                 GetPresignedObjectUrlArgs.builder()
-                        .method(Method.GET)
+                        .method(method)
                         .bucket(bucketId)
                         .object(filename)
-                        .expiry(7, TimeUnit.DAYS) // maximum per S3 spec
+                        .expiry((int) validity.toSeconds())
                         .build());
     }
 
@@ -738,13 +990,24 @@ public class MediaService {
      * @return a map with the bucketID and filename which should be used by MinIO
      */
     private Map<String, String> createMinIOVariables(final MediaRecordEntity mediaRecord) {
+        return createMinIOVariables(mediaRecord.getId(), mediaRecord.getType().toString());
+    }
+
+    /**
+     * Creates the bucketId and filename for MinIO from the id and type of a media record.
+     *
+     * @param mediaRecordId UUID of the media record
+     * @param mediaType     name of the media type of the media record
+     * @return a map with the bucketID and filename which should be used by MinIO
+     */
+    private static Map<String, String> createMinIOVariables(final UUID mediaRecordId, final String mediaType) {
         final Map<String, String> variables = new HashMap<>();
 
-        final String filename = mediaRecord.getId().toString();
+        final String filename = mediaRecordId.toString();
         variables.put(FILENAME, filename);
-        final String bucketId = mediaRecord.getType().toString().toLowerCase();
+        final String bucketId = mediaType.toLowerCase();
         variables.put(BUCKET_ID, bucketId);
-        final String filenameStandardized = mediaRecord.getId().toString() + "_standardized";
+        final String filenameStandardized = mediaRecordId + "_standardized";
         variables.put(FILENAME_STANDARDIZED, filenameStandardized);
 
         return variables;
@@ -773,7 +1036,7 @@ public class MediaService {
                     .object(name).build());
             return true;
         } catch (final ErrorResponseException e) {
-            log.error("Object not found", e);
+            log.debug("Object {} not found in bucket {}", name, bucketName);
             return false;
         } catch (final Exception e) {
             log.error("Error while checking if object exists", e);
@@ -783,11 +1046,12 @@ public class MediaService {
 
     /**
      * function that updates all media records that contain at least one of the received content IDs.
-     * All received content Ids are removed from the media records.
-     * If changes are performed to an entity, a message is published to a dapr topic.
+     * All received content Ids are removed from the media records with a single statement, without loading the
+     * media records.
      *
      * @param dto Event object containing a list of content IDs and a CRUD operation
      */
+    @Transactional
     public void removeContentIds(final ContentChangeEvent dto) throws IncompleteEventMessageException {
 
         // check if DTO is complete
@@ -800,106 +1064,25 @@ public class MediaService {
             return;
         }
 
+        final UUID[] contentIds = dto.getContentIds().toArray(UUID[]::new);
+        final List<UUID> mediaRecordIds = repository.findMediaRecordIdsByContentIds(contentIds);
+        final int unlinked = repository.unlinkContentsFromAllMediaRecords(contentIds);
+        mediaRecordCache.invalidate(mediaRecordIds);
 
-        final List<MediaRecordEntity> entities = repository.findMediaRecordEntitiesByContentIds(dto.getContentIds());
-
-        // apply changes to all found media records
-        for (final MediaRecordEntity entity : entities) {
-
-            //is true if changes are applied
-            final boolean listChanged = entity.getContentIds().removeAll(dto.getContentIds());
-
-            if (listChanged) {
-                repository.save(entity);
-            }
-
-        }
+        meterRegistry.counter("media.content.deleted.events").increment();
+        meterRegistry.counter("media.content.deleted.links").increment(unlinked);
+        log.debug("Unlinked {} deleted contents from {} media records ({} links)",
+                contentIds.length, mediaRecordIds.size(), unlinked);
     }
 
     /**
-     * Publishes a "new material uploaded" notification for a media record that has been associated with one or more courses.
+     * Publishes the event that the file of a media record has been uploaded and queues the "new material"
+     * notification for the courses of the media record.
      *
      * @param mediaRecordId ID of the media record
      */
-    public void publishMaterialPublishedEvent(UUID mediaRecordId) {
-        MediaRecordEntity entity = repository.findWithCoursesById(mediaRecordId)
-                .orElseThrow(() -> new IllegalArgumentException("MediaRecord not found: " + mediaRecordId));
-
-        List<UUID> courseIds = entity.getCourseIds();
-        List<UUID> contentIds = repository.findContentIdsByMediaRecordId(mediaRecordId);
-
-        String filename = (entity.getName() == null || entity.getName().isBlank())
-                ? "Unnamed File"
-                : entity.getName();
-        String title = "New Material is uploaded!";
-        String message = "material: " + filename;
-
-        UUID latestContentId = (contentIds != null && !contentIds.isEmpty())
-                ? contentIds.get(contentIds.size() - 1)
-                : null;
-
-        boolean isVideo = (modelMapper.map(entity.getType(), MediaType.class) == MediaType.VIDEO);
-
-        for (UUID courseId : courseIds) {
-            String base = "/courses/" + courseId + "/media";
-            if (latestContentId != null) {
-                base += "/" + latestContentId;
-            }
-            String pageLink = base + (isVideo
-                    ? ("?selectedVideo=" + entity.getId())
-                    : ("?selectedDocument=" + entity.getId()));
-            topicPublisher.notificationEvent(
-                    courseId,
-                    null,
-                    ServerSource.MEDIA,
-                    pageLink,
-                    title,
-                    message
-            );
-            log.info("Published notification for mediaRecord={} to course={}", mediaRecordId, courseId);
-        }
-    }
-
-
-
-    @Async
-    public void publishMaterialPublishedEventWithDelay(UUID mediaRecordId) {
-        CompletableFuture
-                .runAsync(
-                        () -> publishMaterialPublishedEvent(mediaRecordId),
-                        CompletableFuture.delayedExecutor(5, TimeUnit.SECONDS)
-                )
-                .exceptionally(ex -> {
-                    log.error("Failed to publish MaterialPublishedEvent for {}", mediaRecordId, ex);
-                    return null;
-                });
-    }
-
     public void publishMediaRecordFileCreatedEvent(UUID mediaRecordId) {
-        topicPublisher.notifyMediaRecordFileCreated(new MediaRecordFileCreatedEvent(mediaRecordId));
-        publishMaterialPublishedEventWithDelay(mediaRecordId);
-    }
-
-    /**
-     * Deletes MediaRecords without a file every night at 3 am.
-     */
-    @Scheduled(cron = "${mediarecord.delete.cron}")
-    @SneakyThrows
-    private void deleteMediaRecordsWithoutAFile() {
-        log.info("Running cleanup of MediaRecords");
-        final List<MediaRecordEntity> records = repository.findAll();
-
-        for (final var entity : records) {
-            final Map<String, String> minioVariables = createMinIOVariables(entity);
-            final String bucketId = minioVariables.get(BUCKET_ID);
-            final String filename = minioVariables.get(FILENAME);
-
-            if (!doesObjectExist(filename, bucketId)) {
-                repository.delete(entity);
-
-                topicPublisher.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(entity.getId()));
-            }
-        }
-        log.info("Cleanup completed");
+        eventOutbox.notifyMediaRecordFileCreated(new MediaRecordFileCreatedEvent(mediaRecordId));
+        materialNotificationAggregator.materialUploaded(mediaRecordId);
     }
 }
\ No newline at end of file
@@ -1,20 +1,24 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
 import de.unistuttgart.iste.meitrex.common.event.ContentProgressedEvent;
 import de.unistuttgart.iste.meitrex.common.event.MediaRecordWorkedOnEvent;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordProgressData;
-import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordProgressDataEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordProgressDataRepository;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,34 +26,70 @@ public class MediaUserProgressDataService {
 
     private final MediaRecordProgressDataRepository mediaRecordProgressDataRepository;
     private final MediaService mediaService;
-    private final ModelMapper modelMapper;
-    private final TopicPublisher topicPublisher;
+    private final MediaRecordMapper mediaRecordMapper;
+    private final EventOutbox eventOutbox;
 
+    /**
+     * Returns the progress data of the user for the media record. Progress data is only stored once the user has
+     * worked on the media record, so if none exists, a default progress data object (not worked on) is returned
+     * which is <b>not</b> persisted.
+     *
+     * @param mediaRecordId The media record id
+     * @param userId        The user id
+     * @return The progress data of the user
+     */
     public MediaRecordProgressData getUserProgressData(final UUID mediaRecordId, final UUID userId) {
         final var entity = getUserProgressDataEntity(mediaRecordId, userId);
         return mapToDto(entity);
     }
 
+    /**
+     * Batched variant of {@link #getUserProgressData(UUID, UUID)}. Loads the progress data of the user for all passed
+     * media records with a single query. Media records for which no progress data exists yet get a default progress
+     * data object (not worked on) which is <b>not</b> persisted.
+     *
+     * @param mediaRecordIds The media record ids
+     * @param userId         The user id
+     * @return The progress data of the user, in the same order as the passed media record ids
+     */
+    public List<MediaRecordProgressData> getUserProgressData(final List<UUID> mediaRecordIds, final UUID userId) {
+        if (mediaRecordIds.isEmpty()) {
+            return List.of();
+        }
+
+        final Map<UUID, MediaRecordProgressDataEntity> progressDataByMediaRecordId = mediaRecordProgressDataRepository
+                .findAllByUserIdAndMediaRecordIds(userId, mediaRecordIds).stream()
+                .collect(Collectors.toMap(entity -> entity.getPrimaryKey().getMediaRecordId(), Function.identity()));
+
+        return mediaRecordIds.stream()
+                .map(mediaRecordId -> {
+                    final MediaRecordProgressDataEntity entity = progressDataByMediaRecordId.get(mediaRecordId);
+                    return entity != null ? entity : createDefaultProgressData(mediaRecordId, userId);
+                })
+                .map(this::mapToDto)
+                .toList();
+    }
+
+    /**
+     * Loads the progress data of the user for the media record, or creates (but does not persist) the default
+     * progress data if the user has not worked on the media record yet.
+     */
     public MediaRecordProgressDataEntity getUserProgressDataEntity(final UUID mediaRecordId, final UUID userId) {
         final var primaryKey = new MediaRecordProgressDataEntity.PrimaryKey(mediaRecordId, userId);
         return mediaRecordProgressDataRepository.findById(primaryKey)
-                .orElseGet(() -> initializeProgressData(mediaRecordId, userId));
+                .orElseGet(() -> createDefaultProgressData(mediaRecordId, userId));
     }
 
     /**
-     * Initializes the progress data for the given media record and user.
-     *
-     * @param mediaRecordId The media record id
-     * @param userId        The user id
-     * @return The media record progress data entity, initialized with the given ids and the worked on flag set to false
+     * Creates (but does not persist) the progress data for the given media record and user with the worked on flag
+     * set to false.
      */
-    public MediaRecordProgressDataEntity initializeProgressData(final UUID mediaRecordId, final UUID userId) {
+    private static MediaRecordProgressDataEntity createDefaultProgressData(final UUID mediaRecordId, final UUID userId) {
         final var primaryKey = new MediaRecordProgressDataEntity.PrimaryKey(mediaRecordId, userId);
-        final var progressData = MediaRecordProgressDataEntity.builder()
+        return MediaRecordProgressDataEntity.builder()
                 .primaryKey(primaryKey)
                 .workedOn(false)
                 .build();
-        return mediaRecordProgressDataRepository.save(progressData);
     }
 
     /**
@@ -59,6 +99,7 @@ public class MediaUserProgressDataService {
      * @param userId        The user id
      * @return The media record
      */
+    @Transactional
     public MediaRecord logMediaRecordWorkedOn(final UUID mediaRecordId, final UUID userId) {
         final var mediaRecord = mediaService.getMediaRecordById(mediaRecordId);
         final var progressData = getUserProgressDataEntity(mediaRecordId, userId);
@@ -66,7 +107,7 @@ public class MediaUserProgressDataService {
         final boolean wasAlreadyWorkedOnBefore = progressData.isWorkedOn();
         updateProgressDataEntity(progressData);
 
-        topicPublisher.notifyMediaRecordWorkedOn(MediaRecordWorkedOnEvent.builder()
+        eventOutbox.notifyMediaRecordWorkedOn(MediaRecordWorkedOnEvent.builder()
                 .userId(userId)
                 .mediaRecordId(mediaRecordId)
                 .wasAlreadyWorkedOn(wasAlreadyWorkedOnBefore)
@@ -80,6 +121,62 @@ public class MediaUserProgressDataService {
         return mediaRecord;
     }
 
+    /**
+     * Batched variant of {@link #logMediaRecordWorkedOn(UUID, UUID)}. Marks all passed media records as worked on with
+     * a single upsert, checks the contents of the media records which had not been worked on before with a single
+     * query, and writes the worked on events to the outbox with a single insert.
+     *
+     * @param mediaRecordIds The media record ids
+     * @param userId         The user id
+     * @return The media records, in the same order as the passed ids
+     * @throws EntityNotFoundException If one of the media records does not exist
+     */
+    @Transactional
+    public List<MediaRecord> logMediaRecordsWorkedOn(final List<UUID> mediaRecordIds, final UUID userId) {
+        if (mediaRecordIds.isEmpty()) {
+            return List.of();
+        }
+
+        final List<UUID> distinctIds = mediaRecordIds.stream().distinct().toList();
+        final List<MediaRecord> mediaRecords = mediaService.getMediaRecordsByIds(distinctIds);
+
+        final Set<UUID> alreadyWorkedOnIds = mediaRecordProgressDataRepository
+                .findAllByUserIdAndMediaRecordIds(userId, distinctIds).stream()
+                .filter(MediaRecordProgressDataEntity::isWorkedOn)
+                .map(entity -> entity.getPrimaryKey().getMediaRecordId())
+                .collect(Collectors.toSet());
+
+        mediaRecordProgressDataRepository.upsertWorkedOn(userId, distinctIds, OffsetDateTime.now());
+
+        eventOutbox.notifyMediaRecordsWorkedOn(distinctIds.stream()
+                .map(mediaRecordId -> MediaRecordWorkedOnEvent.builder()
+                        .userId(userId)
+                        .mediaRecordId(mediaRecordId)
+                        .wasAlreadyWorkedOn(alreadyWorkedOnIds.contains(mediaRecordId))
+                        .build())
+                .toList());
+
+        // prevent multiple triggers of the content learned event
+        final List<UUID> newlyWorkedOnContentIds = mediaRecords.stream()
+                .filter(mediaRecord -> !alreadyWorkedOnIds.contains(mediaRecord.getId()))
+                .filter(mediaRecord -> mediaRecord.getContentIds() != null)
+                .flatMap(mediaRecord -> mediaRecord.getContentIds().stream())
+                .distinct()
+                .toList();
+        if (!newlyWorkedOnContentIds.isEmpty()) {
+            for (final UUID contentId : mediaRecordProgressDataRepository
+                    .findContentIdsCompletelyWorkedOn(userId, newlyWorkedOnContentIds)) {
+                publishUserProgressEvent(userId, contentId);
+            }
+        }
+
+        final Map<UUID, MediaRecord> mediaRecordsById = mediaRecords.stream()
+                .collect(Collectors.toMap(MediaRecord::getId, Function.identity()));
+        return mediaRecordIds.stream()
+                .map(mediaRecordsById::get)
+                .toList();
+    }
+
     private void updateProgressDataEntity(final MediaRecordProgressDataEntity progressData) {
         progressData.setWorkedOn(true);
         progressData.setWorkedOnDate(OffsetDateTime.now());
@@ -87,9 +184,8 @@ public class MediaUserProgressDataService {
     }
 
     /**
-     * Iterates through all the associated content ids of the given media record and checks if
-     * each are completely worked on, i.e, if all media records associated with the content id
-     * are worked on.
+     * Checks for all the associated content ids of the given media record if they are completely worked on, i.e., if
+     * all media records associated with the content id are worked on, using a single query which writes nothing.
      * If so, a user progress event is published for each of them.
      *
      * @param userId      The user id
@@ -97,22 +193,18 @@ public class MediaUserProgressDataService {
      */
     private void publishProgressEventsIfContentsAreCompletelyWorkedOn(final UUID userId, final MediaRecord mediaRecord) {
         final List<UUID> associatedContentIds = mediaRecord.getContentIds();
+        if (associatedContentIds == null || associatedContentIds.isEmpty()) {
+            return;
+        }
 
-        for (final var contentId : associatedContentIds) {
-            final List<MediaRecordEntity> associatedMediaRecords = mediaService.getMediaRecordEntitiesByContentId(contentId);
-
-            final boolean allAssociatedMediaRecordsWorkedOn = associatedMediaRecords.stream()
-                    .map(mediaRecordEntity -> getUserProgressDataEntity(mediaRecordEntity.getId(), userId))
-                    .allMatch(MediaRecordProgressDataEntity::isWorkedOn);
-
-            if (allAssociatedMediaRecordsWorkedOn) {
-                publishUserProgressEvent(userId, contentId);
-            }
+        for (final UUID contentId : mediaRecordProgressDataRepository
+                .findContentIdsCompletelyWorkedOn(userId, associatedContentIds)) {
+            publishUserProgressEvent(userId, contentId);
         }
     }
 
     private void publishUserProgressEvent(final UUID userId, final UUID contentId) {
-        topicPublisher.notifyUserWorkedOnContent(
+        eventOutbox.notifyUserWorkedOnContent(
                 ContentProgressedEvent.builder()
                         .userId(userId)
                         .contentId(contentId)
@@ -125,6 +217,6 @@ public class MediaUserProgressDataService {
     }
 
     private MediaRecordProgressData mapToDto(final MediaRecordProgressDataEntity entity) {
-        return modelMapper.map(entity, MediaRecordProgressData.class);
+        return mediaRecordMapper.progressDataToDto(entity);
     }
 }
@@ -0,0 +1,139 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Processes the object created events MinIO sends to the webhook.
+ * <p>
+ * MinIO does not send an event again once the webhook has answered it with a success status, so the events of a
+ * request are stored before the webhook answers: the conversion job of each uploaded file is queued and the
+ * MediaRecordFileCreatedEvent is written to the outbox, in one transaction. Both only insert rows, the conversion and
+ * the publishing happen later in the background. If storing the events fails, the webhook answers with an error and
+ * MinIO sends them again.
+ * <p>
+ * MinIO also retries a request if it does not get an answer in time, so the same event may arrive several times.
+ * Events are therefore identified by bucket, key and ETag, and an event which has been processed within the
+ * deduplication window is skipped. Uploading a file again changes its ETag, so the new file is processed.
+ */
+@Service
+@Slf4j
+public class MinioEventService {
+
+    private static final String STANDARDIZED_SUFFIX = "_standardized";
+
+    private final MediaService mediaService;
+    private final ConversionJobService conversionJobService;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Cache<ObjectCreatedEvent, Boolean> recentEvents;
+
+    public MinioEventService(final MediaService mediaService,
+                             final ConversionJobService conversionJobService,
+                             final TransactionTemplate transactionTemplate,
+                             final MeterRegistry meterRegistry,
+                             @Value("${media.webhook.deduplication-window:PT1H}") final Duration deduplicationWindow) {
+        this.mediaService = mediaService;
+        this.conversionJobService = conversionJobService;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+
+        this.recentEvents = Caffeine.newBuilder()
+                .expireAfterWrite(deduplicationWindow)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * An object has been created in MinIO.
+     *
+     * @param bucket The bucket of the object.
+     * @param key    The name of the object.
+     * @param etag   The ETag of the object, changes if the object is uploaded again.
+     * @param size   The size of the object in bytes.
+     */
+    public record ObjectCreatedEvent(String bucket, String key, String etag, long size) {
+    }
+
+    /**
+     * Stores the events of one webhook request.
+     *
+     * @param events The events of the request.
+     * @return true if the events have been stored, false if storing them failed and the request should be retried.
+     */
+    public boolean process(final List<ObjectCreatedEvent> events) {
+        final List<ObjectCreatedEvent> uploads = new ArrayList<>(events.size());
+        final List<UUID> mediaRecordIds = new ArrayList<>(events.size());
+        for (final ObjectCreatedEvent event : events) {
+            final UUID mediaRecordId = mediaRecordIdOf(event);
+            if (mediaRecordId == null) {
+                countEvent("ignored");
+            } else if (recentEvents.asMap().putIfAbsent(event, Boolean.TRUE) != null) {
+                countEvent("duplicate");
+            } else {
+                uploads.add(event);
+                mediaRecordIds.add(mediaRecordId);
+            }
+        }
+        if (uploads.isEmpty()) {
+            return true;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < uploads.size(); i++) {
+                    // queue the check whether this file needs to be converted to a standardized format
+                    conversionJobService.enqueue(mediaRecordIds.get(i), uploads.get(i).size());
+                    mediaService.publishMediaRecordFileCreatedEvent(mediaRecordIds.get(i));
+                }
+            });
+        } catch (final RuntimeException e) {
+            // nothing has been stored, so forget the events and let MinIO send them again
+            recentEvents.invalidateAll(uploads);
+            log.error("Error while storing the uploads of objects {}", uploads, e);
+            uploads.forEach(event -> countEvent("failed"));
+            return false;
+        }
+
+        uploads.forEach(event -> countEvent("processed"));
+        return true;
+    }
+
+    /**
+     * Returns the id of the media record whose file has been uploaded, or null if the event is not about the file of
+     * a media record.
+     */
+    private static UUID mediaRecordIdOf(final ObjectCreatedEvent event) {
+        if (event.key().endsWith(STANDARDIZED_SUFFIX)) {
+            // ignore standardized files, they are a conversion of an already uploaded file
+            return null;
+        }
+        if (event.bucket().equals(SubmissionService.BUCKET_ID)) {
+            // ignore files for submissions
+            return null;
+        }
+
+        try {
+            // file name matches the media record id
+            return UUID.fromString(event.key());
+        } catch (final IllegalArgumentException e) {
+            log.warn("Ignoring object {} in bucket {}, its name is not a media record id", event.key(), event.bucket());
+            return null;
+        }
+    }
+
+    private void countEvent(final String outcome) {
+        meterRegistry.counter("media.webhook.events", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,195 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import de.unistuttgart.iste.meitrex.common.event.*;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.outbox.OutboxEventEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Publishes the events written to the {@link EventOutbox} to Dapr.
+ * <p>
+ * The relay drains the outbox in batches, in the order of the transactions which wrote the events. Only one replica
+ * relays at a time (guarded by a Postgres advisory lock), so events are published in that order. If an event cannot
+ * be published, it is retried with exponential backoff; later events of the same aggregate wait for it to keep their
+ * order, while events of other aggregates are still published. After the maximum number of attempts the event is
+ * marked as failed and set aside, so that it no longer holds up its aggregate.
+ * <p>
+ * Published events are deleted in the same transaction they are read in. If that transaction fails after publishing,
+ * the events are published again, so delivery is at least once.
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    /**
+     * Key of the advisory lock held while relaying, arbitrary but unique within the database.
+     */
+    private static final long RELAY_LOCK_KEY = 0x6d65646961L; // "media"
+
+    private final OutboxEventRepository repository;
+    private final TopicPublisher topicPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public OutboxRelay(final OutboxEventRepository repository,
+                       final TopicPublisher topicPublisher,
+                       final ObjectMapper objectMapper,
+                       final TransactionTemplate transactionTemplate,
+                       final MeterRegistry meterRegistry,
+                       @Value("${media.outbox.batch-size:100}") final int batchSize,
+                       @Value("${media.outbox.max-attempts:10}") final int maxAttempts,
+                       @Value("${media.outbox.initial-backoff:PT1S}") final Duration initialBackoff,
+                       @Value("${media.outbox.max-backoff:PT5M}") final Duration maxBackoff) {
+        this.repository = repository;
+        this.topicPublisher = topicPublisher;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Publishes pending events until the outbox is empty, only events of blocked aggregates are left or another
+     * replica is relaying.
+     */
+    @Scheduled(fixedDelayString = "${media.outbox.poll-interval:PT1S}")
+    public void relayPendingEvents() {
+        int read;
+        do {
+            read = relayBatch();
+        } while (read == batchSize);
+    }
+
+    /**
+     * Publishes one batch of events.
+     *
+     * @return the number of events read, less than the batch size if the relay should stop for now.
+     */
+    int relayBatch() {
+        final BatchResult result = transactionTemplate.execute(status -> {
+            if (!repository.tryLock(RELAY_LOCK_KEY)) {
+                return new BatchResult(0, 0);
+            }
+
+            final OffsetDateTime now = OffsetDateTime.now();
+            final List<OutboxEventEntity> pending = repository.findPending(now, batchSize);
+            final List<Long> publishedIds = new ArrayList<>();
+            final Set<UUID> blockedAggregateIds = new HashSet<>();
+            for (final OutboxEventEntity event : pending) {
+                final UUID aggregateId = event.getAggregateId();
+                if (aggregateId != null && blockedAggregateIds.contains(aggregateId)) {
+                    // an earlier event of the aggregate failed in this batch, this one has to wait for it
+                    continue;
+                }
+                if (event.getNextAttemptAt() != null && event.getNextAttemptAt().isAfter(now)) {
+                    blockedAggregateIds.add(aggregateId);
+                    continue;
+                }
+                try {
+                    publish(event);
+                } catch (final Exception e) {
+                    if (!onFailure(event, e, now)) {
+                        blockedAggregateIds.add(aggregateId);
+                    }
+                    continue;
+                }
+                publishedIds.add(event.getId());
+            }
+
+            if (!publishedIds.isEmpty()) {
+                repository.deleteAllByIdInBatch(publishedIds);
+            }
+            return new BatchResult(pending.size(), publishedIds.size());
+        });
+
+        if (result == null) {
+            return 0;
+        }
+        if (result.published() > 0) {
+            meterRegistry.counter("media.outbox.events", "outcome", "published").increment(result.published());
+        }
+        return result.read();
+    }
+
+    private record BatchResult(int read, int published) {
+    }
+
+    private void publish(final OutboxEventEntity event) throws JsonProcessingException {
+        final String payload = event.getPayload();
+        switch (event.getType()) {
+            case CONTENT_MEDIA_RECORD_LINKS_SET -> topicPublisher.notifyContentMediaRecordLinksSet(
+                    objectMapper.readValue(payload, ContentMediaRecordLinksSetEvent.class));
+            case MEDIA_RECORD_DELETED -> topicPublisher.notifyMediaRecordDeleted(
+                    objectMapper.readValue(payload, MediaRecordDeletedEvent.class));
+            case MEDIA_RECORD_FILE_CREATED -> topicPublisher.notifyMediaRecordFileCreated(
+                    objectMapper.readValue(payload, MediaRecordFileCreatedEvent.class));
+            case MEDIA_RECORD_WORKED_ON -> topicPublisher.notifyMediaRecordWorkedOn(
+                    objectMapper.readValue(payload, MediaRecordWorkedOnEvent.class));
+            case USER_WORKED_ON_CONTENT -> topicPublisher.notifyUserWorkedOnContent(
+                    objectMapper.readValue(payload, ContentProgressedEvent.class));
+            case SUBMISSION_COMPLETED -> topicPublisher.notifySubmissionCompleted(
+                    objectMapper.readValue(payload, SubmissionCompletedEvent.class));
+            case FORUM_ACTIVITY -> topicPublisher.notifyForumActivity(
+                    objectMapper.readValue(payload, ForumActivityEvent.class));
+            case NOTIFICATION -> {
+                final EventOutbox.Notification notification =
+                        objectMapper.readValue(payload, EventOutbox.Notification.class);
+                topicPublisher.notificationEvent(notification.courseId(), notification.userIds(),
+                        notification.serverSource(), notification.link(), notification.title(),
+                        notification.message());
+            }
+        }
+    }
+
+    /**
+     * Records a failed attempt to publish the event.
+     *
+     * @return true if the event failed permanently and has been set aside, false if it is retried later.
+     */
+    private boolean onFailure(final OutboxEventEntity event, final Exception error, final OffsetDateTime now) {
+        event.setAttempts(event.getAttempts() + 1);
+        event.setLastError(Retries.truncate(error.getClass().getSimpleName() + ": " + error.getMessage()));
+
+        // an event which cannot be read will never be published
+        final boolean failedPermanently = error instanceof JsonProcessingException || event.getAttempts() >= maxAttempts;
+        if (failedPermanently) {
+            log.error("Publishing {} event {} failed permanently after {} attempts, setting it aside",
+                    event.getType(), event.getId(), event.getAttempts(), error);
+            event.setFailedAt(now);
+            meterRegistry.counter("media.outbox.events", "outcome", "failed").increment();
+        } else {
+            final Duration backoff = Retries.backoff(event.getAttempts(), initialBackoff, maxBackoff);
+            log.warn("Publishing {} event {} failed in attempt {}, retrying in {}",
+                    event.getType(), event.getId(), event.getAttempts(), backoff, error);
+            event.setNextAttemptAt(now.plus(backoff));
+            meterRegistry.counter("media.outbox.events", "outcome", "retried").increment();
+        }
+        repository.save(event);
+        return failedPermanently;
+    }
+}
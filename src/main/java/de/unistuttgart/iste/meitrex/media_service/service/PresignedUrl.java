@@ -0,0 +1,50 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A pre-signed MinIO url together with the point in time at which it expires.
+ * <p>
+ * The expiry is stored as epoch milliseconds when the url is signed, so checking whether the url is still usable is a
+ * single comparison instead of parsing the {@code X-Amz-Date} and {@code X-Amz-Expires} query parameters of the url.
+ *
+ * @param url                 The pre-signed url.
+ * @param expiresAtEpochMilli The point in time at which the url expires, in milliseconds since the epoch.
+ */
+public record PresignedUrl(String url, long expiresAtEpochMilli) {
+
+    /**
+     * Creates a new pre-signed url that has been signed at the passed instant.
+     *
+     * @param url      The pre-signed url.
+     * @param signedAt The point in time at which the url has been signed.
+     * @param validity How long the url is valid after it has been signed.
+     * @return Returns the pre-signed url with its expiry.
+     */
+    public static PresignedUrl of(final String url, final Instant signedAt, final Duration validity) {
+        return new PresignedUrl(url, signedAt.plus(validity).toEpochMilli());
+    }
+
+    /**
+     * Checks if the url is expired or will expire within the passed margin.
+     *
+     * @param nowEpochMilli The current time in milliseconds since the epoch.
+     * @param marginMillis  The url is considered expired this many milliseconds before it actually expires.
+     * @return true if the url is expired, false otherwise
+     */
+    public boolean isExpired(final long nowEpochMilli, final long marginMillis) {
+        return nowEpochMilli >= expiresAtEpochMilli - marginMillis;
+    }
+
+    /**
+     * Returns how long the url can still be used, taking the passed margin into account.
+     *
+     * @param nowEpochMilli The current time in milliseconds since the epoch.
+     * @param marginMillis  The url is considered expired this many milliseconds before it actually expires.
+     * @return The remaining time in milliseconds, or 0 if the url is already expired.
+     */
+    public long remainingMillis(final long nowEpochMilli, final long marginMillis) {
+        return Math.max(0, expiresAtEpochMilli - marginMillis - nowEpochMilli);
+    }
+}
@@ -0,0 +1,114 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.minio.http.Method;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache for pre-signed MinIO urls.
+ * <p>
+ * Pre-signing an url is cheap but not free, and the same urls are requested over and over again when users browse
+ * a course. Instead of storing the urls in the database, they are kept in this bounded cache. Every entry is evicted
+ * shortly before the url it holds expires, so an url handed out by this cache is always valid for at least
+ * {@link #EXPIRY_MARGIN}.
+ * <p>
+ * Hit/miss statistics are published as "cache.*" metrics with the tag {@code cache=presignedUrls}.
+ */
+@Component
+public class PresignedUrlCache {
+
+    /**
+     * Entries are evicted this long before the url they hold expires.
+     */
+    static final Duration EXPIRY_MARGIN = Duration.ofMinutes(5);
+    private static final long EXPIRY_MARGIN_MILLIS = EXPIRY_MARGIN.toMillis();
+
+    private final Cache<Key, PresignedUrl> cache;
+
+    public PresignedUrlCache(@Value("${media.presigned-url-cache.maximum-size:10000}") final long maximumSize,
+                             final MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UrlExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "presignedUrls");
+    }
+
+    /**
+     * Returns the cached url for the given object and method or, if there is none, pre-signs a new one using the
+     * passed function and caches it.
+     *
+     * @param bucket    The bucket the object is stored in.
+     * @param object    The name of the object.
+     * @param method    The HTTP method the url is valid for.
+     * @param internal  Whether the url is signed for access from within the system or from outside.
+     * @param validity  How long the url returned by the presigner is valid.
+     * @param presigner Function creating a new pre-signed url, valid for the passed duration. May return null if no
+     *                  url can be created, in which case nothing is cached.
+     * @return Returns the (cached or newly created) url with its expiry, or null if the presigner returned null.
+     */
+    public PresignedUrl get(final String bucket, final String object, final Method method, final boolean internal,
+                            final Duration validity, final Supplier<String> presigner) {
+        final Key key = new Key(bucket, object, method, internal);
+        // concurrent requests for the same url wait for one presigner call; a null result is not cached
+        PresignedUrl presignedUrl = cache.get(key, k -> presign(presigner, validity));
+        // entries are evicted lazily, so guard against handing out an url that is about to expire
+        if (presignedUrl != null && presignedUrl.isExpired(System.currentTimeMillis(), EXPIRY_MARGIN_MILLIS)) {
+            cache.asMap().remove(key, presignedUrl);
+            presignedUrl = cache.get(key, k -> presign(presigner, validity));
+        }
+        return presignedUrl;
+    }
+
+    private static PresignedUrl presign(final Supplier<String> presigner, final Duration validity) {
+        final Instant signedAt = Instant.now();
+        final String url = presigner.get();
+        return url == null ? null : PresignedUrl.of(url, signedAt, validity);
+    }
+
+    /**
+     * Removes all cached urls of the given object, e.g. because the object has been deleted.
+     *
+     * @param bucket The bucket the object is stored in.
+     * @param object The name of the object.
+     */
+    public void invalidate(final String bucket, final String object) {
+        cache.asMap().keySet().removeIf(key -> key.bucket().equals(bucket) && key.object().equals(object));
+    }
+
+    private record Key(String bucket, String object, Method method, boolean internal) {
+    }
+
+    /**
+     * Lets each entry expire {@link #EXPIRY_MARGIN} before its url expires.
+     */
+    private static class UrlExpiry implements Expiry<Key, PresignedUrl> {
+        @Override
+        public long expireAfterCreate(final Key key, final PresignedUrl value, final long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(value.remainingMillis(System.currentTimeMillis(), EXPIRY_MARGIN_MILLIS));
+        }
+
+        @Override
+        public long expireAfterUpdate(final Key key, final PresignedUrl value, final long currentTime,
+                                      final long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(final Key key, final PresignedUrl value, final long currentTime,
+                                    final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
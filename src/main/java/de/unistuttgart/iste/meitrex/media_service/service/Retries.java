@@ -0,0 +1,39 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import java.time.Duration;
+
+/**
+ * Helpers shared by the background tasks which retry failed work, i.e. the conversion jobs and the outbox relay.
+ */
+final class Retries {
+
+    /**
+     * Maximum length of a stored error message, matches the length of the {@code last_error} columns.
+     */
+    static final int MAX_ERROR_LENGTH = 1000;
+
+    private Retries() {
+    }
+
+    /**
+     * Returns the delay before the next attempt, doubling with every failed attempt.
+     *
+     * @param attempts Number of attempts made so far, at least 1.
+     * @param initial  Delay after the first failed attempt.
+     * @param max      Upper bound of the delay.
+     * @return The delay before the next attempt.
+     */
+    static Duration backoff(final int attempts, final Duration initial, final Duration max) {
+        // cap the exponent, larger values would overflow and exceed any sensible maximum anyway
+        final int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        final Duration backoff = initial.multipliedBy(1L << exponent);
+        return backoff.compareTo(max) > 0 ? max : backoff;
+    }
+
+    /**
+     * Shortens an error message to {@link #MAX_ERROR_LENGTH} characters, so it can be stored.
+     */
+    static String truncate(final String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
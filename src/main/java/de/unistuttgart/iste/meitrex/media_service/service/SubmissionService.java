@@ -1,11 +1,11 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
 import de.unistuttgart.iste.meitrex.common.event.*;
 import de.unistuttgart.iste.meitrex.common.exception.IncompleteEventMessageException;
 import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
 import de.unistuttgart.iste.meitrex.generated.dto.*;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.submission.*;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.SubmissionMapper;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.*;
 import io.minio.GetPresignedObjectUrlArgs;
 import io.minio.MinioClient;
@@ -17,9 +17,9 @@ import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -44,9 +44,9 @@ public class SubmissionService {
     private final SubmissionFileRepository fileRepository;
     private final ExerciseSolutionRepository exerciseSolutionRepository;
     private final SubmissionResultRepository resultRepository;
-    private final ModelMapper modelMapper;
+    private final SubmissionMapper submissionMapper;
 
-    private final TopicPublisher topicPublisher;
+    private final EventOutbox eventOutbox;
 
     private final MinioClient minioInternalClient;
     private final MinioClient minioExternalClient;
@@ -63,8 +63,7 @@ public class SubmissionService {
                 new EntityNotFoundException("Exercise with id: " + assessmentId + " not found"));
         updateSubmissionDownloadUrls(submissionExercise);
         List<ExerciseSolutionEntity> solution = submissionExercise.getSolutions().stream().filter(exerciseSolutionEntity -> exerciseSolutionEntity.getUserId().equals(userId)).toList();
-        submissionExercise.setSolutions(solution);
-        return modelMapper.map(submissionExercise, SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExercise, solution);
     }
 
     /**
@@ -76,7 +75,7 @@ public class SubmissionService {
         SubmissionExerciseEntity submissionExercise = submissionExerciseRepository.findById(assessmentId).orElseThrow(() ->
                 new EntityNotFoundException("Exercise with id: " + assessmentId + " not found"));
         updateSubmissionDownloadUrls(submissionExercise);
-        return modelMapper.map(submissionExercise, SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExercise);
     }
 
     /**
@@ -101,6 +100,7 @@ public class SubmissionService {
      * @param courseId courseId of the submissionExercise
      * @return created SubmissionExercise
      */
+    @Transactional
     public SubmissionExercise createSubmissionExercise(InputSubmissionExercise submissionExercise, UUID assessmentId, UUID courseId) {
         SubmissionExerciseEntity submissionExerciseEntity = new SubmissionExerciseEntity();
         submissionExerciseEntity.setAssessmentId(assessmentId);
@@ -115,7 +115,7 @@ public class SubmissionService {
         String message = "New Submission Exercise!";
 
         String pageLink = "/courses/" + courseId + "/submissions/" + assessmentId;
-        topicPublisher.notificationEvent(
+        eventOutbox.notificationEvent(
                 courseId,
                 null,
                 ServerSource.MEDIA,
@@ -125,7 +125,7 @@ public class SubmissionService {
         );
         log.info("Published notification for Submission Exercise={} to course={}", assessmentId, courseId);
 
-        return modelMapper.map(submissionExerciseEntity, SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExerciseEntity);
     }
 
     /**
@@ -148,7 +148,7 @@ public class SubmissionService {
         submissionExercise.getSolutions().add(exerciseSolutionEntity);
         exerciseSolutionRepository.save(exerciseSolutionEntity);
         submissionExerciseRepository.save(submissionExercise);
-        return  modelMapper.map(exerciseSolutionEntity, SubmissionSolution.class);
+        return  submissionMapper.solutionToDto(exerciseSolutionEntity);
     }
 
     /**
@@ -156,10 +156,11 @@ public class SubmissionService {
      * @param result to be updated
      * @return the updated result
      */
+    @Transactional
     public Result updateResult(InputResult result) {
         ResultEntity resultEntity = resultRepository.findById(result.getId()).orElseThrow(() ->
                 new  EntityNotFoundException("Result with id: " + result.getId() + " not found"));
-        resultEntity.setStatus(modelMapper.map(result.getStatus(), ResultEntity.Status.class));
+        resultEntity.setStatus(submissionMapper.statusToEntity(result.getStatus()));
         result.getResults().forEach(taskResult -> resultEntity.getResults().stream()
                 .filter(taskResultEntity -> taskResultEntity.getItemId()
                 .equals(taskResult.getItemId())).findFirst()
@@ -176,6 +177,8 @@ public class SubmissionService {
 
         double correctness = (double)achievedScore.get() / (double) requiredScore.get();
 
+        resultRepository.save(resultEntity);
+
         final ContentProgressedEvent userProgressLogEvent = ContentProgressedEvent.builder()
                 .userId(resultEntity.getUserId())
                 .contentId(result.getAssessmentId())
@@ -187,17 +190,15 @@ public class SubmissionService {
                 .responses(responses)
                 .build();
 
-        topicPublisher.notifyUserWorkedOnContent(userProgressLogEvent);
+        eventOutbox.notifyUserWorkedOnContent(userProgressLogEvent);
 
         final SubmissionCompletedEvent submissionCompletedEvent = SubmissionCompletedEvent.builder()
                 .userId(resultEntity.getUserId())
                 .submissionId(result.getAssessmentId())
                 .build();
 
-        topicPublisher.notifySubmissionCompleted(submissionCompletedEvent);
-
-        resultRepository.save(resultEntity);
-        return modelMapper.map(resultEntity, Result.class);
+        eventOutbox.notifySubmissionCompleted(submissionCompletedEvent);
+        return submissionMapper.resultToDto(resultEntity);
     }
 
     /**
@@ -213,7 +214,7 @@ public class SubmissionService {
         submissionExercise.getFiles().add(fileEntity);
         submissionExerciseRepository.save(submissionExercise);
         taskScheduler.schedule(() -> expireUploadUrlAndCleanup(fileEntity), Instant.now().plus(UPLOAD_URL_EXPIRY));
-        return modelMapper.map(fileEntity, File.class);
+        return submissionMapper.fileToDto(fileEntity);
     }
 
     /**
@@ -229,7 +230,7 @@ public class SubmissionService {
         submissionExercise.getFiles().remove(file);
         fileRepository.delete(file);
         submissionExerciseRepository.save(submissionExercise);
-        return modelMapper.map(file, File.class);
+        return submissionMapper.fileToDto(file);
     }
 
     /**
@@ -258,7 +259,7 @@ public class SubmissionService {
         exerciseSolutionEntity.setSubmissionDate(OffsetDateTime.now());
         exerciseSolutionRepository.save(exerciseSolutionEntity);
         taskScheduler.schedule(() -> expireUploadUrlAndCleanup(fileEntity), Instant.now().plus(UPLOAD_URL_EXPIRY));
-        return modelMapper.map(fileEntity, File.class);
+        return submissionMapper.fileToDto(fileEntity);
     }
 
     /**
@@ -274,7 +275,7 @@ public class SubmissionService {
         exerciseSolutionEntity.getFiles().remove(file);
         fileRepository.delete(file);
         exerciseSolutionRepository.save(exerciseSolutionEntity);
-        return modelMapper.map(file, File.class);
+        return submissionMapper.fileToDto(file);
     }
 
 
@@ -332,7 +333,7 @@ public class SubmissionService {
             exerciseSolutionEntity.getResult().getResults().add(taskResultEntity);
         });
         submissionExercise = submissionExerciseRepository.save(submissionExercise);
-        return modelMapper.map(submissionExercise, SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExercise);
     }
 
     /**
@@ -362,7 +363,7 @@ public class SubmissionService {
         taskEntity.setNumber(inputTask.getNumber());
         taskRepository.save(taskEntity);
         submissionExercise =  submissionExerciseRepository.save(submissionExercise);
-        return modelMapper.map(submissionExercise, SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExercise);
     }
 
     /**
@@ -380,7 +381,7 @@ public class SubmissionService {
         submissionExercise.getTasks().remove(taskEntity);
         submissionExercise.getSolutions().forEach(exerciseSolutionEntity -> exerciseSolutionEntity.getResult().getResults().removeIf(result -> result.getItemId().equals(itemId)));
         taskRepository.delete(taskEntity);
-        return modelMapper.map(submissionExerciseRepository.save(submissionExercise), SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExerciseRepository.save(submissionExercise));
     }
 
     /**
@@ -394,7 +395,7 @@ public class SubmissionService {
                 -> new  EntityNotFoundException("SubmissionExercise with id " + assessmentId + " not found"));
         submissionExercise.setEndDate(inputSubmissionExercise.getEndDate());
         submissionExercise = submissionExerciseRepository.save(submissionExercise);
-        return modelMapper.map(submissionExercise, SubmissionExercise.class);
+        return submissionMapper.exerciseToDto(submissionExercise);
     }
 
     /**
@@ -0,0 +1,8 @@
+-- pre-signed urls are no longer persisted, they are cached in memory instead (see PresignedUrlCache)
+ALTER TABLE IF EXISTS media_record
+    DROP COLUMN IF EXISTS upload_url,
+    DROP COLUMN IF EXISTS download_url,
+    DROP COLUMN IF EXISTS standardized_download_url;
+
+-- the content hash of media records is not queried, the standardized_file table is used to look up files by hash
+DROP INDEX IF EXISTS idx_media_record_content_hash;
@@ -72,4 +72,49 @@ class MutationAddCourseMediaRecordTest {
         assertThat(actualMediaRecords.get(1).getCourseIds()).contains(courseId1, courseId2);
     }
 
+    @Test
+    @Transactional
+    void testSettingCourseAgainAndDuplicateIdsLinkCourseOnce(final GraphQlTester tester) {
+        final List<MediaRecordEntity> mediaRecords = MediaRecordRepositoryUtil.fillRepositoryWithMediaRecords(repository);
+        final UUID id1 = mediaRecords.get(0).getId();
+        final UUID id2 = mediaRecords.get(1).getId();
+
+        setMediaRecordsForCourse(tester, List.of(id1, id1, id2));
+        // media records which already belong to the course are not linked to it a second time
+        setMediaRecordsForCourse(tester, List.of(id2));
+
+        assertThat(repository.findCourseIdsByMediaRecordId(id1))
+                .containsOnlyOnce(courseId2)
+                .containsAll(mediaRecords.get(0).getCourseIds());
+        assertThat(repository.findCourseIdsByMediaRecordId(id2))
+                .containsOnlyOnce(courseId2)
+                .containsAll(mediaRecords.get(1).getCourseIds());
+    }
+
+    @Test
+    @Transactional
+    void testEmptyListChangesNoCourses(final GraphQlTester tester) {
+        final List<MediaRecordEntity> mediaRecords = MediaRecordRepositoryUtil.fillRepositoryWithMediaRecords(repository);
+        setMediaRecordsForCourse(tester, List.of(mediaRecords.get(0).getId()));
+
+        setMediaRecordsForCourse(tester, List.of());
+
+        assertThat(repository.findCourseIdsByMediaRecordId(mediaRecords.get(0).getId())).containsOnlyOnce(courseId2);
+        assertThat(repository.findCourseIdsByMediaRecordId(mediaRecords.get(1).getId()))
+                .containsExactlyInAnyOrderElementsOf(mediaRecords.get(1).getCourseIds());
+    }
+
+    private void setMediaRecordsForCourse(final GraphQlTester tester, final List<UUID> mediaRecordIds) {
+        tester.document("""
+                        mutation($courseId: UUID!, $mediaRecordIds: [UUID!]!) {
+                            mediaRecords: setMediaRecordsForCourse(courseId: $courseId, mediaRecordIds: $mediaRecordIds) {
+                                id
+                            }
+                        }
+                        """)
+                .variable("courseId", courseId2)
+                .variable("mediaRecordIds", mediaRecordIds)
+                .execute()
+                .path("mediaRecords[*].id").entityList(UUID.class).contains(mediaRecordIds.toArray(UUID[]::new));
+    }
 }
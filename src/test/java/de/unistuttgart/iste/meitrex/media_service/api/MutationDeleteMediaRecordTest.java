@@ -9,6 +9,7 @@ import de.unistuttgart.iste.meitrex.common.testutil.TablesToDelete;
 import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
 import de.unistuttgart.iste.meitrex.media_service.test_config.MockMinIoClientConfiguration;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,6 +29,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 
 @ContextConfiguration(classes = {MockMinIoClientConfiguration.class, MockTestPublisherConfiguration.class})
 @TablesToDelete({"media_record_content_ids","media_record_course_ids", "media_record"})
@@ -49,6 +51,9 @@ class MutationDeleteMediaRecordTest {
     @Autowired
     private TopicPublisher topicPublisher;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     @BeforeEach
     void beforeEach() {
         reset(topicPublisher);
@@ -76,5 +81,8 @@ class MutationDeleteMediaRecordTest {
         assertThat(repository.count(), is((long) createdMediaRecords.size() - 1));
         final MediaRecordEntity remainingMediaRecord = repository.findAll().get(0);
         assertThat(remainingMediaRecord, equalTo(createdMediaRecords.get(1)));
+
+        outboxRelay.relayPendingEvents();
+        verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(createdMediaRecords.get(0).getId()));
     }
 }
@@ -0,0 +1,142 @@
+package de.unistuttgart.iste.meitrex.media_service.api;
+
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import de.unistuttgart.iste.meitrex.common.event.MediaRecordDeletedEvent;
+import de.unistuttgart.iste.meitrex.common.testutil.GraphQlApiTest;
+import de.unistuttgart.iste.meitrex.common.testutil.InjectCurrentUserHeader;
+import de.unistuttgart.iste.meitrex.common.testutil.MockTestPublisherConfiguration;
+import de.unistuttgart.iste.meitrex.common.testutil.TablesToDelete;
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
+import de.unistuttgart.iste.meitrex.media_service.test_config.MockMinIoClientConfiguration;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.List;
+import java.util.UUID;
+
+import static de.unistuttgart.iste.meitrex.common.testutil.TestUsers.userWithMemberships;
+import static de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil.dummyCourseMembershipBuilder;
+import static de.unistuttgart.iste.meitrex.media_service.test_util.MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+@ContextConfiguration(classes = {MockMinIoClientConfiguration.class, MockTestPublisherConfiguration.class})
+@TablesToDelete({"media_record_content_ids","media_record_course_ids", "media_record"})
+@Transactional
+@GraphQlApiTest
+class MutationDeleteMediaRecordsTest {
+
+    @Autowired
+    private MediaRecordRepository repository;
+
+    private final UUID courseId1 = UUID.randomUUID();
+    private final UUID courseId2 = UUID.randomUUID();
+
+    private final LoggedInUser.CourseMembership courseMembership1 = dummyCourseMembershipBuilder(courseId1);
+    private final LoggedInUser.CourseMembership courseMembership2 = dummyCourseMembershipBuilder(courseId2);
+    @InjectCurrentUserHeader
+    private final LoggedInUser currentUser = userWithMemberships(courseMembership1, courseMembership2);
+
+    @Autowired
+    private TopicPublisher topicPublisher;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void beforeEach() {
+        reset(topicPublisher);
+        clearInvocations(minioClient);
+    }
+
+    @Test
+    void testDeleteMediaRecords(final GraphQlTester tester) throws Exception {
+        final List<MediaRecordEntity> createdMediaRecords =
+                fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+        final UUID id1 = createdMediaRecords.get(0).getId();
+        final UUID id2 = createdMediaRecords.get(1).getId();
+
+        final String query = """
+                mutation {
+                    deleteMediaRecords(ids: ["%s", "%s"])
+                }
+                """.formatted(id1, id2);
+
+        tester.document(query)
+                .execute()
+                .path("deleteMediaRecords").entityList(UUID.class).containsExactly(id1, id2);
+
+        assertThat(repository.count(), is(0L));
+        // the files are only removed after the deletion has been committed
+        verify(minioClient, never()).removeObjects(any());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        // one batch request per bucket, each containing the original and the standardized file, without a stat
+        final ArgumentCaptor<RemoveObjectsArgs> captor = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(minioClient, times(2)).removeObjects(captor.capture());
+        verify(minioClient, never()).statObject(any());
+        assertThat(captor.getAllValues().stream().map(RemoveObjectsArgs::bucket).toList(),
+                containsInAnyOrder("document", "presentation"));
+
+        outboxRelay.relayPendingEvents();
+        verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(id1));
+        verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(id2));
+    }
+
+    @Test
+    void testFilesAreKeptIfDeletionIsRolledBack(final GraphQlTester tester) {
+        final List<MediaRecordEntity> createdMediaRecords =
+                fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+
+        final String query = """
+                mutation {
+                    deleteMediaRecords(ids: ["%s", "%s"])
+                }
+                """.formatted(createdMediaRecords.get(0).getId(), createdMediaRecords.get(1).getId());
+
+        tester.document(query)
+                .execute()
+                .path("deleteMediaRecords").entityList(UUID.class).hasSize(2);
+
+        TestTransaction.flagForRollback();
+        TestTransaction.end();
+
+        verify(minioClient, never()).removeObjects(any());
+    }
+
+    @Test
+    void testDeleteMediaRecordsWithUnknownIdDeletesNothing(final GraphQlTester tester) {
+        final List<MediaRecordEntity> createdMediaRecords =
+                fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+
+        final String query = """
+                mutation {
+                    deleteMediaRecords(ids: ["%s", "%s"])
+                }
+                """.formatted(createdMediaRecords.get(0).getId(), UUID.randomUUID());
+
+        tester.document(query)
+                .execute()
+                .errors()
+                .satisfy(errors -> assertThat(errors, hasSize(1)));
+
+        assertThat(repository.count(), is((long) createdMediaRecords.size()));
+        verify(minioClient, never()).removeObjects(any());
+    }
+}
@@ -10,6 +10,7 @@ import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
 import de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil;
 import de.unistuttgart.iste.meitrex.media_service.test_util.MediaRecordRepositoryUtil;
 import jakarta.transaction.Transactional;
@@ -27,6 +28,7 @@ import java.util.UUID;
 import static de.unistuttgart.iste.meitrex.common.testutil.TestUsers.userWithMemberships;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 
 @TablesToDelete({"media_record_content_ids", "media_record_course_ids", "media_record"})
 @GraphQlApiTest
@@ -49,6 +51,9 @@ class MutationLinkMediaRecordsWithContentTest {
     @Autowired
     private TopicPublisher topicPublisher;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     @Test
     @Transactional
     @Commit
@@ -82,5 +87,92 @@ class MutationLinkMediaRecordsWithContentTest {
         assertThat(actualMediaRecords).hasSize(2);
         assertThat(actualMediaRecords.get(0).getContentIds()).contains(content1Id);
         assertThat(actualMediaRecords.get(1).getContentIds()).contains(content1Id, content2Id);
+
+        outboxRelay.relayPendingEvents();
+        verify(topicPublisher).notifyContentMediaRecordLinksSet(
+                new ContentMediaRecordLinksSetEvent(content2Id, List.of(expectedMediaRecords.get(1).getId())));
+    }
+
+    @Test
+    @Transactional
+    void testRelinkingMovesContentBetweenMediaRecords(final GraphQlTester tester) {
+        final List<MediaRecordEntity> mediaRecords =
+                MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+        final UUID id1 = mediaRecords.get(0).getId();
+        final UUID id2 = mediaRecords.get(1).getId();
+        final UUID contentId = UUID.randomUUID();
+
+        setLinkedMediaRecords(tester, contentId, List.of(id1));
+        setLinkedMediaRecords(tester, contentId, List.of(id2));
+
+        // the link to the first media record is removed, the other contents of the media records are kept
+        assertThat(repository.findContentIdsByMediaRecordId(id1))
+                .doesNotContain(contentId)
+                .containsAll(mediaRecords.get(0).getContentIds());
+        assertThat(repository.findContentIdsByMediaRecordId(id2))
+                .containsOnlyOnce(contentId)
+                .containsAll(mediaRecords.get(1).getContentIds());
+
+        setLinkedMediaRecords(tester, contentId, List.of(id1, id2));
+
+        assertThat(repository.findContentIdsByMediaRecordId(id1)).containsOnlyOnce(contentId);
+        assertThat(repository.findContentIdsByMediaRecordId(id2)).containsOnlyOnce(contentId);
+    }
+
+    @Test
+    @Transactional
+    void testDuplicateIdsLinkContentOnce(final GraphQlTester tester) {
+        final List<MediaRecordEntity> mediaRecords =
+                MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+        final UUID id1 = mediaRecords.get(0).getId();
+        final UUID id2 = mediaRecords.get(1).getId();
+        final UUID contentId = UUID.randomUUID();
+
+        tester.document(SET_LINKED_MEDIA_RECORDS_QUERY)
+                .variable("contentId", contentId)
+                .variable("mediaRecordIds", List.of(id1, id1, id2))
+                .execute()
+                .path("mediaRecords[*].id").entityList(UUID.class).contains(id1, id2);
+
+        assertThat(repository.findContentIdsByMediaRecordId(id1)).containsOnlyOnce(contentId);
+        assertThat(repository.findContentIdsByMediaRecordId(id2)).containsOnlyOnce(contentId);
+        assertThat(repository.findMediaRecordIdsByContentId(contentId)).containsExactlyInAnyOrder(id1, id2);
     }
+
+    @Test
+    @Transactional
+    void testEmptyListUnlinksContentFromAllMediaRecords(final GraphQlTester tester) {
+        final List<MediaRecordEntity> mediaRecords =
+                MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+        final UUID contentId = UUID.randomUUID();
+        setLinkedMediaRecords(tester, contentId, List.of(mediaRecords.get(0).getId(), mediaRecords.get(1).getId()));
+
+        tester.document(SET_LINKED_MEDIA_RECORDS_QUERY)
+                .variable("contentId", contentId)
+                .variable("mediaRecordIds", List.of())
+                .execute()
+                .path("mediaRecords").entityList(MediaRecord.class).hasSize(0);
+
+        assertThat(repository.findMediaRecordIdsByContentId(contentId)).isEmpty();
+        assertThat(repository.findContentIdsByMediaRecordId(mediaRecords.get(1).getId()))
+                .containsExactlyInAnyOrderElementsOf(mediaRecords.get(1).getContentIds());
+    }
+
+    private void setLinkedMediaRecords(final GraphQlTester tester, final UUID contentId,
+                                       final List<UUID> mediaRecordIds) {
+        tester.document(SET_LINKED_MEDIA_RECORDS_QUERY)
+                .variable("contentId", contentId)
+                .variable("mediaRecordIds", mediaRecordIds)
+                .execute()
+                .path("mediaRecords[*].id").entityList(UUID.class).containsExactly(mediaRecordIds.toArray(UUID[]::new));
+    }
+
+    private static final String SET_LINKED_MEDIA_RECORDS_QUERY = """
+            mutation($contentId: UUID!, $mediaRecordIds: [UUID!]!) {
+                mediaRecords: setLinkedMediaRecordsForContent(contentId: $contentId, mediaRecordIds: $mediaRecordIds) {
+                    id
+                    contentIds
+                }
+            }
+            """;
 }
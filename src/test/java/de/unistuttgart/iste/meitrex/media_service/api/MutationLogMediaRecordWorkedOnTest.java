@@ -0,0 +1,157 @@
+package de.unistuttgart.iste.meitrex.media_service.api;
+
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import de.unistuttgart.iste.meitrex.common.event.ContentProgressedEvent;
+import de.unistuttgart.iste.meitrex.common.event.MediaRecordWorkedOnEvent;
+import de.unistuttgart.iste.meitrex.common.testutil.GraphQlApiTest;
+import de.unistuttgart.iste.meitrex.common.testutil.InjectCurrentUserHeader;
+import de.unistuttgart.iste.meitrex.common.testutil.MockTestPublisherConfiguration;
+import de.unistuttgart.iste.meitrex.common.testutil.TablesToDelete;
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordProgressDataRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
+import de.unistuttgart.iste.meitrex.media_service.test_config.MockMinIoClientConfiguration;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static de.unistuttgart.iste.meitrex.common.testutil.TestUsers.userWithMemberships;
+import static de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil.dummyCourseMembershipBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ContextConfiguration(classes = {MockMinIoClientConfiguration.class, MockTestPublisherConfiguration.class})
+@TablesToDelete({"media_record_progress_data", "media_record_content_ids", "media_record_course_ids", "media_record"})
+@Transactional
+@GraphQlApiTest
+class MutationLogMediaRecordWorkedOnTest {
+
+    @Autowired
+    private MediaRecordRepository repository;
+
+    @Autowired
+    private MediaRecordProgressDataRepository progressDataRepository;
+
+    private final UUID courseId = UUID.randomUUID();
+
+    @InjectCurrentUserHeader
+    private final LoggedInUser currentUser = userWithMemberships(dummyCourseMembershipBuilder(courseId));
+
+    @Autowired
+    private TopicPublisher topicPublisher;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void beforeEach() {
+        reset(topicPublisher);
+    }
+
+    @Test
+    void testContentIsProgressedWhenAllItsMediaRecordsAreWorkedOn(final GraphQlTester tester) {
+        final UUID contentId = UUID.randomUUID();
+        final List<MediaRecordEntity> mediaRecords = repository.saveAll(List.of(
+                mediaRecordOfContent("Record1", contentId),
+                mediaRecordOfContent("Record2", contentId)));
+
+        logWorkedOn(tester, mediaRecords.get(0).getId());
+
+        // the other media record of the content is not worked on, and no progress data is created for it
+        outboxRelay.relayPendingEvents();
+        verify(topicPublisher, never()).notifyUserWorkedOnContent(any());
+        assertThat(progressDataRepository.count(), is(1L));
+
+        logWorkedOn(tester, mediaRecords.get(1).getId());
+
+        outboxRelay.relayPendingEvents();
+        verify(topicPublisher).notifyUserWorkedOnContent(ContentProgressedEvent.builder()
+                .userId(currentUser.getId())
+                .contentId(contentId)
+                .hintsUsed(0)
+                .success(true)
+                .timeToComplete(null)
+                .correctness(1.0)
+                .build());
+    }
+
+    @Test
+    void testLogMediaRecordsWorkedOnInBatch(final GraphQlTester tester) {
+        final UUID contentId = UUID.randomUUID();
+        final List<MediaRecordEntity> mediaRecords = repository.saveAll(List.of(
+                mediaRecordOfContent("Record1", contentId),
+                mediaRecordOfContent("Record2", contentId)));
+        final UUID id1 = mediaRecords.get(0).getId();
+        final UUID id2 = mediaRecords.get(1).getId();
+
+        final String query = """
+                mutation {
+                    logMediaRecordsWorkedOn(mediaRecordIds: ["%s", "%s"]) {
+                        id
+                    }
+                }
+                """.formatted(id1, id2);
+
+        tester.document(query)
+                .execute()
+                .path("logMediaRecordsWorkedOn[*].id").entityList(UUID.class).containsExactly(id1, id2);
+        assertThat(progressDataRepository.count(), is(2L));
+
+        // logging them again only updates the progress data
+        tester.document(query)
+                .execute()
+                .path("logMediaRecordsWorkedOn[*].id").entityList(UUID.class).containsExactly(id1, id2);
+        assertThat(progressDataRepository.count(), is(2L));
+
+        // the events of each batch are written with a single insert and published in the order of the ids
+        outboxRelay.relayPendingEvents();
+        verify(topicPublisher, times(1)).notifyUserWorkedOnContent(any());
+        final InOrder inOrder = inOrder(topicPublisher);
+        for (final boolean wasAlreadyWorkedOn : List.of(false, true)) {
+            for (final UUID id : List.of(id1, id2)) {
+                inOrder.verify(topicPublisher).notifyMediaRecordWorkedOn(MediaRecordWorkedOnEvent.builder()
+                        .userId(currentUser.getId())
+                        .mediaRecordId(id)
+                        .wasAlreadyWorkedOn(wasAlreadyWorkedOn)
+                        .build());
+            }
+        }
+        verify(topicPublisher, times(4)).notifyMediaRecordWorkedOn(any());
+    }
+
+    private void logWorkedOn(final GraphQlTester tester, final UUID mediaRecordId) {
+        final String query = """
+                mutation {
+                    logMediaRecordWorkedOn(mediaRecordId: "%s") {
+                        id
+                    }
+                }
+                """.formatted(mediaRecordId);
+
+        tester.document(query)
+                .execute()
+                .path("logMediaRecordWorkedOn.id").entity(UUID.class).isEqualTo(mediaRecordId);
+    }
+
+    private MediaRecordEntity mediaRecordOfContent(final String name, final UUID contentId) {
+        return MediaRecordEntity.builder()
+                .name(name)
+                .courseIds(new ArrayList<>(List.of(courseId)))
+                .creatorId(UUID.randomUUID())
+                .type(MediaRecordEntity.MediaType.VIDEO)
+                .contentIds(new ArrayList<>(List.of(contentId)))
+                .build();
+    }
+}
@@ -112,6 +112,69 @@ class QueryMediaRecordsTest {
                         .toArray(MediaRecord[]::new));
     }
 
+    @Test
+    void testQueryMediaRecordsConnectionPagesByName(final GraphQlTester tester) {
+        final List<MediaRecordEntity> expectedMediaRecords = MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+
+        final String query = """
+                query($courseIds: [UUID!], $after: String) {
+                    mediaRecordsConnection(filter: {courseIds: $courseIds}, page: {size: 1, sortBy: NAME, after: $after}) {
+                        elements {
+                            id
+                        }
+                        pageInfo {
+                            size
+                            hasNext
+                            endCursor
+                        }
+                    }
+                }
+                """;
+
+        final String endCursor = tester.document(query)
+                .variable("courseIds", List.of(courseId1))
+                .execute()
+                .path("mediaRecordsConnection.elements[*].id").entityList(UUID.class)
+                .containsExactly(expectedMediaRecords.get(0).getId())
+                .path("mediaRecordsConnection.pageInfo.hasNext").entity(Boolean.class).isEqualTo(true)
+                .path("mediaRecordsConnection.pageInfo.endCursor").entity(String.class).get();
+
+        tester.document(query)
+                .variable("courseIds", List.of(courseId1))
+                .variable("after", endCursor)
+                .execute()
+                .path("mediaRecordsConnection.elements[*].id").entityList(UUID.class)
+                .containsExactly(expectedMediaRecords.get(1).getId())
+                .path("mediaRecordsConnection.pageInfo.hasNext").entity(Boolean.class).isEqualTo(false);
+    }
+
+    @Test
+    void testQueryMediaRecordsConnectionFiltersByCourse(final GraphQlTester tester) {
+        final List<MediaRecordEntity> expectedMediaRecords = MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
+
+        final String query = """
+                query($courseIds: [UUID!]) {
+                    mediaRecordsConnection(filter: {courseIds: $courseIds, types: [PRESENTATION]}) {
+                        elements {
+                            id
+                        }
+                        pageInfo {
+                            size
+                            hasNext
+                        }
+                    }
+                }
+                """;
+
+        tester.document(query)
+                .variable("courseIds", List.of(courseId1, courseId2))
+                .execute()
+                .path("mediaRecordsConnection.elements[*].id").entityList(UUID.class)
+                .containsExactly(expectedMediaRecords.get(1).getId())
+                .path("mediaRecordsConnection.pageInfo.size").entity(Integer.class).isEqualTo(1)
+                .path("mediaRecordsConnection.pageInfo.hasNext").entity(Boolean.class).isEqualTo(false);
+    }
+
     @Test
     void testQueryFindMediaRecordsByIds(final GraphQlTester tester) {
         final List<MediaRecordEntity> expectedMediaRecords = MediaRecordRepositoryUtil.fillRepositoryWithMediaRecordsAndCourseIds(repository, courseId1, courseId2);
@@ -14,6 +14,7 @@ import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.Quest
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ForumRepository;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.PostRepository;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ThreadRepository;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
 import de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
@@ -56,6 +57,9 @@ class MutationAddPostTest {
     @Autowired
     private TopicPublisher topicPublisher;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     @Test
     void testAddPostToThread(final GraphQlTester tester) {
         ForumEntity forumEntity = ForumEntity.builder()
@@ -102,6 +106,7 @@ class MutationAddPostTest {
                 .execute()
                 .path("addPost").entity(Post.class).get();
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.ANSWER));
 
@@ -157,6 +162,7 @@ class MutationAddPostTest {
                 .execute()
                 .path("addPost").entity(Post.class).get();
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.ANSWER));
 
@@ -222,6 +228,7 @@ class MutationAddPostTest {
                 .execute()
                 .path("addPost").entity(Post.class).get();
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.ANSWER));
 
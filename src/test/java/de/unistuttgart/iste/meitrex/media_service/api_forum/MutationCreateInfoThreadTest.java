@@ -11,6 +11,7 @@ import de.unistuttgart.iste.meitrex.generated.dto.InfoThread;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.ForumEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.*;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
 import de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil;
 import de.unistuttgart.iste.meitrex.media_service.test_util.MediaRecordRepositoryUtil;
 import jakarta.transaction.Transactional;
@@ -52,6 +53,9 @@ class MutationCreateInfoThreadTest {
     private MediaRecordRepository mediaRecordRepository;
     @Autowired
     private TopicPublisher topicPublisher;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
     @Autowired
     private PostRepository postRepository;
     @Autowired
@@ -89,6 +93,7 @@ class MutationCreateInfoThreadTest {
         assertThat(threadRepository.findAll(), hasSize(1));
         assertThat(forumRepository.findAll(), hasSize(1));
         assertThat(postRepository.findAll(), hasSize(1));
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.THREAD));
     }
@@ -138,6 +143,7 @@ class MutationCreateInfoThreadTest {
         assertThat(threadContentReferenceRepository.findAll(), hasSize(1));
         assertThat(postRepository.findAll(), hasSize(1));
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.THREAD));
     }
@@ -173,6 +179,7 @@ class MutationCreateInfoThreadTest {
         assertThat(threadRepository.findAll(), hasSize(1));
         assertThat(forumRepository.findAll(), hasSize(1));
         assertThat(postRepository.findAll(), hasSize(1));
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.THREAD));
     }
@@ -11,6 +11,7 @@ import de.unistuttgart.iste.meitrex.generated.dto.QuestionThread;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.ForumEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.*;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
 import de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil;
 import de.unistuttgart.iste.meitrex.media_service.test_util.MediaRecordRepositoryUtil;
 import jakarta.transaction.Transactional;
@@ -51,6 +52,9 @@ class MutationCreateQuestionThreadTest {
     @Autowired
     private TopicPublisher topicPublisher;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     @Autowired
     private MediaRecordRepository mediaRecordRepository;
     @Autowired
@@ -91,6 +95,7 @@ class MutationCreateQuestionThreadTest {
         assertThat(forumRepository.findAll(), hasSize(1));
         assertThat(postRepository.findAll(), hasSize(1));
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.QUESTION));
     }
@@ -141,6 +146,7 @@ class MutationCreateQuestionThreadTest {
         assertThat(forumRepository.findAll(), hasSize(1));
         assertThat(postRepository.findAll(), hasSize(1));
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.QUESTION));
     }
@@ -178,6 +184,7 @@ class MutationCreateQuestionThreadTest {
         assertThat(forumRepository.findAll(), hasSize(1));
         assertThat(postRepository.findAll(), hasSize(1));
 
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.QUESTION));
     }
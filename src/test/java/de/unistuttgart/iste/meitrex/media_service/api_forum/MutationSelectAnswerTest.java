@@ -15,6 +15,7 @@ import de.unistuttgart.iste.meitrex.media_service.persistence.entity.forum.Quest
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ForumRepository;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.PostRepository;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ThreadRepository;
+import de.unistuttgart.iste.meitrex.media_service.service.OutboxRelay;
 import de.unistuttgart.iste.meitrex.media_service.test_util.CourseMembershipUtil;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
@@ -57,6 +58,9 @@ class MutationSelectAnswerTest {
     @Autowired
     private TopicPublisher topicPublisher;
 
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     @Test
     void testSelectAnswerWrongPostId(final GraphQlTester tester) {
         UUID postId = UUID.randomUUID();
@@ -206,6 +210,7 @@ class MutationSelectAnswerTest {
         assertThat(questionThread.getSelectedAnswer().getId(), is(postEntity.getId()));
         assertThat(postRepository.findAll(), hasSize(2));
         assertThat(threadRepository.findAll(), hasSize(1));
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.ANSWER_ACCEPTED));
     }
@@ -271,6 +276,7 @@ class MutationSelectAnswerTest {
         assertThat(questionThread.getSelectedAnswer().getId(), is(postEntity.getId()));
         assertThat(postRepository.findAll(), hasSize(2));
         assertThat(threadRepository.findAll(), hasSize(1));
+        outboxRelay.relayPendingEvents();
         verify(topicPublisher).notifyForumActivity(new ForumActivityEvent(currentUser.getId(), forumEntity.getId(),
                 courseId1, ForumActivity.ANSWER_ACCEPTED));
         assertThat(questionThread2.getSelectedAnswer(), is(nullValue()));
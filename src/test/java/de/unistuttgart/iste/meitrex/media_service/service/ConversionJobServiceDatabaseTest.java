@@ -0,0 +1,192 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.common.testutil.GraphQlApiTest;
+import de.unistuttgart.iste.meitrex.common.testutil.MockTestPublisherConfiguration;
+import de.unistuttgart.iste.meitrex.common.testutil.TablesToDelete;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.ConversionJobEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ConversionJobRepository;
+import de.unistuttgart.iste.meitrex.media_service.test_config.MockMinIoClientConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Runs the statements of the conversion job queue against the database, the other tests of the service mock them.
+ */
+@ContextConfiguration(classes = {MockMinIoClientConfiguration.class, MockTestPublisherConfiguration.class})
+@TablesToDelete({"conversion_job"})
+@GraphQlApiTest
+class ConversionJobServiceDatabaseTest {
+
+    @Autowired
+    private ConversionJobService service;
+
+    @Autowired
+    private ConversionJobRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void testConcurrentClaimersGetDisjointJobs() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            service.enqueue(UUID.randomUUID(), 100);
+        }
+
+        // the first claimer keeps its jobs locked until the second one has claimed
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch claimed = new CountDownLatch(1);
+        final CompletableFuture<List<UUID>> first = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    final List<UUID> ids = repository.lockDueJobs(OffsetDateTime.now(), 2).stream()
+                            .map(ConversionJobEntity::getId)
+                            .toList();
+                    locked.countDown();
+                    try {
+                        claimed.await(30, TimeUnit.SECONDS);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ids;
+                }));
+        assertThat(locked.await(30, TimeUnit.SECONDS), is(true));
+
+        // skips the locked jobs instead of waiting for them
+        final List<UUID> second = service.claimDueJobs(10).stream().map(ConversionJobEntity::getId).toList();
+        claimed.countDown();
+
+        assertThat(first.get(30, TimeUnit.SECONDS), hasSize(2));
+        assertThat(second, hasSize(2));
+        assertThat(second, everyItem(not(in(first.get()))));
+    }
+
+    @Test
+    void testJobWithExpiredLeaseIsClaimedAgain() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        service.enqueue(mediaRecordId, 100);
+        final ConversionJobEntity job = service.claimDueJobs(1).get(0);
+
+        // the lease is still valid, so the job is not claimed again
+        assertThat(service.claimDueJobs(1), is(empty()));
+
+        final ConversionJobEntity running = repository.findByMediaRecordId(mediaRecordId).orElseThrow();
+        running.setLeaseExpiresAt(OffsetDateTime.now().minusSeconds(1));
+        repository.save(running);
+
+        final List<ConversionJobEntity> reclaimed = service.claimDueJobs(1);
+        assertThat(reclaimed, hasSize(1));
+        assertThat(reclaimed.get(0).getId(), is(job.getId()));
+        assertThat(reclaimed.get(0).getAttempts(), is(2));
+
+        // the result of the expired attempt is discarded
+        assertThat(repository.markDone(job.getId(), 1, OffsetDateTime.now()), is(0));
+        assertThat(repository.markDone(job.getId(), 2, OffsetDateTime.now()), is(1));
+        assertThat(repository.findByMediaRecordId(mediaRecordId).orElseThrow().getState(),
+                is(ConversionJobEntity.State.DONE));
+    }
+
+    @Test
+    void testReuploadWhileRunningQueuesJobAgainWhenDone() {
+        final UUID mediaRecordId = claimAndReupload();
+        final UUID id = repository.findByMediaRecordId(mediaRecordId).orElseThrow().getId();
+
+        assertThat(repository.markDone(id, 1, OffsetDateTime.now()), is(1));
+
+        assertRequeued(mediaRecordId);
+    }
+
+    @Test
+    void testReuploadWhileRunningQueuesJobAgainWhenRetried() {
+        final UUID mediaRecordId = claimAndReupload();
+        final UUID id = repository.findByMediaRecordId(mediaRecordId).orElseThrow().getId();
+
+        // the retry of the previous file is replaced by an attempt for the new file, which starts right away
+        assertThat(repository.retryLater(id, 1, OffsetDateTime.now().plusHours(1), "error", OffsetDateTime.now()),
+                is(1));
+
+        assertRequeued(mediaRecordId);
+    }
+
+    @Test
+    void testReuploadWhileRunningQueuesJobAgainWhenFailed() {
+        final UUID mediaRecordId = claimAndReupload();
+        final UUID id = repository.findByMediaRecordId(mediaRecordId).orElseThrow().getId();
+
+        assertThat(repository.markFailed(id, 1, "error", OffsetDateTime.now()), is(1));
+
+        assertRequeued(mediaRecordId);
+    }
+
+    @Test
+    void testReuploadWhileRunningQueuesJobAgainWhenReleased() {
+        final UUID mediaRecordId = claimAndReupload();
+        final UUID id = repository.findByMediaRecordId(mediaRecordId).orElseThrow().getId();
+
+        assertThat(repository.release(id, 1, OffsetDateTime.now()), is(1));
+
+        assertRequeued(mediaRecordId);
+    }
+
+    @Test
+    void testReuploadOfFinishedJobQueuesItAgain() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        service.enqueue(mediaRecordId, 100);
+        final ConversionJobEntity job = service.claimDueJobs(1).get(0);
+        repository.markFailed(job.getId(), 1, "error", OffsetDateTime.now());
+
+        service.enqueue(mediaRecordId, 50);
+
+        final ConversionJobEntity queued = repository.findByMediaRecordId(mediaRecordId).orElseThrow();
+        assertThat(queued.getId(), is(job.getId()));
+        assertThat(queued.getState(), is(ConversionJobEntity.State.QUEUED));
+        assertThat(queued.getAttempts(), is(0));
+        assertThat(queued.getPriority(), is(50L));
+        assertThat(queued.getLastError(), is(nullValue()));
+    }
+
+    /**
+     * Claims the job of a new media record and uploads its file again while the job is running.
+     *
+     * @return The id of the media record.
+     */
+    private UUID claimAndReupload() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        service.enqueue(mediaRecordId, 100);
+        assertThat(service.claimDueJobs(1), hasSize(1));
+
+        service.enqueue(mediaRecordId, 50);
+
+        // the running attempt may be converting the previous file, so it is not interrupted
+        final ConversionJobEntity running = repository.findByMediaRecordId(mediaRecordId).orElseThrow();
+        assertThat(running.getState(), is(ConversionJobEntity.State.RUNNING));
+        assertThat(running.isRequeued(), is(true));
+        assertThat(running.getAttempts(), is(1));
+        assertThat(running.getPriority(), is(50L));
+        return mediaRecordId;
+    }
+
+    private void assertRequeued(final UUID mediaRecordId) {
+        final ConversionJobEntity job = repository.findByMediaRecordId(mediaRecordId).orElseThrow();
+        assertThat(job.getState(), is(ConversionJobEntity.State.QUEUED));
+        assertThat(job.getAttempts(), is(0));
+        assertThat(job.isRequeued(), is(false));
+        assertThat(job.getLeaseExpiresAt(), is(nullValue()));
+        assertThat(job.getNextAttemptAt().isAfter(OffsetDateTime.now()), is(false));
+
+        // the new file is converted by the next claim
+        final List<ConversionJobEntity> claimed = service.claimDueJobs(1);
+        assertThat(claimed, hasSize(1));
+        assertThat(claimed.get(0).getAttempts(), is(1));
+    }
+}
@@ -0,0 +1,188 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.media_service.exception.ConversionRejectedException;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.ConversionJobEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.ConversionJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ConversionJobServiceTest {
+
+    private final ConversionJobRepository repository = mock(ConversionJobRepository.class);
+
+    private final MediaService mediaService = mock(MediaService.class);
+
+    private final FileConversionService fileConversionService = mock(FileConversionService.class);
+
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final ConversionJobService service = new ConversionJobService(repository, mediaService,
+            fileConversionService, transactionTemplate, new SimpleMeterRegistry(), Duration.ofMinutes(10), 3,
+            Duration.ofMinutes(1), Duration.ofMinutes(30), Duration.ofDays(7));
+
+    @Test
+    void testClaimedJobsAreLeased() {
+        final ConversionJobEntity job = queuedJob(0);
+        mockClaim(List.of(job));
+
+        final List<ConversionJobEntity> claimed = service.claimDueJobs(2);
+
+        assertThat(claimed, is(List.of(job)));
+        assertThat(job.getState(), is(ConversionJobEntity.State.RUNNING));
+        assertThat(job.getAttempts(), is(1));
+        assertThat(job.getLeaseExpiresAt().isAfter(OffsetDateTime.now().plusMinutes(9)), is(true));
+        verify(repository).lockDueJobs(any(), eq(2));
+    }
+
+    @Test
+    void testNoJobsAreClaimedWithoutIdleWorkers() {
+        when(fileConversionService.idleWorkers()).thenReturn(0);
+
+        service.processDueJobs();
+
+        verifyNoInteractions(repository, mediaService);
+    }
+
+    @Test
+    void testSuccessfulConversionMarksJobDone() {
+        final ConversionJobEntity job = queuedJob(0);
+        when(fileConversionService.idleWorkers()).thenReturn(1);
+        mockClaim(List.of(job));
+        when(mediaService.convertToStandardizedFileIfPossibleAndNecessary(job.getMediaRecordId()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service.processDueJobs();
+
+        verify(repository).markDone(eq(job.getId()), eq(1), any());
+    }
+
+    @Test
+    void testFailedConversionIsRetriedWithBackoff() {
+        final ConversionJobEntity job = queuedJob(1);
+        when(fileConversionService.idleWorkers()).thenReturn(1);
+        mockClaim(List.of(job));
+        when(mediaService.convertToStandardizedFileIfPossibleAndNecessary(job.getMediaRecordId()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("soffice crashed")));
+
+        final OffsetDateTime before = OffsetDateTime.now();
+        service.processDueJobs();
+
+        // second attempt failed, so the next one is due after twice the initial backoff
+        verify(repository).retryLater(eq(job.getId()), eq(2),
+                argThat(next -> !next.isBefore(before.plusMinutes(2))),
+                eq("IllegalStateException: soffice crashed"), any());
+        verify(repository, never()).markFailed(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void testJobFailsPermanentlyAfterMaxAttempts() {
+        final ConversionJobEntity job = queuedJob(2);
+        when(fileConversionService.idleWorkers()).thenReturn(1);
+        mockClaim(List.of(job));
+        when(mediaService.convertToStandardizedFileIfPossibleAndNecessary(job.getMediaRecordId()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("soffice crashed")));
+
+        service.processDueJobs();
+
+        verify(repository).markFailed(eq(job.getId()), eq(3), any(), any());
+        verify(repository, never()).retryLater(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void testJobOfDeletedMediaRecordIsDropped() {
+        final ConversionJobEntity job = queuedJob(0);
+        when(fileConversionService.idleWorkers()).thenReturn(1);
+        mockClaim(List.of(job));
+        when(mediaService.convertToStandardizedFileIfPossibleAndNecessary(job.getMediaRecordId()))
+                .thenThrow(new EntityNotFoundException("Media record not found"));
+
+        service.processDueJobs();
+
+        verify(repository).drop(job.getId(), 1);
+        verify(repository, never()).markFailed(any(), anyInt(), any(), any());
+        verify(repository, never()).retryLater(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void testUploadDuringRunningJobRequeuesIt() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        when(repository.enqueue(any(), eq(mediaRecordId), eq(2048L), any())).thenReturn(0);
+        when(repository.requeueRunning(eq(mediaRecordId), eq(2048L), any())).thenReturn(1);
+
+        service.enqueue(mediaRecordId, 2048);
+
+        verify(repository).requeueRunning(eq(mediaRecordId), eq(2048L), any());
+    }
+
+    @Test
+    void testUploadWhileRunningJobFinishesQueuesItAgain() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        // the job is running on the first try, and finished before it could be flagged
+        when(repository.enqueue(any(), eq(mediaRecordId), anyLong(), any())).thenReturn(0, 1);
+        when(repository.requeueRunning(eq(mediaRecordId), anyLong(), any())).thenReturn(0);
+
+        service.enqueue(mediaRecordId, 2048);
+
+        verify(repository, times(2)).enqueue(any(), eq(mediaRecordId), anyLong(), any());
+    }
+
+    @Test
+    void testClaimingClearsRequeuedFlag() {
+        final ConversionJobEntity job = queuedJob(0);
+        job.setRequeued(true);
+        mockClaim(List.of(job));
+
+        service.claimDueJobs(1);
+
+        assertThat(job.isRequeued(), is(false));
+    }
+
+    @Test
+    void testRejectedJobIsReleasedWithoutCountingTheAttempt() {
+        final ConversionJobEntity job = queuedJob(0);
+        when(fileConversionService.idleWorkers()).thenReturn(1);
+        mockClaim(List.of(job));
+        when(mediaService.convertToStandardizedFileIfPossibleAndNecessary(job.getMediaRecordId()))
+                .thenThrow(new ConversionRejectedException());
+
+        service.processDueJobs();
+
+        verify(repository).release(eq(job.getId()), eq(1), any());
+        verify(repository, never()).retryLater(any(), anyInt(), any(), any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockClaim(final List<ConversionJobEntity> jobs) {
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0))
+                        .doInTransaction(null));
+        when(repository.lockDueJobs(any(), anyInt())).thenReturn(jobs);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static ConversionJobEntity queuedJob(final int attempts) {
+        return ConversionJobEntity.builder()
+                .id(UUID.randomUUID())
+                .mediaRecordId(UUID.randomUUID())
+                .state(ConversionJobEntity.State.QUEUED)
+                .priority(1024)
+                .attempts(attempts)
+                .nextAttemptAt(OffsetDateTime.now())
+                .updatedAt(OffsetDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jodconverter.core.DocumentConverter;
+import org.jodconverter.core.document.DefaultDocumentFormatRegistry;
+import org.jodconverter.core.office.OfficeManager;
+import org.jodconverter.local.LocalConverter;
+import org.jodconverter.local.office.LocalOfficeManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileConversionServiceTest {
+
+    private static final String PPTX_MEDIA_TYPE =
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+
+    private static OfficeManager officeManager;
+
+    private FileConversionService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @AfterAll
+    static void stopOfficeManager() throws Exception {
+        if (officeManager != null) {
+            officeManager.stop();
+        }
+    }
+
+    @Test
+    void testFormatIsDetectedFromContentType() {
+        assertThat(FileConversionService.detectFormat(PPTX_MEDIA_TYPE, "Lecture"),
+                is(DefaultDocumentFormatRegistry.PPTX));
+        assertThat(FileConversionService.detectFormat("application/msword; charset=binary", null),
+                is(DefaultDocumentFormatRegistry.DOC));
+    }
+
+    @Test
+    void testFormatIsDetectedFromFileNameIfContentTypeIsGeneric() {
+        assertThat(FileConversionService.detectFormat("application/octet-stream", "Lecture 1.PPTX"),
+                is(DefaultDocumentFormatRegistry.PPTX));
+        assertThat(FileConversionService.detectFormat(null, "Notes.odt"), is(DefaultDocumentFormatRegistry.ODT));
+        assertThat(FileConversionService.detectFormat("application/octet-stream", "Lecture"), is(nullValue()));
+    }
+
+    @Test
+    void testInputKeepsExtensionOfItsFormat() {
+        assertThat(FileConversionService.inputExtension(DefaultDocumentFormatRegistry.PPTX, "Lecture"), is("pptx"));
+        assertThat(FileConversionService.inputExtension(null, "Slides.key"), is("key"));
+        assertThat(FileConversionService.inputExtension(null, "Lecture"), is("tmp"));
+        assertThat(FileConversionService.inputExtension(null, "Lecture.../etc"), is("tmp"));
+    }
+
+    /**
+     * Converts a real presentation with the office pool the service uses in production. Skipped if LibreOffice is not
+     * installed.
+     */
+    @Test
+    void testPresentationIsConvertedWithOfficePool() throws Exception {
+        service = new FileConversionService(1, 1, Duration.ofMinutes(2), documentConverter(),
+                new SimpleMeterRegistry());
+
+        final AtomicReference<byte[]> pdf = new AtomicReference<>();
+        try (InputStream presentation = getClass().getResourceAsStream("/conversion/presentation.pptx")) {
+            // the content type is generic, as for files uploaded without one, so the name decides the format
+            service.convertDocumentToPdf(presentation, "application/octet-stream", "Lecture.pptx", output -> {
+                try {
+                    pdf.set(output.readAllBytes());
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).get();
+        }
+
+        assertThat(pdf.get().length, is(greaterThan(0)));
+        assertThat(new String(pdf.get(), 0, 5), is("%PDF-"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<DocumentConverter> documentConverter() {
+        if (officeManager == null) {
+            try {
+                final OfficeManager manager = LocalOfficeManager.builder().portNumbers(2099).build();
+                manager.start();
+                officeManager = manager;
+            } catch (final Exception e) {
+                assumeTrue(false, "LibreOffice is not available: " + e.getMessage());
+            }
+        }
+        final ObjectProvider<DocumentConverter> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(LocalConverter.make(officeManager));
+        return provider;
+    }
+}
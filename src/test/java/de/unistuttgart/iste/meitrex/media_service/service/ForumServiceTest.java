@@ -1,6 +1,5 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
 import de.unistuttgart.iste.meitrex.common.profanity_filter.ProfanityFilter;
 import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
 import de.unistuttgart.iste.meitrex.generated.dto.*;
@@ -30,7 +29,7 @@ class ForumServiceTest {
     private final ThreadContentReferenceRepository threadContentReferenceRepository = mock(ThreadContentReferenceRepository.class);
     private final MediaRecordRepository mediaRecordRepository = mock(MediaRecordRepository.class);
 
-    private final TopicPublisher topicPublisher = mock(TopicPublisher.class);
+    private final EventOutbox eventOutbox = mock(EventOutbox.class);
 
     private final QuestionThreadRepository questionThreadRepository = mock(QuestionThreadRepository.class);
 
@@ -43,7 +42,7 @@ class ForumServiceTest {
     private final ProfanityFilter profanityFilter = mock(ProfanityFilter.class);
 
     private final ForumService forumService = new ForumService(modelMapper, forumRepository, threadRepository,
-            postRepository, threadContentReferenceRepository, mediaRecordRepository, topicPublisher, profanityFilter,
+            postRepository, threadContentReferenceRepository, mediaRecordRepository, eventOutbox, profanityFilter,
             forumMapper, threadMapper,postMapper, questionThreadMapper, infoThreadMapper, questionThreadRepository);
 
     @Test
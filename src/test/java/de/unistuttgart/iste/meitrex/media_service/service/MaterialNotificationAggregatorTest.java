@@ -0,0 +1,254 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.common.event.ServerSource;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.PendingMaterialNotificationEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.PendingMaterialNotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+class MaterialNotificationAggregatorTest {
+
+    private final MediaRecordRepository repository = mock(MediaRecordRepository.class);
+
+    private final PendingMaterialNotificationRepository pendingRepository =
+            mock(PendingMaterialNotificationRepository.class);
+
+    private final EventOutbox eventOutbox = mock(EventOutbox.class);
+
+    /**
+     * Contents of the pending_material_notification table, by id.
+     */
+    private final Map<UUID, PendingMaterialNotificationEntity> pending = new LinkedHashMap<>();
+
+    // no settle delay and quiet period, so uploads are published by the next run
+    private final MaterialNotificationAggregator aggregator = aggregator(Duration.ZERO, Duration.ofHours(1));
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(pendingRepository.tryLock(anyLong())).thenReturn(true);
+        when(pendingRepository.save(any())).thenAnswer(invocation -> {
+            final PendingMaterialNotificationEntity entity = invocation.getArgument(0);
+            pending.put(entity.getId(), entity);
+            return entity;
+        });
+        doAnswer(invocation -> pending.remove(((PendingMaterialNotificationEntity) invocation.getArgument(0)).getId()))
+                .when(pendingRepository).delete(any());
+        doAnswer(invocation -> {
+            ((Iterable<PendingMaterialNotificationEntity>) invocation.getArgument(0))
+                    .forEach(entity -> pending.remove(entity.getId()));
+            return null;
+        }).when(pendingRepository).deleteAll(any());
+        when(pendingRepository.findByCourseIdIsNullAndLastUploadedAtLessThanEqual(any()))
+                .thenAnswer(invocation -> pending.values().stream()
+                        .filter(entity -> entity.getCourseId() == null)
+                        .filter(entity -> !entity.getLastUploadedAt().isAfter(invocation.getArgument(0)))
+                        .toList());
+        when(pendingRepository.findByMediaRecordIdAndCourseId(any(), any()))
+                .thenAnswer(invocation -> pending.values().stream()
+                        .filter(entity -> entity.getMediaRecordId().equals(invocation.getArgument(0)))
+                        .filter(entity -> Objects.equals(entity.getCourseId(), invocation.getArgument(1)))
+                        .findFirst());
+        when(pendingRepository.findByCourseIdIsNotNull())
+                .thenAnswer(invocation -> pending.values().stream()
+                        .filter(entity -> entity.getCourseId() != null)
+                        .toList());
+    }
+
+    @Test
+    void testSingleDocumentLinksToDocument() {
+        final UUID courseId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("Lecture.pdf", MediaRecordEntity.MediaType.DOCUMENT, List.of(courseId),
+                List.of());
+
+        aggregator.materialUploaded(mediaId);
+        aggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(
+                eq(courseId), isNull(), eq(ServerSource.MEDIA),
+                eq("/courses/" + courseId + "/media?selectedDocument=" + mediaId),
+                eq("New Material is uploaded!"),
+                eq("material: Lecture.pdf")
+        );
+        assertThat(pending.values(), is(empty()));
+    }
+
+    @Test
+    void testSingleVideoLinksToLatestContent() {
+        final UUID courseId = UUID.randomUUID();
+        final UUID latestContentId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("Clip.mp4", MediaRecordEntity.MediaType.VIDEO, List.of(courseId),
+                List.of(UUID.randomUUID(), latestContentId));
+
+        aggregator.materialUploaded(mediaId);
+        aggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(
+                eq(courseId), isNull(), eq(ServerSource.MEDIA),
+                eq("/courses/" + courseId + "/media/" + latestContentId + "?selectedVideo=" + mediaId),
+                eq("New Material is uploaded!"),
+                eq("material: Clip.mp4")
+        );
+    }
+
+    @Test
+    void testBlankNameIsReplaced() {
+        final UUID courseId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("   ", MediaRecordEntity.MediaType.DOCUMENT, List.of(courseId), null);
+
+        aggregator.materialUploaded(mediaId);
+        aggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(
+                eq(courseId), isNull(), eq(ServerSource.MEDIA),
+                eq("/courses/" + courseId + "/media?selectedDocument=" + mediaId),
+                eq("New Material is uploaded!"),
+                eq("material: Unnamed File")
+        );
+    }
+
+    @Test
+    void testUploadsOfACourseArePublishedAsOneDigest() {
+        final UUID courseId = UUID.randomUUID();
+        final UUID otherCourseId = UUID.randomUUID();
+        for (int i = 1; i <= 7; i++) {
+            final List<UUID> courseIds = i == 1 ? List.of(courseId, otherCourseId) : List.of(courseId);
+            aggregator.materialUploaded(mockMediaRecord("File" + i + ".pdf", MediaRecordEntity.MediaType.DOCUMENT,
+                    courseIds, List.of()));
+        }
+
+        aggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(
+                eq(courseId), isNull(), eq(ServerSource.MEDIA),
+                eq("/courses/" + courseId + "/media"),
+                eq("New Material is uploaded!"),
+                eq("materials: File1.pdf, File2.pdf, File3.pdf, File4.pdf, File5.pdf and 2 more")
+        );
+        verify(eventOutbox).notificationEvent(
+                eq(otherCourseId), isNull(), eq(ServerSource.MEDIA), anyString(),
+                eq("New Material is uploaded!"),
+                eq("material: File1.pdf")
+        );
+        verifyNoMoreInteractions(eventOutbox);
+    }
+
+    @Test
+    void testRepeatedUploadOfSameFileIsListedOnce() {
+        final UUID courseId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("Lecture.pdf", MediaRecordEntity.MediaType.DOCUMENT, List.of(courseId),
+                List.of());
+
+        aggregator.materialUploaded(mediaId);
+        aggregator.materialUploaded(mediaId);
+        aggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(any(), any(), any(), any(), any(), eq("material: Lecture.pdf"));
+    }
+
+    @Test
+    void testDeletedMediaRecordIsNotNotified() {
+        final UUID mediaId = UUID.randomUUID();
+        when(repository.findCourseIdsByMediaRecordId(mediaId)).thenReturn(List.of());
+
+        aggregator.materialUploaded(mediaId);
+        aggregator.publishDueNotifications();
+
+        verifyNoInteractions(eventOutbox);
+        assertThat(pending.values(), is(empty()));
+    }
+
+    @Test
+    void testCourseIsNotifiedAfterQuietPeriod() {
+        final MaterialNotificationAggregator quietAggregator = aggregator(Duration.ofMinutes(1), Duration.ofHours(1));
+        final UUID courseId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("Lecture.pdf", MediaRecordEntity.MediaType.DOCUMENT, List.of(courseId),
+                List.of());
+
+        quietAggregator.materialUploaded(mediaId);
+        quietAggregator.publishDueNotifications();
+
+        // the upload is assigned to the course, which waits for further uploads
+        verifyNoInteractions(eventOutbox);
+        assertThat(pending.values(), contains(hasProperty("courseId", is(courseId))));
+
+        pending.values().forEach(entity -> entity.setLastUploadedAt(entity.getLastUploadedAt().minusMinutes(2)));
+        quietAggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(any(), any(), any(), any(), any(), eq("material: Lecture.pdf"));
+        assertThat(pending.values(), is(empty()));
+    }
+
+    @Test
+    void testCourseIsNotifiedAfterMaxDelayDespiteNewUploads() {
+        final MaterialNotificationAggregator quietAggregator = aggregator(Duration.ofMinutes(1), Duration.ofHours(1));
+        final UUID courseId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("Lecture.pdf", MediaRecordEntity.MediaType.DOCUMENT, List.of(courseId),
+                List.of());
+
+        quietAggregator.materialUploaded(mediaId);
+        pending.values().forEach(entity -> entity.setFirstUploadedAt(entity.getFirstUploadedAt().minusHours(2)));
+        quietAggregator.publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(any(), any(), any(), any(), any(), eq("material: Lecture.pdf"));
+    }
+
+    @Test
+    void testUploadsAreNotifiedByAnotherInstance() {
+        final UUID courseId = UUID.randomUUID();
+        final UUID mediaId = mockMediaRecord("Lecture.pdf", MediaRecordEntity.MediaType.DOCUMENT, List.of(courseId),
+                List.of());
+
+        // the upload is stored, so a replica started later publishes it
+        aggregator.materialUploaded(mediaId);
+        aggregator(Duration.ZERO, Duration.ofHours(1)).publishDueNotifications();
+
+        verify(eventOutbox).notificationEvent(any(), any(), any(), any(), any(), eq("material: Lecture.pdf"));
+    }
+
+    @Test
+    void testNothingIsPublishedWhileAnotherReplicaPublishes() {
+        final UUID courseId = UUID.randomUUID();
+        aggregator.materialUploaded(mockMediaRecord("Lecture.pdf", MediaRecordEntity.MediaType.DOCUMENT,
+                List.of(courseId), List.of()));
+        when(pendingRepository.tryLock(anyLong())).thenReturn(false);
+
+        aggregator.publishDueNotifications();
+
+        verifyNoInteractions(eventOutbox);
+        assertThat(pending.values(), hasSize(1));
+    }
+
+    private MaterialNotificationAggregator aggregator(final Duration quietPeriod, final Duration maxDelay) {
+        return new MaterialNotificationAggregator(repository, pendingRepository, eventOutbox,
+                new MediaRecordMapper(), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), Duration.ZERO, quietPeriod, maxDelay);
+    }
+
+    private UUID mockMediaRecord(final String name, final MediaRecordEntity.MediaType type,
+                                 final List<UUID> courseIds, final List<UUID> contentIds) {
+        final UUID id = UUID.randomUUID();
+        final MediaRecordEntity entity = MediaRecordEntity.builder()
+                .id(id).name(name)
+                .courseIds(courseIds)
+                .contentIds(List.of()).creatorId(UUID.randomUUID())
+                .progressData(List.of()).type(type).build();
+        doReturn(Optional.of(entity)).when(repository).findById(id);
+        when(repository.findCourseIdsByMediaRecordId(id)).thenReturn(courseIds);
+        when(repository.findContentIdsByMediaRecordId(id)).thenReturn(contentIds);
+        return id;
+    }
+}
@@ -0,0 +1,146 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MediaRecordReconciliationServiceTest {
+
+    private final MinioClient minioClient = mock(MinioClient.class);
+
+    private final MediaRecordRepository repository = mock(MediaRecordRepository.class);
+
+    private final MediaService mediaService = mock(MediaService.class);
+
+    private final List<UUID> deleted = new ArrayList<>();
+
+    private final MediaRecordReconciliationService service = new MediaRecordReconciliationService(
+            minioClient, repository, mediaService, new SimpleMeterRegistry(),
+            1000, 100, false, Duration.ofHours(1), Duration.ofHours(24));
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        // all media records are older than the grace period and their files are still missing when checked again
+        when(repository.findIdsCreatedBefore(anyCollection(), any()))
+                .thenAnswer(invocation -> List.copyOf((Collection<UUID>) invocation.getArgument(0)));
+        when(minioClient.statObject(any())).thenThrow(errorResponse("NoSuchKey"));
+        when(mediaService.deleteMediaRecordRows(anyCollection())).thenAnswer(invocation -> {
+            final Collection<UUID> batch = invocation.getArgument(0);
+            deleted.addAll(batch);
+            return batch.size();
+        });
+    }
+
+    @Test
+    void testReconcileDeletesRecordsWithoutFileAndReportsOrphanedObjects() throws Exception {
+        // ids sorted like Postgres and MinIO sort them
+        final List<UUID> ids = Stream.generate(UUID::randomUUID).limit(3)
+                .sorted(Comparator.comparing(UUID::toString))
+                .toList();
+        final UUID withFile = ids.get(0);
+        final UUID withoutFile = ids.get(1);
+        final UUID withFileToo = ids.get(2);
+
+        when(repository.findIdsByTypeAfter(eq(MediaRecordEntity.MediaType.DOCUMENT), any(), any()))
+                .thenReturn(ids);
+        when(minioClient.listObjects(any())).thenReturn(List.of());
+        when(minioClient.listObjects(argThat((ListObjectsArgs args) -> args != null && "document".equals(args.bucket()))))
+                .thenReturn(List.of(
+                        object(withFile.toString()),
+                        object(withFile + "_standardized"),
+                        object(withFileToo.toString()),
+                        object("zzz-not-a-media-record")));
+
+        final MediaRecordReconciliationService.Report report = service.reconcile().orElseThrow();
+
+        assertThat(deleted, is(List.of(withoutFile)));
+        assertThat(report.scannedRecords(), is(3L));
+        assertThat(report.scannedObjects(), is(4L));
+        assertThat(report.deletedRecords(), is(1L));
+        assertThat(report.orphanedObjects(), is(1L));
+        assertThat(report.removedObjects(), is(0L));
+        // only the file of the media record to delete is checked again
+        verify(minioClient, times(1)).statObject(any());
+        verify(minioClient, never()).removeObjects(any());
+    }
+
+    @Test
+    void testRecentlyCreatedRecordWithoutFileIsKept() {
+        final UUID id = UUID.randomUUID();
+        mockDocumentRecordsWithoutFiles(id);
+        when(repository.findIdsCreatedBefore(anyCollection(), any())).thenReturn(List.of());
+
+        final MediaRecordReconciliationService.Report report = service.reconcile().orElseThrow();
+
+        assertThat(report.deletedRecords(), is(0L));
+        verify(mediaService, never()).deleteMediaRecordRows(anyCollection());
+    }
+
+    @Test
+    void testRecordWhoseFileIsUploadedDuringReconciliationIsKept() throws Exception {
+        final UUID id = UUID.randomUUID();
+        mockDocumentRecordsWithoutFiles(id);
+        doReturn(null).when(minioClient).statObject(any());
+
+        final MediaRecordReconciliationService.Report report = service.reconcile().orElseThrow();
+
+        assertThat(report.deletedRecords(), is(0L));
+        verify(mediaService, never()).deleteMediaRecordRows(anyCollection());
+    }
+
+    @Test
+    void testRecordIsKeptIfItsFileCannotBeChecked() throws Exception {
+        final UUID id = UUID.randomUUID();
+        mockDocumentRecordsWithoutFiles(id);
+        doThrow(errorResponse("AccessDenied")).when(minioClient).statObject(any());
+
+        final MediaRecordReconciliationService.Report report = service.reconcile().orElseThrow();
+
+        assertThat(report.deletedRecords(), is(0L));
+        assertThat(deleted, is(empty()));
+    }
+
+    private void mockDocumentRecordsWithoutFiles(final UUID... ids) {
+        when(repository.findIdsByTypeAfter(eq(MediaRecordEntity.MediaType.DOCUMENT), any(), any()))
+                .thenReturn(List.of(ids));
+        when(minioClient.listObjects(any())).thenReturn(List.of());
+    }
+
+    private static ErrorResponseException errorResponse(final String code) {
+        return new ErrorResponseException(
+                new ErrorResponse(code, "message", "document", "object", "resource", "request", "host"),
+                null, null);
+    }
+
+    private static Result<Item> object(final String name) {
+        final Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(name);
+        when(item.isDir()).thenReturn(false);
+        when(item.lastModified()).thenReturn(ZonedDateTime.now().minusDays(1));
+        return new Result<>(item);
+    }
+}
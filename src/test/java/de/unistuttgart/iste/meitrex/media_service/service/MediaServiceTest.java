@@ -1,36 +1,42 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
-import de.unistuttgart.iste.meitrex.common.event.ServerSource;
+import de.unistuttgart.iste.meitrex.common.event.ContentChangeEvent;
+import de.unistuttgart.iste.meitrex.common.event.CrudOperation;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
+import de.unistuttgart.iste.meitrex.generated.dto.MediaType;
+import de.unistuttgart.iste.meitrex.generated.dto.UpdateMediaRecordInput;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.StandardizedFileEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordRepository;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.StandardizedFileRepository;
 import de.unistuttgart.iste.meitrex.media_service.test_config.MockMinIoClientConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.minio.MinioClient;
+import io.minio.StatObjectResponse;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.modelmapper.ModelMapper;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
-@Configuration
-@EnableAsync
 class MediaServiceTest {
 
     private final MediaRecordRepository repository =
@@ -40,12 +46,21 @@ class MediaServiceTest {
 
     private final ModelMapper mapper = new ModelMapper();
 
-    private final TopicPublisher topicPublisher = mock(TopicPublisher.class);
+    private final EventOutbox eventOutbox = mock(EventOutbox.class);
 
     private final FileConversionService fileConversionService = mock(FileConversionService.class);
 
-    private final MediaService service = new MediaService(mockMinIoClient, mockMinIoClient, topicPublisher, repository,
-            mapper, fileConversionService);
+    private final StandardizedFileRepository standardizedFileRepository = mock(StandardizedFileRepository.class);
+
+    private final MaterialNotificationAggregator materialNotificationAggregator =
+            mock(MaterialNotificationAggregator.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final MediaService service = new MediaService(mockMinIoClient, mockMinIoClient, eventOutbox, repository,
+            standardizedFileRepository, new MediaRecordMapper(), fileConversionService, new PresignedUrlCache(1000, new SimpleMeterRegistry()),
+            new MediaRecordCache(1000, Duration.ofMinutes(5), new SimpleMeterRegistry()),
+            materialNotificationAggregator, meterRegistry);
 
 
     MediaServiceTest() throws Exception {
@@ -109,128 +124,33 @@ class MediaServiceTest {
     }
 
     @Test
-    void TestPublishMediaRecordFile() {
-        UUID mediaId = UUID.randomUUID();
-        UUID courseId = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder()
-                .id(mediaId).name("Lecture.pdf")
-                .courseIds(List.of(courseId))
-                .contentIds(List.of()).creatorId(UUID.randomUUID())
-                .progressData(List.of()).type(MediaRecordEntity.MediaType.DOCUMENT).build();
-
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(mediaId);
-        when(repository.findContentIdsByMediaRecordId(mediaId)).thenReturn(List.of());
-
-        service.publishMaterialPublishedEvent(mediaId);
-
-        verify(topicPublisher).notificationEvent(
-                eq(courseId), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + courseId + "/media?selectedDocument=" + mediaId),
-                eq("New Material is uploaded!"),
-                eq("material: Lecture.pdf")
-        );
-    }
+    void testCreateMediaRecordUrlsWithoutDatabaseAccess() {
+        final List<MediaRecord> mediaRecords = List.of(
+                MediaRecord.builder().setId(UUID.randomUUID()).setType(MediaType.DOCUMENT).build(),
+                MediaRecord.builder().setId(UUID.randomUUID()).setType(MediaType.VIDEO).build());
 
-    @Test
-    void TestPublishMediaRecordFile_unnamed() {
-        UUID mid = UUID.randomUUID(), cid = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder().id(mid).name(null)
-                .courseIds(List.of(cid)).contentIds(List.of()).creatorId(UUID.randomUUID())
-                .progressData(List.of()).type(MediaRecordEntity.MediaType.DOCUMENT).build();
-
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(mid);
-        when(repository.findContentIdsByMediaRecordId(mid)).thenReturn(List.of());
-
-        service.publishMaterialPublishedEvent(mid);
-
-        verify(topicPublisher).notificationEvent(
-                eq(cid), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + cid + "/media?selectedDocument=" + mid),
-                eq("New Material is uploaded!"),
-                eq("material: Unnamed File")
-        );
-    }
+        assertThat(service.createMediaRecordDownloadUrls(mediaRecords), is(List.of("http://example.com", "http://example.com")));
+        assertThat(service.createMediaRecordUploadUrls(mediaRecords), is(List.of("http://example.com", "http://example.com")));
+        assertThat(service.createMediaRecordInternalDownloadUrls(mediaRecords).size(), is(2));
+        assertThat(service.createMediaRecordInternalUploadUrls(mediaRecords).size(), is(2));
 
-    @Test
-    void TestPublishMediaRecordFile_video() {
-        UUID mediaId = UUID.randomUUID();
-        UUID courseId = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder()
-                .id(mediaId).name("Video.mp4")
-                .courseIds(List.of(courseId))
-                .contentIds(List.of()).creatorId(UUID.randomUUID())
-                .progressData(List.of()).type(MediaRecordEntity.MediaType.VIDEO).build();
-
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(mediaId);
-        when(repository.findContentIdsByMediaRecordId(mediaId)).thenReturn(List.of());
-
-        service.publishMaterialPublishedEvent(mediaId);
-
-        verify(topicPublisher).notificationEvent(
-                eq(courseId), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + courseId + "/media?selectedVideo=" + mediaId),
-                eq("New Material is uploaded!"),
-                eq("material: Video.mp4")
-        );
+        verifyNoInteractions(repository);
     }
 
     @Test
-    void TestPublishMediaRecordFile_withContentId_document() {
-        UUID mediaId = UUID.randomUUID();
-        UUID courseId = UUID.randomUUID();
-        UUID latestContentId = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder()
-                .id(mediaId).name("Doc.pdf")
-                .courseIds(List.of(courseId))
-                .contentIds(List.of(latestContentId))
-                .creatorId(UUID.randomUUID())
-                .progressData(List.of())
-                .type(MediaRecordEntity.MediaType.DOCUMENT).build();
+    void testPresignedUrlsAreCached() throws Exception {
+        final MediaRecord mediaRecord = MediaRecord.builder()
+                .setId(UUID.randomUUID()).setType(MediaType.DOCUMENT).build();
 
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(mediaId);
-        when(repository.findContentIdsByMediaRecordId(mediaId)).thenReturn(List.of(latestContentId));
+        service.createMediaRecordDownloadUrls(List.of(mediaRecord));
+        service.createMediaRecordDownloadUrls(List.of(mediaRecord));
 
-        service.publishMaterialPublishedEvent(mediaId);
+        // the second call must be served from the cache
+        verify(mockMinIoClient, times(1)).getPresignedObjectUrl(any());
 
-        verify(topicPublisher).notificationEvent(
-                eq(courseId), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + courseId + "/media/" + latestContentId + "?selectedDocument=" + mediaId),
-                eq("New Material is uploaded!"),
-                eq("material: Doc.pdf")
-        );
-    }
-
-    @Test
-    void TestPublishMediaRecordFile_withContentId_video() {
-        UUID mediaId = UUID.randomUUID();
-        UUID courseId = UUID.randomUUID();
-        UUID latestContentId = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder()
-                .id(mediaId).name("Clip.mp4")
-                .courseIds(List.of(courseId))
-                .contentIds(List.of(latestContentId))
-                .creatorId(UUID.randomUUID())
-                .progressData(List.of())
-                .type(MediaRecordEntity.MediaType.VIDEO).build();
-
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(mediaId);
-        when(repository.findContentIdsByMediaRecordId(mediaId)).thenReturn(List.of(latestContentId));
-
-        service.publishMaterialPublishedEvent(mediaId);
-
-        verify(topicPublisher).notificationEvent(
-                eq(courseId), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + courseId + "/media/" + latestContentId + "?selectedVideo=" + mediaId),
-                eq("New Material is uploaded!"),
-                eq("material: Clip.mp4")
-        );
-    }
-
-    @Test
-    void TestPublishMediaRecordFile_notFound() {
-        UUID mediaId = UUID.randomUUID();
-        doReturn(Optional.empty()).when(repository).findWithCoursesById(mediaId);
-        assertThrows(IllegalArgumentException.class, () -> service.publishMaterialPublishedEvent(mediaId));
+        // upload urls are cached separately
+        service.createMediaRecordUploadUrls(List.of(mediaRecord));
+        verify(mockMinIoClient, times(2)).getPresignedObjectUrl(any());
     }
 
     @Test
@@ -260,11 +180,12 @@ class MediaServiceTest {
         MediaRecordEntity e2 = MediaRecordEntity.builder().id(UUID.randomUUID()).name("B")
                 .creatorId(u1).contentIds(List.of()).courseIds(List.of()).progressData(List.of()).build();
 
-        when(repository.findMediaRecordEntitiesByCreatorId(u1)).thenReturn(List.of(e1, e2));
-        when(repository.findMediaRecordEntitiesByCreatorId(u2)).thenReturn(List.of());
+        when(repository.findMediaRecordEntitiesByCreatorIdIn(Set.of(u1, u2))).thenReturn(List.of(e1, e2));
 
         var result = service.getMediaRecordsForUsers(List.of(u1, u2));
         assertThat(result.size(), is(2));
+        verify(repository, times(1)).findMediaRecordEntitiesByCreatorIdIn(any());
+        verify(repository, never()).findMediaRecordEntitiesByCreatorId(any());
 
         var u1List = result.get(0);
         var a = mapper.map(u1List.get(0), MediaRecordEntity.class);
@@ -276,19 +197,6 @@ class MediaServiceTest {
         assertThat(u2List.size(), is(0));
     }
 
-    @Test
-    void TestGetMediaRecordEntitiesByContentId() {
-        UUID contentId = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder().id(UUID.randomUUID()).name("X")
-                .contentIds(List.of(contentId)).creatorId(UUID.randomUUID()).courseIds(List.of()).progressData(List.of()).build();
-
-        when(repository.findMediaRecordEntitiesByContentIds(List.of(contentId))).thenReturn(List.of(e));
-
-        var list = service.getMediaRecordEntitiesByContentId(contentId);
-        assertThat(list.size(), is(1));
-        assertThat(list.get(0).getId(), is(e.getId()));
-    }
-
     @Test
     void TestGetMediaRecordsForCourses() {
         UUID c1 = UUID.randomUUID();
@@ -317,109 +225,235 @@ class MediaServiceTest {
     }
 
     @Test
-    void TestRemoveExpiredUrls_private_expired() throws Exception {
-        var m = service.getClass().getDeclaredMethod("getMediaRecordsForUser", UUID.class).getGenericReturnType();
-        var mediaRecordClass = (Class<?>) ((ParameterizedType) m).getActualTypeArguments()[0];
-        Object record = mediaRecordClass.getDeclaredConstructor().newInstance();
-        var setD = mediaRecordClass.getMethod("setDownloadUrl", String.class);
-        var setU = mediaRecordClass.getMethod("setUploadUrl", String.class);
-        var setS = mediaRecordClass.getMethod("setStandardizedDownloadUrl", String.class);
-        DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
-        String past = f.format(Instant.now().minusSeconds(3600));
-        String expired = "https://x?X-Amz-Date=" + past + "&X-Amz-Expires=60";
-        setD.invoke(record, expired);
-        setU.invoke(record, expired);
-        setS.invoke(record, expired);
-        Method rm = service.getClass().getDeclaredMethod("removeExpiredUrlsFromMediaRecord", mediaRecordClass);
-        rm.setAccessible(true);
-        Object out = rm.invoke(service, record);
-        var getD = mediaRecordClass.getMethod("getDownloadUrl");
-        var getU = mediaRecordClass.getMethod("getUploadUrl");
-        var getS = mediaRecordClass.getMethod("getStandardizedDownloadUrl");
-        assertThat(getD.invoke(out) == null, is(true));
-        assertThat(getU.invoke(out) == null, is(true));
-        assertThat(getS.invoke(out) == null, is(true));
+    void TestGroupByIdsMapsEachEntityOnce() {
+        UUID c1 = UUID.randomUUID();
+        UUID c2 = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+
+        MediaRecordEntity e1 = MediaRecordEntity.builder().id(UUID.randomUUID()).name("E1")
+                .contentIds(List.of(c1, c2, c1)).build();
+        MediaRecordEntity e2 = MediaRecordEntity.builder().id(UUID.randomUUID()).name("E2")
+                .contentIds(List.of(c2)).build();
+
+        List<MediaRecordEntity> mapped = new ArrayList<>();
+        var result = MediaService.groupByIds(List.of(c1, unknown, c2, c1), List.of(e1, e2),
+                MediaRecordEntity::getContentIds, entity -> {
+                    mapped.add(entity);
+                    return entity.getId();
+                });
+
+        assertThat(mapped, is(List.of(e1, e2)));
+        assertThat(result, is(List.of(
+                List.of(e1.getId()),
+                List.of(),
+                List.of(e1.getId(), e2.getId()),
+                List.of(e1.getId()))));
+    }
+
+    @Test
+    void TestFindMediaRecordsByIdsReturnsNullForMissing() {
+        UUID missing = UUID.randomUUID();
+        MediaRecordEntity e1 = MediaRecordEntity.builder().id(UUID.randomUUID()).name("E1")
+                .contentIds(List.of()).courseIds(List.of()).progressData(List.of()).build();
+
+        when(repository.findAllById(any())).thenReturn(List.of(e1));
+
+        var result = service.findMediaRecordsByIds(List.of(missing, e1.getId()));
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0) == null, is(true));
+        assertThat(result.get(1).getId(), is(e1.getId()));
+    }
+
+    @Test
+    void testGetMediaRecordByIdIsCachedUntilUpdated() {
+        final UUID id = UUID.randomUUID();
+        final MediaRecordEntity entity = MediaRecordEntity.builder().id(id).name("Cached")
+                .type(MediaRecordEntity.MediaType.DOCUMENT).creatorId(UUID.randomUUID())
+                .contentIds(new ArrayList<>()).courseIds(new ArrayList<>()).build();
+        when(repository.findById(id)).thenReturn(Optional.of(entity));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.getMediaRecordById(id).setName("changed by caller");
+        assertThat(service.getMediaRecordById(id).getName(), is("Cached"));
+        verify(repository, times(1)).findById(id);
+
+        service.updateMediaRecord(List.of(), UpdateMediaRecordInput.builder()
+                .setId(id).setName("Updated").setType(MediaType.DOCUMENT).setContentIds(List.of()).build());
+        entity.setName("Updated");
+
+        assertThat(service.getMediaRecordById(id).getName(), is("Updated"));
     }
 
     @Test
-    void TestIsExpired_private() throws Exception {
-        Method isExp = service.getClass().getDeclaredMethod("isExpired", String.class);
-        isExp.setAccessible(true);
-        DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
-        String past = f.format(Instant.now().minusSeconds(7200));
-        String future = f.format(Instant.now());
-        String expired = "https://x?X-Amz-Date=" + past + "&X-Amz-Expires=60";
-        String notExpired = "https://x?X-Amz-Date=" + future + "&X-Amz-Expires=7200";
-        boolean e1 = (Boolean) isExp.invoke(service, expired);
-        boolean e2 = (Boolean) isExp.invoke(service, notExpired);
-        assertThat(e1, is(true));
-        assertThat(e2, is(false));
+    void testUpdateKeepsCreatorCreationTimeAndContentHash() {
+        final UUID id = UUID.randomUUID();
+        final UUID creatorId = UUID.randomUUID();
+        final OffsetDateTime createdAt = OffsetDateTime.now().minusDays(1);
+        final MediaRecordEntity entity = MediaRecordEntity.builder().id(id).name("Lecture")
+                .type(MediaRecordEntity.MediaType.DOCUMENT).creatorId(creatorId).createdAt(createdAt)
+                .contentHash("md5:0123456789abcdef0123456789abcdef")
+                .contentIds(new ArrayList<>()).courseIds(new ArrayList<>()).build();
+        when(repository.findById(id)).thenReturn(Optional.of(entity));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.updateMediaRecord(List.of(), UpdateMediaRecordInput.builder()
+                .setId(id).setName("Renamed").setType(MediaType.DOCUMENT).setContentIds(List.of()).build());
+
+        final ArgumentCaptor<MediaRecordEntity> captor = ArgumentCaptor.forClass(MediaRecordEntity.class);
+        verify(repository).save(captor.capture());
+        assertThat(captor.getValue().getName(), is("Renamed"));
+        assertThat(captor.getValue().getCreatorId(), is(creatorId));
+        assertThat(captor.getValue().getCreatedAt(), is(createdAt));
+        assertThat(captor.getValue().getContentHash(), is("md5:0123456789abcdef0123456789abcdef"));
     }
 
     @Test
-    void TestPublishMediaRecordFile_blankName() {
-        UUID id = UUID.randomUUID();
-        UUID cid = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder()
-                .id(id).name("   ")
-                .courseIds(List.of(cid))
-                .contentIds(List.of()).creatorId(UUID.randomUUID())
-                .progressData(List.of()).type(MediaRecordEntity.MediaType.DOCUMENT).build();
-
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(id);
-        when(repository.findContentIdsByMediaRecordId(id)).thenReturn(List.of());
-
-        service.publishMaterialPublishedEvent(id);
-
-        verify(topicPublisher).notificationEvent(
-                eq(cid), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + cid + "/media?selectedDocument=" + id),
-                eq("New Material is uploaded!"),
-                eq("material: Unnamed File")
-        );
+    void TestPresignedUrlIsExpired() {
+        final long now = Instant.now().toEpochMilli();
+        final long margin = PresignedUrlCache.EXPIRY_MARGIN.toMillis();
+
+        final PresignedUrl expired = PresignedUrl.of("https://x", Instant.now().minusSeconds(7200), Duration.ofSeconds(60));
+        final PresignedUrl aboutToExpire = PresignedUrl.of("https://x", Instant.now(), Duration.ofMinutes(2));
+        final PresignedUrl notExpired = PresignedUrl.of("https://x", Instant.now(), Duration.ofHours(2));
+
+        assertThat(expired.isExpired(now, margin), is(true));
+        assertThat(aboutToExpire.isExpired(now, margin), is(true));
+        assertThat(notExpired.isExpired(now, margin), is(false));
+        assertThat(expired.remainingMillis(now, margin), is(0L));
     }
 
     @Test
-    void TestPublishMediaRecordFile_contentIdsNull() {
-        UUID id = UUID.randomUUID();
-        UUID cid = UUID.randomUUID();
-        MediaRecordEntity e = MediaRecordEntity.builder()
-                .id(id).name("N.pdf")
-                .courseIds(List.of(cid))
-                .contentIds(List.of()).creatorId(UUID.randomUUID())
-                .progressData(List.of()).type(MediaRecordEntity.MediaType.DOCUMENT).build();
-
-        doReturn(Optional.of(e)).when(repository).findWithCoursesById(id);
-        when(repository.findContentIdsByMediaRecordId(id)).thenReturn(null);
-
-        service.publishMaterialPublishedEvent(id);
-
-        verify(topicPublisher).notificationEvent(
-                eq(cid), isNull(), eq(ServerSource.MEDIA),
-                eq("/courses/" + cid + "/media?selectedDocument=" + id),
-                eq("New Material is uploaded!"),
-                eq("material: N.pdf")
-        );
+    void testConvertReusesStandardizedFileOfSameContent() throws Exception {
+        final UUID id = UUID.randomUUID();
+        final UUID otherId = UUID.randomUUID();
+        final String contentHash = "md5:0123456789abcdef0123456789abcdef";
+        final MediaRecordEntity entity = MediaRecordEntity.builder()
+                .id(id).name("Slides.pptx")
+                .type(MediaRecordEntity.MediaType.PRESENTATION)
+                .creatorId(UUID.randomUUID())
+                .build();
+        when(repository.findById(id)).thenReturn(Optional.of(entity));
+
+        final StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.etag()).thenReturn("\"0123456789ABCDEF0123456789ABCDEF\"");
+        when(stat.contentType()).thenReturn("application/vnd.ms-powerpoint");
+        when(mockMinIoClient.statObject(any())).thenReturn(stat);
+        when(standardizedFileRepository.findById(contentHash)).thenReturn(Optional.of(
+                new StandardizedFileEntity(contentHash, "presentation", otherId + "_standardized",
+                        OffsetDateTime.now())));
+
+        final CompletableFuture<Void> result = service.convertToStandardizedFileIfPossibleAndNecessary(id);
+
+        assertThat(result.isDone(), is(true));
+        verify(repository).updateContentHash(id, contentHash);
+        verify(mockMinIoClient).copyObject(argThat(args -> args.bucket().equals("presentation")
+                && args.object().equals(id + "_standardized")
+                && args.source().object().equals(otherId + "_standardized")));
+        verify(fileConversionService, never()).convertDocumentToPdf(any(), any(), any(), any());
     }
 
     @Test
-    void publishMaterialPublishedEventWithDelay_shouldNotPropagate_whenInnerThrows() throws Exception {
-        UUID id = UUID.randomUUID();
+    void testStandardizedFileOfReplacedUploadIsNotReused() throws Exception {
+        final UUID idA = UUID.randomUUID();
+        final UUID idB = UUID.randomUUID();
+        for (final UUID id : List.of(idA, idB)) {
+            when(repository.findById(id)).thenReturn(Optional.of(MediaRecordEntity.builder()
+                    .id(id).name("Slides.pptx")
+                    .type(MediaRecordEntity.MediaType.PRESENTATION)
+                    .creatorId(UUID.randomUUID())
+                    .build()));
+        }
+        when(fileConversionService.convertDocumentToPdf(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // keep the index of standardized files in memory
+        final Map<String, StandardizedFileEntity> index = new HashMap<>();
+        when(standardizedFileRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(index.get(invocation.<String>getArgument(0))));
+        when(standardizedFileRepository.register(anyString(), anyString(), anyString(), any()))
+                .thenAnswer(invocation -> {
+                    index.putIfAbsent(invocation.getArgument(0), new StandardizedFileEntity(invocation.getArgument(0),
+                            invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3)));
+                    return 1;
+                });
+        when(standardizedFileRepository.deleteByObject(anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    index.values().removeIf(file -> file.getBucket().equals(invocation.getArgument(0))
+                                                    && file.getObjectName().equals(invocation.getArgument(1)));
+                    return 1;
+                });
+
+        final StatObjectResponse fileX = mock(StatObjectResponse.class);
+        when(fileX.etag()).thenReturn("\"0123456789abcdef0123456789abcdef\"");
+        when(fileX.contentType()).thenReturn("application/vnd.ms-powerpoint");
+        final StatObjectResponse fileY = mock(StatObjectResponse.class);
+        when(fileY.etag()).thenReturn("\"fedcba9876543210fedcba9876543210\"");
+        when(fileY.contentType()).thenReturn("application/vnd.ms-powerpoint");
+
+        // A uploads X, then replaces it with Y, which overwrites the standardized file of A
+        when(mockMinIoClient.statObject(any())).thenReturn(fileX);
+        service.convertToStandardizedFileIfPossibleAndNecessary(idA).get();
+        when(mockMinIoClient.statObject(any())).thenReturn(fileY);
+        service.convertToStandardizedFileIfPossibleAndNecessary(idA).get();
+
+        // B uploads X, which must be converted instead of getting the standardized file of Y
+        when(mockMinIoClient.statObject(any())).thenReturn(fileX);
+        service.convertToStandardizedFileIfPossibleAndNecessary(idB).get();
+
+        verify(mockMinIoClient, never()).copyObject(any());
+        verify(fileConversionService, times(3))
+                .convertDocumentToPdf(any(), eq("application/vnd.ms-powerpoint"), eq("Slides.pptx"), any());
+        assertThat(index.get("md5:0123456789abcdef0123456789abcdef").getObjectName(), is(idB + "_standardized"));
+        assertThat(index.get("md5:fedcba9876543210fedcba9876543210").getObjectName(), is(idA + "_standardized"));
+    }
 
-        MediaService spyService = spy(service);
+    @Test
+    void testContentHashIsOnlyDerivedFromSinglePartEtags() {
+        final StatObjectResponse singlePart = mock(StatObjectResponse.class);
+        when(singlePart.etag()).thenReturn("0123456789abcdef0123456789abcdef");
+        final StatObjectResponse multipart = mock(StatObjectResponse.class);
+        when(multipart.etag()).thenReturn("0123456789abcdef0123456789abcdef-3");
+
+        assertThat(MediaService.contentHashOf(singlePart), is("md5:0123456789abcdef0123456789abcdef"));
+        assertThat(MediaService.contentHashOf(multipart), is(nullValue()));
+    }
 
-        CountDownLatch invoked = new CountDownLatch(1);
+    @Test
+    void testFileCreatedEventQueuesMaterialNotification() {
+        final UUID id = UUID.randomUUID();
 
-        doAnswer(invocation -> {
-            invoked.countDown();
-            throw new RuntimeException("boom");
-        }).when(spyService).publishMaterialPublishedEvent(id);
+        service.publishMediaRecordFileCreatedEvent(id);
 
-        assertDoesNotThrow(() -> spyService.publishMaterialPublishedEventWithDelay(id));
+        verify(eventOutbox).notifyMediaRecordFileCreated(any());
+        verify(materialNotificationAggregator).materialUploaded(id);
+    }
+
+    @Test
+    void testRemoveContentIdsUnlinksDeletedContentsWithOneStatement() throws Exception {
+        final UUID contentId1 = UUID.randomUUID();
+        final UUID contentId2 = UUID.randomUUID();
+        final UUID mediaRecordId = UUID.randomUUID();
+        final UUID[] contentIds = {contentId1, contentId2};
+        when(repository.findMediaRecordIdsByContentIds(contentIds)).thenReturn(List.of(mediaRecordId));
+        when(repository.unlinkContentsFromAllMediaRecords(contentIds)).thenReturn(3);
+
+        service.removeContentIds(ContentChangeEvent.builder()
+                .contentIds(List.of(contentId1, contentId2))
+                .operation(CrudOperation.DELETE)
+                .build());
+
+        verify(repository).unlinkContentsFromAllMediaRecords(contentIds);
+        verify(repository, never()).save(any());
+        assertThat(meterRegistry.counter("media.content.deleted.links").count(), is(3.0));
+    }
 
-        boolean called = invoked.await(7, TimeUnit.SECONDS);
-        org.junit.jupiter.api.Assertions.assertTrue(called, "timeout waiting for async invocation");
+    @Test
+    void testRemoveContentIdsIgnoresOtherOperations() throws Exception {
+        service.removeContentIds(ContentChangeEvent.builder()
+                .contentIds(List.of(UUID.randomUUID()))
+                .operation(CrudOperation.UPDATE)
+                .build());
 
-        verify(spyService, times(1)).publishMaterialPublishedEvent(id);
+        verify(repository, never()).unlinkContentsFromAllMediaRecords(any());
     }
 }
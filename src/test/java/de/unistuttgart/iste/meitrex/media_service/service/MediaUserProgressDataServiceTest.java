@@ -1,16 +1,17 @@
 package de.unistuttgart.iste.meitrex.media_service.service;
 
-import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
 import de.unistuttgart.iste.meitrex.common.event.ContentProgressedEvent;
+import de.unistuttgart.iste.meitrex.common.event.MediaRecordWorkedOnEvent;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecord;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaRecordProgressData;
 import de.unistuttgart.iste.meitrex.generated.dto.MediaType;
-import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordEntity;
 import de.unistuttgart.iste.meitrex.media_service.persistence.entity.media.MediaRecordProgressDataEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.mapper.MediaRecordMapper;
 import de.unistuttgart.iste.meitrex.media_service.persistence.repository.MediaRecordProgressDataRepository;
 import org.junit.jupiter.api.Test;
-import org.modelmapper.ModelMapper;
+import org.mockito.ArgumentCaptor;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,6 +21,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class MediaUserProgressDataServiceTest {
@@ -28,23 +30,22 @@ class MediaUserProgressDataServiceTest {
 
     private final MediaService mediaService = mock(MediaService.class);
 
-    private final TopicPublisher topicPublisher = mock(TopicPublisher.class);
+    private final EventOutbox eventOutbox = mock(EventOutbox.class);
 
     private final MediaUserProgressDataService mediaUserProgressDataService = new MediaUserProgressDataService(
             mediaRecordProgressDataRepository,
             mediaService,
-            new ModelMapper(),
-            topicPublisher);
+            new MediaRecordMapper(),
+            eventOutbox);
 
     /**
      * Given that no progress data exists for the given media record and user
      * When getUserProgressData is called
-     * Then a new progress data entity is created and returned
+     * Then default progress data is returned and nothing is written to the database
      */
     @Test
-    void testGetUserProgressDataIsInitialized() {
+    void testGetUserProgressDataReturnsDefaultWithoutSaving() {
         doReturn(Optional.empty()).when(mediaRecordProgressDataRepository).findById(any());
-        doAnswer(returnsFirstArg()).when(mediaRecordProgressDataRepository).save(any());
 
         final UUID userId = UUID.randomUUID();
         final UUID mediaRecordId = UUID.randomUUID();
@@ -54,11 +55,69 @@ class MediaUserProgressDataServiceTest {
         assertThat(actual.getWorkedOn(), is(false));
         assertThat(actual.getDateWorkedOn(), is(nullValue()));
 
-        final MediaRecordProgressDataEntity expectedEntity = MediaRecordProgressDataEntity.builder()
-                .primaryKey(new MediaRecordProgressDataEntity.PrimaryKey(mediaRecordId, userId))
-                .workedOn(false)
+        verify(mediaRecordProgressDataRepository, never()).save(any());
+    }
+
+    /**
+     * Given that no progress data exists for the given media record and user
+     * When the media record is worked on
+     * Then the progress data is written once, as worked on
+     */
+    @Test
+    void testProgressDataIsOnlyWrittenWhenWorkedOn() {
+        final MediaRecord mediaRecord = MediaRecord.builder()
+                .setId(UUID.randomUUID())
+                .setContentIds(List.of())
+                .setName("test")
+                .setType(MediaType.AUDIO)
                 .build();
-        verify(mediaRecordProgressDataRepository).save(expectedEntity);
+        doReturn(mediaRecord).when(mediaService).getMediaRecordById(mediaRecord.getId());
+        doReturn(Optional.empty()).when(mediaRecordProgressDataRepository).findById(any());
+        doAnswer(returnsFirstArg()).when(mediaRecordProgressDataRepository).save(any());
+
+        final UUID userId = UUID.randomUUID();
+        mediaUserProgressDataService.logMediaRecordWorkedOn(mediaRecord.getId(), userId);
+
+        final ArgumentCaptor<MediaRecordProgressDataEntity> captor =
+                ArgumentCaptor.forClass(MediaRecordProgressDataEntity.class);
+        verify(mediaRecordProgressDataRepository, times(1)).save(captor.capture());
+        assertThat(captor.getValue().getPrimaryKey(),
+                is(new MediaRecordProgressDataEntity.PrimaryKey(mediaRecord.getId(), userId)));
+        assertThat(captor.getValue().isWorkedOn(), is(true));
+    }
+
+    /**
+     * Given progress data exists for only one of two media records
+     * When the progress data of both is requested in a batch
+     * Then the progress data is loaded with a single query, missing entries are filled with defaults
+     * and nothing is written to the database
+     */
+    @Test
+    void testGetUserProgressDataBatchedFillsMissingWithoutSaving() {
+        final UUID userId = UUID.randomUUID();
+        final UUID workedOnMediaRecordId = UUID.randomUUID();
+        final UUID notWorkedOnMediaRecordId = UUID.randomUUID();
+
+        final OffsetDateTime workedOnDate = OffsetDateTime.now();
+        doReturn(List.of(MediaRecordProgressDataEntity.builder()
+                .primaryKey(new MediaRecordProgressDataEntity.PrimaryKey(workedOnMediaRecordId, userId))
+                .workedOn(true)
+                .workedOnDate(workedOnDate)
+                .build()))
+                .when(mediaRecordProgressDataRepository).findAllByUserIdAndMediaRecordIds(any(), any());
+
+        final List<MediaRecordProgressData> actual = mediaUserProgressDataService
+                .getUserProgressData(List.of(notWorkedOnMediaRecordId, workedOnMediaRecordId), userId);
+
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get(0).getWorkedOn(), is(false));
+        assertThat(actual.get(0).getDateWorkedOn(), is(nullValue()));
+        assertThat(actual.get(1).getWorkedOn(), is(true));
+
+        verify(mediaRecordProgressDataRepository, times(1))
+                .findAllByUserIdAndMediaRecordIds(userId, List.of(notWorkedOnMediaRecordId, workedOnMediaRecordId));
+        verify(mediaRecordProgressDataRepository, never()).findById(any());
+        verify(mediaRecordProgressDataRepository, never()).save(any());
     }
 
     /**
@@ -81,10 +140,14 @@ class MediaUserProgressDataServiceTest {
         mockWorkedOnFor(mediaRecord, false);
 
         final UUID userId = UUID.randomUUID();
+        doReturn(List.of(contentId))
+                .when(mediaRecordProgressDataRepository)
+                .findContentIdsCompletelyWorkedOn(userId, List.of(contentId));
+
         mediaUserProgressDataService
                 .logMediaRecordWorkedOn(mediaRecord.getId(), userId);
 
-        verify(topicPublisher, times(1)).notifyUserWorkedOnContent(ContentProgressedEvent.builder()
+        verify(eventOutbox, times(1)).notifyUserWorkedOnContent(ContentProgressedEvent.builder()
                 .correctness(1.0)
                 .timeToComplete(null)
                 .success(true)
@@ -116,13 +179,14 @@ class MediaUserProgressDataServiceTest {
 
         mediaUserProgressDataService.logMediaRecordWorkedOn(mediaRecord.getId(), UUID.randomUUID());
 
-        verify(topicPublisher, never()).notifyUserWorkedOnContent(any());
+        verify(eventOutbox, never()).notifyUserWorkedOnContent(any());
     }
 
     /**
      * Given two media records that belong to the same content, both not worked on before
      * When one of them is progressed
-     * Then no event is published
+     * Then the content is checked with a single query, no placeholder progress data is written
+     * and no event is published
      */
     @Test
     void testEventIsPublishedOnlyWhenAllMediasOfContentAreWorkedOn() {
@@ -133,38 +197,69 @@ class MediaUserProgressDataServiceTest {
                 .setName("test")
                 .setType(MediaType.AUDIO)
                 .build();
-        final MediaRecord mediaRecord2 = MediaRecord.builder()
-                .setId(UUID.randomUUID())
-                .setContentIds(List.of(contentId))
-                .setName("test")
-                .setType(MediaType.AUDIO)
-                .build();
 
         doReturn(mediaRecord1).when(mediaService).getMediaRecordById(mediaRecord1.getId());
-        doReturn(mediaRecord2).when(mediaService).getMediaRecordById(mediaRecord2.getId());
+        mockWorkedOnFor(mediaRecord1, false);
 
-        // this mocking is complicated because we need to mock the repository to return different values for each call
-        // the first call is to gain the user progress data for mediaRecord1,
-        // which we after that want to set to workedOn = true
-        // the second call is when we iterate through the contents to get the user progress data for mediaRecord1,
-        mockWorkedOnFor(mediaRecord1, false, true);
-
-        // seconds media record is not worked on yet
-        mockWorkedOnFor(mediaRecord2, false);
-
-        doReturn(List.of(dtoToEntity(mediaRecord1), dtoToEntity(mediaRecord2)))
-                .when(mediaService)
-                .getMediaRecordEntitiesByContentId(contentId);
+        // the second media record of the content is not worked on yet, so the content is not completely worked on
+        final UUID userId = UUID.randomUUID();
+        doReturn(List.of())
+                .when(mediaRecordProgressDataRepository)
+                .findContentIdsCompletelyWorkedOn(userId, List.of(contentId));
 
         mediaUserProgressDataService
-                .logMediaRecordWorkedOn(mediaRecord1.getId(), UUID.randomUUID());
+                .logMediaRecordWorkedOn(mediaRecord1.getId(), userId);
 
         // no event is published because not all medias are worked on
-        verify(topicPublisher, never()).notifyUserWorkedOnContent(any());
+        verify(eventOutbox, never()).notifyUserWorkedOnContent(any());
+        verify(mediaRecordProgressDataRepository).findContentIdsCompletelyWorkedOn(userId, List.of(contentId));
+        verify(mediaRecordProgressDataRepository, times(1)).findById(any());
     }
 
-    private MediaRecordEntity dtoToEntity(final MediaRecord mediaRecord) {
-        return new ModelMapper().map(mediaRecord, MediaRecordEntity.class);
+    /**
+     * Given two media records of which one was already worked on before
+     * When both are logged as worked on in a batch
+     * Then they are written with a single upsert and only the contents of the other one are checked
+     */
+    @Test
+    void testLogMediaRecordsWorkedOnUpsertsAllAtOnce() {
+        final UUID userId = UUID.randomUUID();
+        final UUID contentId1 = UUID.randomUUID();
+        final UUID contentId2 = UUID.randomUUID();
+        final MediaRecord workedOn = MediaRecord.builder()
+                .setId(UUID.randomUUID())
+                .setContentIds(List.of(contentId1))
+                .setName("test")
+                .setType(MediaType.VIDEO)
+                .build();
+        final MediaRecord notWorkedOn = MediaRecord.builder()
+                .setId(UUID.randomUUID())
+                .setContentIds(List.of(contentId2))
+                .setName("test")
+                .setType(MediaType.VIDEO)
+                .build();
+        final List<UUID> ids = List.of(workedOn.getId(), notWorkedOn.getId());
+
+        doReturn(List.of(workedOn, notWorkedOn)).when(mediaService).getMediaRecordsByIds(ids);
+        doReturn(List.of(MediaRecordProgressDataEntity.builder()
+                .primaryKey(new MediaRecordProgressDataEntity.PrimaryKey(workedOn.getId(), userId))
+                .workedOn(true)
+                .build()))
+                .when(mediaRecordProgressDataRepository).findAllByUserIdAndMediaRecordIds(userId, ids);
+        doReturn(List.of(contentId2))
+                .when(mediaRecordProgressDataRepository).findContentIdsCompletelyWorkedOn(userId, List.of(contentId2));
+
+        final List<MediaRecord> actual = mediaUserProgressDataService.logMediaRecordsWorkedOn(ids, userId);
+
+        assertThat(actual, is(List.of(workedOn, notWorkedOn)));
+        verify(mediaRecordProgressDataRepository).upsertWorkedOn(eq(userId), eq(ids), any());
+        verify(mediaRecordProgressDataRepository, never()).save(any());
+        verify(eventOutbox).notifyMediaRecordsWorkedOn(List.of(
+                MediaRecordWorkedOnEvent.builder()
+                        .userId(userId).mediaRecordId(workedOn.getId()).wasAlreadyWorkedOn(true).build(),
+                MediaRecordWorkedOnEvent.builder()
+                        .userId(userId).mediaRecordId(notWorkedOn.getId()).wasAlreadyWorkedOn(false).build()));
+        verify(eventOutbox, times(1)).notifyUserWorkedOnContent(any());
     }
 
     /**
@@ -180,16 +275,4 @@ class MediaUserProgressDataServiceTest {
                 .when(mediaRecordProgressDataRepository)
                 .findById(argThat(arg -> arg.getMediaRecordId().equals(record.getId())));
     }
-
-    /**
-     * Mock work on for the given media record for two calls to the repository
-     */
-    @SuppressWarnings("SameParameterValue")
-    private void mockWorkedOnFor(final MediaRecord record, final Boolean workedOnFirst, final Boolean workedOnSecond) {
-        final var mockReturnValue1 = Optional.of(MediaRecordProgressDataEntity.builder().workedOn(workedOnFirst).build());
-        final var mockReturnValue2 = Optional.of(MediaRecordProgressDataEntity.builder().workedOn(workedOnSecond).build());
-        doReturn(mockReturnValue1, mockReturnValue2)
-                .when(mediaRecordProgressDataRepository)
-                .findById(argThat(arg -> arg.getMediaRecordId().equals(record.getId())));
-    }
 }
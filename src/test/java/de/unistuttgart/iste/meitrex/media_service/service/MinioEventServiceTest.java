@@ -0,0 +1,112 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import de.unistuttgart.iste.meitrex.media_service.service.MinioEventService.ObjectCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class MinioEventServiceTest {
+
+    private final MediaService mediaService = mock(MediaService.class);
+
+    private final ConversionJobService conversionJobService = mock(ConversionJobService.class);
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final MinioEventService service = new MinioEventService(mediaService, conversionJobService,
+            new TransactionTemplate(transactionManager), meterRegistry, Duration.ofHours(1));
+
+    @Test
+    void testAllRecordsOfARequestAreStoredInOneTransaction() {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+
+        final boolean stored = service.process(List.of(
+                new ObjectCreatedEvent("media", first.toString(), "etag1", 100),
+                new ObjectCreatedEvent("media", second.toString(), "etag2", 200)));
+
+        assertThat(stored, is(true));
+        verify(conversionJobService).enqueue(first, 100);
+        verify(conversionJobService).enqueue(second, 200);
+        verify(mediaService).publishMediaRecordFileCreatedEvent(first);
+        verify(mediaService).publishMediaRecordFileCreatedEvent(second);
+        verify(transactionManager).getTransaction(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testRetriedEventIsProcessedOnce() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        final ObjectCreatedEvent event = new ObjectCreatedEvent("media", mediaRecordId.toString(), "etag", 100);
+
+        service.process(List.of(event));
+        service.process(List.of(event));
+
+        verify(conversionJobService, times(1)).enqueue(mediaRecordId, 100);
+        verify(mediaService, times(1)).publishMediaRecordFileCreatedEvent(mediaRecordId);
+        assertThat(meterRegistry.counter("media.webhook.events", "outcome", "duplicate").count(), is(1.0));
+    }
+
+    @Test
+    void testReuploadWithNewEtagIsProcessedAgain() {
+        final UUID mediaRecordId = UUID.randomUUID();
+
+        service.process(List.of(new ObjectCreatedEvent("media", mediaRecordId.toString(), "etag1", 100)));
+        service.process(List.of(new ObjectCreatedEvent("media", mediaRecordId.toString(), "etag2", 100)));
+
+        verify(mediaService, times(2)).publishMediaRecordFileCreatedEvent(mediaRecordId);
+    }
+
+    @Test
+    void testFailedRequestIsRejectedAndStoredWhenRetried() {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        final List<ObjectCreatedEvent> events = List.of(
+                new ObjectCreatedEvent("media", first.toString(), "etag1", 100),
+                new ObjectCreatedEvent("media", second.toString(), "etag2", 200));
+        doNothing().doThrow(new IllegalStateException("database unavailable")).doNothing()
+                .when(mediaService).publishMediaRecordFileCreatedEvent(any());
+
+        // the second upload fails, so the transaction of the request is rolled back and MinIO has to send it again
+        assertThat(service.process(events), is(false));
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertThat(meterRegistry.counter("media.webhook.events", "outcome", "failed").count(), is(2.0));
+
+        // both events are stored again, none of them is skipped as a duplicate
+        assertThat(service.process(events), is(true));
+        verify(conversionJobService, times(2)).enqueue(first, 100);
+        verify(conversionJobService, times(2)).enqueue(second, 200);
+        verify(mediaService, times(2)).publishMediaRecordFileCreatedEvent(second);
+        verify(transactionManager).commit(any());
+        assertThat(meterRegistry.counter("media.webhook.events", "outcome", "processed").count(), is(2.0));
+    }
+
+    @Test
+    void testStandardizedAndSubmissionFilesAreIgnored() {
+        final UUID mediaRecordId = UUID.randomUUID();
+
+        final boolean stored = service.process(List.of(
+                new ObjectCreatedEvent("media", mediaRecordId + "_standardized", "etag", 100),
+                new ObjectCreatedEvent(SubmissionService.BUCKET_ID, mediaRecordId.toString(), "etag", 100),
+                new ObjectCreatedEvent("media", "not-a-media-record", "etag", 100)));
+
+        assertThat(stored, is(true));
+        verify(conversionJobService, never()).enqueue(any(), anyLong());
+        verify(mediaService, never()).publishMediaRecordFileCreatedEvent(any());
+        verifyNoInteractions(transactionManager);
+    }
+}
@@ -0,0 +1,210 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import de.unistuttgart.iste.meitrex.common.event.ContentMediaRecordLinksSetEvent;
+import de.unistuttgart.iste.meitrex.common.event.MediaRecordDeletedEvent;
+import de.unistuttgart.iste.meitrex.common.event.MediaRecordFileCreatedEvent;
+import de.unistuttgart.iste.meitrex.common.event.ServerSource;
+import de.unistuttgart.iste.meitrex.media_service.persistence.entity.outbox.OutboxEventEntity;
+import de.unistuttgart.iste.meitrex.media_service.persistence.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+
+    private final TopicPublisher topicPublisher = mock(TopicPublisher.class);
+
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final EventOutbox eventOutbox = new EventOutbox(repository, objectMapper);
+
+    private final OutboxRelay relay = new OutboxRelay(repository, topicPublisher, objectMapper, transactionTemplate,
+            new SimpleMeterRegistry(), 10, 3, Duration.ofSeconds(1), Duration.ofMinutes(5));
+
+    private final List<OutboxEventEntity> outbox = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0))
+                        .doInTransaction(null));
+        when(repository.tryLock(anyLong())).thenReturn(true);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            final OutboxEventEntity event = invocation.getArgument(0);
+            if (event.getId() == null) {
+                event.setId((long) outbox.size() + 1);
+                outbox.add(event);
+            }
+            return event;
+        });
+        when(repository.insertAll(any(), any(), any(), any())).thenAnswer(invocation -> {
+            final String[] types = invocation.getArgument(0);
+            final UUID[] aggregateIds = invocation.getArgument(1);
+            final String[] payloads = invocation.getArgument(2);
+            for (int i = 0; i < types.length; i++) {
+                outbox.add(OutboxEventEntity.builder()
+                        .id((long) outbox.size() + 1)
+                        .type(OutboxEventEntity.Type.valueOf(types[i]))
+                        .aggregateId(aggregateIds[i])
+                        .payload(payloads[i])
+                        .createdAt(invocation.getArgument(3))
+                        .build());
+            }
+            return types.length;
+        });
+        when(repository.findPending(any(), anyInt())).thenAnswer(invocation -> outbox.stream()
+                .filter(event -> event.getFailedAt() == null)
+                .toList());
+    }
+
+    @Test
+    void testEventsArePublishedInOrderAndDeleted() {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        final UUID courseId = UUID.randomUUID();
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(first));
+        eventOutbox.notificationEvent(courseId, null, ServerSource.MEDIA, "/courses", "title", "message");
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(second));
+
+        relay.relayPendingEvents();
+
+        final InOrder inOrder = inOrder(topicPublisher);
+        inOrder.verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(first));
+        inOrder.verify(topicPublisher).notificationEvent(courseId, null, ServerSource.MEDIA, "/courses", "title",
+                "message");
+        inOrder.verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(second));
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    void testBatchOfEventsIsWrittenWithOneInsert() {
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+
+        eventOutbox.notifyMediaRecordsDeleted(List.of(
+                new MediaRecordDeletedEvent(first), new MediaRecordDeletedEvent(second)));
+
+        verify(repository).insertAll(any(), eq(new UUID[]{first, second}), any(), any());
+        verify(repository, never()).save(any());
+        verify(repository, never()).saveAll(any());
+
+        relay.relayPendingEvents();
+
+        final InOrder inOrder = inOrder(topicPublisher);
+        inOrder.verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(first));
+        inOrder.verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(second));
+    }
+
+    @Test
+    void testEmptyBatchWritesNothing() {
+        eventOutbox.notifyMediaRecordsDeleted(List.of());
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testFailedEventIsRetriedAndBlocksLaterEventsOfItsAggregate() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        final UUID contentId = UUID.randomUUID();
+        eventOutbox.notifyMediaRecordFileCreated(new MediaRecordFileCreatedEvent(mediaRecordId));
+        eventOutbox.notifyContentMediaRecordLinksSet(new ContentMediaRecordLinksSetEvent(contentId, List.of()));
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(mediaRecordId));
+        doThrow(new IllegalStateException("sidecar unavailable"))
+                .when(topicPublisher).notifyMediaRecordFileCreated(any());
+
+        final OffsetDateTime before = OffsetDateTime.now();
+        relay.relayPendingEvents();
+
+        // the event of the other aggregate is published, the later event of the same media record waits
+        verify(topicPublisher).notifyContentMediaRecordLinksSet(any());
+        verify(topicPublisher, never()).notifyMediaRecordDeleted(any());
+        verify(repository).deleteAllByIdInBatch(List.of(2L));
+        final OutboxEventEntity failed = outbox.get(0);
+        assertThat(failed.getAttempts(), is(1));
+        assertThat(failed.getNextAttemptAt().isAfter(before), is(true));
+        assertThat(failed.getLastError(), is("IllegalStateException: sidecar unavailable"));
+        assertThat(failed.getFailedAt(), is(nullValue()));
+
+        // the event is backing off, so neither it nor the later event of its media record is published
+        relay.relayPendingEvents();
+        verify(topicPublisher, times(1)).notifyMediaRecordFileCreated(any());
+        verify(topicPublisher, never()).notifyMediaRecordDeleted(any());
+    }
+
+    @Test
+    void testEventFailsPermanentlyAfterMaxAttempts() {
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(UUID.randomUUID()));
+        final OutboxEventEntity event = outbox.get(0);
+        event.setAttempts(2);
+        doThrow(new IllegalStateException("sidecar unavailable"))
+                .when(topicPublisher).notifyMediaRecordDeleted(any());
+
+        relay.relayPendingEvents();
+
+        assertThat(event.getAttempts(), is(3));
+        assertThat(event.getFailedAt(), is(notNullValue()));
+    }
+
+    @Test
+    void testEventWhichFailedPermanentlyNoLongerBlocksItsAggregate() {
+        final UUID mediaRecordId = UUID.randomUUID();
+        eventOutbox.notifyMediaRecordFileCreated(new MediaRecordFileCreatedEvent(mediaRecordId));
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(mediaRecordId));
+        outbox.get(0).setAttempts(2);
+        doThrow(new IllegalStateException("sidecar unavailable"))
+                .when(topicPublisher).notifyMediaRecordFileCreated(any());
+
+        // the event is set aside, so the later event of the media record does not have to wait for it
+        relay.relayPendingEvents();
+
+        assertThat(outbox.get(0).getFailedAt(), is(notNullValue()));
+        verify(topicPublisher).notifyMediaRecordDeleted(new MediaRecordDeletedEvent(mediaRecordId));
+    }
+
+    @Test
+    void testNothingIsPublishedWhileAnotherReplicaRelays() {
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(UUID.randomUUID()));
+        when(repository.tryLock(anyLong())).thenReturn(false);
+
+        relay.relayPendingEvents();
+
+        verifyNoInteractions(topicPublisher);
+        verify(repository, never()).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void testEventsAreStoredAsJson() {
+        final UUID id = UUID.randomUUID();
+
+        eventOutbox.notifyMediaRecordDeleted(new MediaRecordDeletedEvent(id));
+
+        final ArgumentCaptor<OutboxEventEntity> captor = ArgumentCaptor.forClass(OutboxEventEntity.class);
+        verify(repository).save(captor.capture());
+        assertThat(captor.getValue().getType(), is(OutboxEventEntity.Type.MEDIA_RECORD_DELETED));
+        assertThat(captor.getValue().getAggregateId(), is(id));
+        assertThat(captor.getValue().getPayload(), containsString(id.toString()));
+        verifyNoInteractions(topicPublisher);
+    }
+}
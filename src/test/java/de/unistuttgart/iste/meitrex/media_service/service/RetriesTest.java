@@ -0,0 +1,30 @@
+package de.unistuttgart.iste.meitrex.media_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class RetriesTest {
+
+    @Test
+    void testBackoffDoublesUpToMaximum() {
+        final Duration initial = Duration.ofMinutes(1);
+        final Duration max = Duration.ofMinutes(30);
+
+        assertThat(Retries.backoff(1, initial, max), is(Duration.ofMinutes(1)));
+        assertThat(Retries.backoff(2, initial, max), is(Duration.ofMinutes(2)));
+        assertThat(Retries.backoff(4, initial, max), is(Duration.ofMinutes(8)));
+        assertThat(Retries.backoff(6, initial, max), is(max));
+        assertThat(Retries.backoff(100, initial, max), is(max));
+    }
+
+    @Test
+    void testLongErrorMessagesAreTruncated() {
+        assertThat(Retries.truncate("IllegalStateException: failed"), is("IllegalStateException: failed"));
+        assertThat(Retries.truncate("x".repeat(Retries.MAX_ERROR_LENGTH + 1)),
+                is("x".repeat(Retries.MAX_ERROR_LENGTH)));
+    }
+}